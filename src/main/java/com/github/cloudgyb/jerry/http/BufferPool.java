@@ -0,0 +1,329 @@
+package com.github.cloudgyb.jerry.http;
+
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A server-wide pool of byte buffers, used for socket reads, response
+ * buffers and request body staging.
+ * <p>
+ * Buffers come in size classes, powers of two from 1 KiB to 64 KiB; a request
+ * is rounded up to its class. Larger buffers are allocated and dropped on
+ * release like before. Each class has a bounded free list shared by all
+ * threads, and each platform thread keeps a few buffers per class in a
+ * thread-local cache in front of it, so an event loop or a busy worker mostly
+ * recycles its own buffers. Virtual threads skip the cache, it would die with
+ * the thread.
+ * </p>
+ * <p>
+ * A buffer in a thread cache counts against the budget of its class like one
+ * in the shared list, so the pool never holds more than
+ * <code>maxPooledBytes</code> per kind, and {@link BufferPoolStats#getPooledBytes()}
+ * includes the caches. A cache goes back to the shared lists once its thread
+ * is gone, and {@link #close()} drops everything.
+ * </p>
+ * <p>
+ * A buffer must be released exactly once and must not be used afterwards.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/19 10:20
+ */
+public final class BufferPool {
+    private static final int MIN_CLASS_SHIFT = 10;
+    private static final int MAX_CLASS_SHIFT = 16;
+    private static final int CLASSES = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+    private static final int MAX_POOLED_SIZE = 1 << MAX_CLASS_SHIFT;
+    private static final int THREAD_CACHE_SIZE = 8;
+    // Thread.isVirtual(), resolved reflectively because we compile for Java 11.
+    private static final Method IS_VIRTUAL = lookupIsVirtual();
+    // Hands the cache of a thread back once the thread is unreachable
+    private static final Cleaner CLEANER = Cleaner.create();
+    private final boolean pooling;
+    private volatile boolean closed;
+    private final Arena heap;
+    private final Arena direct;
+    private final ThreadLocal<ThreadCache> threadCache = ThreadLocal.withInitial(this::createThreadCache);
+    private final Set<ThreadCache> threadCaches = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder outstanding = new LongAdder();
+
+    /**
+     * @param maxPooledBytes the bytes each of the heap and the direct buffers
+     *                       pooled may add up to, thread caches included,
+     *                       spread evenly over the size classes; 0 disables
+     *                       pooling, every buffer is then allocated
+     */
+    public BufferPool(long maxPooledBytes) {
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("maxPooledBytes must be >= 0");
+        }
+        this.pooling = maxPooledBytes > 0;
+        this.heap = new Arena(maxPooledBytes);
+        this.direct = new Arena(maxPooledBytes);
+    }
+
+    private static Method lookupIsVirtual() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private ThreadCache createThreadCache() {
+        Thread thread = Thread.currentThread();
+        if (IS_VIRTUAL != null) {
+            try {
+                if ((Boolean) IS_VIRTUAL.invoke(thread)) {
+                    return null;
+                }
+            } catch (ReflectiveOperationException ignore) {
+            }
+        }
+        ThreadCache cache = new ThreadCache();
+        threadCaches.add(cache);
+        // The action must not reach the thread, or it would never become unreachable
+        cache.cleanable = CLEANER.register(thread, () -> {
+            threadCaches.remove(cache);
+            flush(cache);
+        });
+        return cache;
+    }
+
+    /**
+     * @return an empty buffer in write mode of at least <code>capacity</code> bytes
+     */
+    public ByteBuffer acquire(int capacity, boolean direct) {
+        outstanding.increment();
+        int sizeClass = sizeClass(capacity);
+        if (pooling && sizeClass >= 0) {
+            Arena arena = direct ? this.direct : heap;
+            ThreadCache cache = threadCache.get();
+            ByteBuffer buffer = cache == null ? null : cache.poll(direct, sizeClass);
+            if (buffer == null) {
+                buffer = arena.poll(sizeClass);
+            }
+            if (buffer != null) {
+                arena.unreserve(sizeClass);
+                hits.increment();
+                return buffer;
+            }
+        }
+        misses.increment();
+        int size = sizeClass >= 0 ? 1 << (sizeClass + MIN_CLASS_SHIFT) : capacity;
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Hands a buffer returned by {@link #acquire(int, boolean)} back to the pool.
+     */
+    public void release(ByteBuffer buffer) {
+        outstanding.decrement();
+        int capacity = buffer.capacity();
+        if (!pooling || closed || capacity > MAX_POOLED_SIZE || Integer.bitCount(capacity) != 1
+                || capacity < 1 << MIN_CLASS_SHIFT) {
+            return;
+        }
+        buffer.clear();
+        boolean isDirect = buffer.isDirect();
+        int sizeClass = sizeClass(capacity);
+        Arena arena = isDirect ? direct : heap;
+        if (!arena.reserve(sizeClass)) {
+            // The class is at its budget, the buffer is dropped
+            return;
+        }
+        ThreadCache cache = threadCache.get();
+        if (cache != null && cache.offer(isDirect, sizeClass, buffer)) {
+            return;
+        }
+        arena.push(sizeClass, buffer);
+    }
+
+    /**
+     * Moves the buffers of a thread cache to the shared lists, where they
+     * are already accounted for.
+     */
+    private void flush(ThreadCache cache) {
+        cache.drain((isDirect, sizeClass, buffer) -> (isDirect ? direct : heap).push(sizeClass, buffer));
+    }
+
+    /**
+     * Drops every pooled buffer, thread caches included. Buffers released
+     * afterwards are dropped too; acquiring still works but always allocates.
+     */
+    public void close() {
+        closed = true;
+        for (ThreadCache cache : threadCaches) {
+            // Runs the flush now, at most once, and forgets the thread
+            cache.cleanable.clean();
+        }
+        heap.clear();
+        direct.clear();
+    }
+
+    /**
+     * @return the size class of <code>capacity</code>, or -1 if it is too large to be pooled
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity > MAX_POOLED_SIZE) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+        return Math.max(0, shift - MIN_CLASS_SHIFT);
+    }
+
+    public BufferPoolStats getStats() {
+        return new BufferPoolStats(hits.sum(), misses.sum(), outstanding.sum(),
+                heap.pooledBytes() + direct.pooledBytes());
+    }
+
+    /**
+     * The shared free lists of one kind of buffer, one per size class, and
+     * the count of the pooled buffers of each class wherever they are.
+     */
+    private static final class Arena {
+        private final Queue<ByteBuffer>[] freeLists;
+        private final AtomicInteger[] counts;
+        private final int[] maxCounts;
+
+        @SuppressWarnings("unchecked")
+        Arena(long maxPooledBytes) {
+            freeLists = (Queue<ByteBuffer>[]) new Queue<?>[CLASSES];
+            counts = new AtomicInteger[CLASSES];
+            maxCounts = new int[CLASSES];
+            for (int i = 0; i < CLASSES; i++) {
+                freeLists[i] = new ConcurrentLinkedQueue<>();
+                counts[i] = new AtomicInteger();
+                maxCounts[i] = (int) Math.min(Integer.MAX_VALUE, maxPooledBytes / CLASSES >> (i + MIN_CLASS_SHIFT));
+            }
+        }
+
+        /**
+         * Counts a buffer about to be pooled, in a thread cache or the shared list.
+         *
+         * @return false if the class is at its budget
+         */
+        boolean reserve(int sizeClass) {
+            if (counts[sizeClass].incrementAndGet() > maxCounts[sizeClass]) {
+                counts[sizeClass].decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Stops counting a buffer taken out of the pool.
+         */
+        void unreserve(int sizeClass) {
+            counts[sizeClass].decrementAndGet();
+        }
+
+        ByteBuffer poll(int sizeClass) {
+            return freeLists[sizeClass].poll();
+        }
+
+        /**
+         * Adds a buffer already counted by {@link #reserve(int)} to the shared list.
+         */
+        void push(int sizeClass, ByteBuffer buffer) {
+            freeLists[sizeClass].offer(buffer);
+        }
+
+        void clear() {
+            for (int i = 0; i < CLASSES; i++) {
+                while (freeLists[i].poll() != null) {
+                    counts[i].decrementAndGet();
+                }
+            }
+        }
+
+        long pooledBytes() {
+            long bytes = 0;
+            for (int i = 0; i < CLASSES; i++) {
+                bytes += (long) counts[i].get() << (i + MIN_CLASS_SHIFT);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * A few buffers per kind and size class. Its thread is the only one to
+     * use it, until the cache is handed back to the shared lists; the lock is
+     * for that moment and is otherwise uncontended.
+     */
+    private static final class ThreadCache {
+        // [direct ? 1 : 0][sizeClass] -> stack of buffers
+        private final ByteBuffer[][][] buffers = new ByteBuffer[2][CLASSES][THREAD_CACHE_SIZE];
+        private final int[][] sizes = new int[2][CLASSES];
+        private final ReentrantLock lock = new ReentrantLock();
+        // Handed back, the thread uses the shared lists from then on
+        private boolean drained;
+        Cleaner.Cleanable cleanable;
+
+        ByteBuffer poll(boolean direct, int sizeClass) {
+            lock.lock();
+            try {
+                int kind = direct ? 1 : 0;
+                int size = sizes[kind][sizeClass];
+                if (size == 0) {
+                    return null;
+                }
+                sizes[kind][sizeClass] = --size;
+                ByteBuffer buffer = buffers[kind][sizeClass][size];
+                buffers[kind][sizeClass][size] = null;
+                return buffer;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean offer(boolean direct, int sizeClass, ByteBuffer buffer) {
+            lock.lock();
+            try {
+                int kind = direct ? 1 : 0;
+                int size = sizes[kind][sizeClass];
+                if (drained || size == THREAD_CACHE_SIZE) {
+                    return false;
+                }
+                buffers[kind][sizeClass][size] = buffer;
+                sizes[kind][sizeClass] = size + 1;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void drain(BufferSink sink) {
+            lock.lock();
+            try {
+                drained = true;
+                for (int kind = 0; kind < 2; kind++) {
+                    for (int sizeClass = 0; sizeClass < CLASSES; sizeClass++) {
+                        for (int i = 0; i < sizes[kind][sizeClass]; i++) {
+                            sink.accept(kind == 1, sizeClass, buffers[kind][sizeClass][i]);
+                            buffers[kind][sizeClass][i] = null;
+                        }
+                        sizes[kind][sizeClass] = 0;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BufferSink {
+        void accept(boolean direct, int sizeClass, ByteBuffer buffer);
+    }
+}
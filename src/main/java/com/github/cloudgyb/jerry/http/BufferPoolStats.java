@@ -0,0 +1,60 @@
+package com.github.cloudgyb.jerry.http;
+
+/**
+ * A point in time snapshot of the {@link BufferPool}.
+ *
+ * @author cloudgyb
+ * @since 2025/4/19 10:30
+ */
+public class BufferPoolStats {
+    private final long hits;
+    private final long misses;
+    private final long outstandingBuffers;
+    private final long pooledBytes;
+
+    public BufferPoolStats(long hits, long misses, long outstandingBuffers, long pooledBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.outstandingBuffers = outstandingBuffers;
+        this.pooledBytes = pooledBytes;
+    }
+
+    /**
+     * @return the number of buffers handed out from the pool
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of buffers that had to be allocated
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of buffers acquired and not released yet
+     */
+    public long getOutstandingBuffers() {
+        return outstandingBuffers;
+    }
+
+    /**
+     * @return the bytes held by the shared free lists, thread-local caches are not counted
+     */
+    public long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPoolStats{hits=" + hits + ", misses=" + misses + ", outstandingBuffers=" + outstandingBuffers +
+                ", pooledBytes=" + pooledBytes + ", hitRatio=" + getHitRatio() + '}';
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.cloudgyb.jerry.http;
+
+/**
+ * A point in time snapshot of the connections of a connector.
+ *
+ * @author cloudgyb
+ * @since 2025/4/14 20:30
+ */
+public class ConnectionStats {
+    private final long acceptedConnections;
+    private final long openConnections;
+    private final long requests;
+    private final long idleTimeouts;
+
+    public ConnectionStats(long acceptedConnections, long openConnections, long requests, long idleTimeouts) {
+        this.acceptedConnections = acceptedConnections;
+        this.openConnections = openConnections;
+        this.requests = requests;
+        this.idleTimeouts = idleTimeouts;
+    }
+
+    public long getAcceptedConnections() {
+        return acceptedConnections;
+    }
+
+    public long getOpenConnections() {
+        return openConnections;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return the number of connections closed because they stayed idle for the keep-alive timeout
+     */
+    public long getIdleTimeouts() {
+        return idleTimeouts;
+    }
+
+    /**
+     * @return the fraction of requests that were served on an already used connection,
+     * i.e. that did not cost a new TCP handshake
+     */
+    public double getReuseRatio() {
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) Math.max(0, requests - acceptedConnections) / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionStats{acceptedConnections=" + acceptedConnections + ", openConnections=" + openConnections +
+                ", requests=" + requests + ", idleTimeouts=" + idleTimeouts + ", reuseRatio=" + getReuseRatio() + '}';
+    }
+}
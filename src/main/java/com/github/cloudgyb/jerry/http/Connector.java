@@ -0,0 +1,40 @@
+package com.github.cloudgyb.jerry.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * A connector accepts connections, parses HTTP requests and hands them to
+ * the handler registered for the longest matching context path.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 10:25
+ */
+public interface Connector {
+
+    void createContext(String contextPath, ExchangeHandler handler);
+
+    /**
+     * Binds the listening socket and starts serving.
+     */
+    void start() throws IOException;
+
+    /**
+     * Stops accepting connections and releases all resources.
+     *
+     * @param delaySeconds the maximum time to wait for in-flight exchanges
+     */
+    void stop(int delaySeconds);
+
+    /**
+     * @return the bound address, valid after {@link #start()}
+     */
+    InetSocketAddress getAddress();
+
+    /**
+     * @return connection and keep-alive counters, or null if the connector does not track them
+     */
+    default ConnectionStats getConnectionStats() {
+        return null;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.cloudgyb.jerry.http;
+
+/**
+ * The transport that JerryHttpServer listens with.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 10:20
+ */
+public enum ConnectorType {
+    /**
+     * Selector based connector: one acceptor, N I/O event loops and a worker pool.
+     */
+    NIO,
+    /**
+     * The JDK built-in <code>com.sun.net.httpserver.HttpServer</code>.
+     */
+    JDK
+}
@@ -0,0 +1,141 @@
+package com.github.cloudgyb.jerry.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * One HTTP request/response exchange as seen by the servlet layer.
+ * <p>
+ * This is the boundary between transports and the servlet container: every
+ * connector adapts its own request representation to this interface, and
+ * <code>HttpServletRequestImpl</code>/<code>HttpServletResponseImpl</code> only
+ * talk to it.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/8 20:30
+ */
+public interface Exchange {
+
+    // ------------------------------------------------------------ request line
+
+    String getRequestMethod();
+
+    /**
+     * @return the request-target exactly as received, e.g. <code>/app/a%20b?x=1</code>
+     */
+    String getRequestTarget();
+
+    /**
+     * @return the path of the request-target, not decoded
+     */
+    String getRequestPath();
+
+    /**
+     * @return the query of the request-target, not decoded, or null if absent
+     */
+    String getQueryString();
+
+    /**
+     * @return the protocol, e.g. <code>HTTP/1.1</code>
+     */
+    String getProtocol();
+
+    // ------------------------------------------------------------ request
+
+    HttpHeaders getRequestHeaders();
+
+    /**
+     * @return the request body, already de-framed (no chunk headers)
+     */
+    InputStream getRequestBody();
+
+    /**
+     * @return the length of the de-framed request body, or -1 if it is not
+     * known before the body is read (e.g. chunked transfer encoding). The
+     * default takes it from the request headers; a transport that buffers the
+     * whole body knows it exactly.
+     */
+    default long getRequestContentLength() {
+        HttpHeaders headers = getRequestHeaders();
+        if (headers.getFirst("Transfer-Encoding") != null) {
+            return -1;
+        }
+        String contentLength = headers.getFirst("Content-Length");
+        if (contentLength == null) {
+            return 0;
+        }
+        try {
+            long length = Long.parseLong(contentLength.trim());
+            return length >= 0 ? length : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ------------------------------------------------------------ response
+
+    /**
+     * @return the mutable response headers, sent by {@link #commit(int, long)}
+     */
+    HttpHeaders getResponseHeaders();
+
+    /**
+     * Sends the status line and the response headers. A transport may hold
+     * them back until the first body bytes, a flush of the response body or
+     * {@link #close()}, to send them together with the body.
+     *
+     * @param statusCode    the status code
+     * @param contentLength the exact length of the body, 0 for no body, or
+     *                      -1 if unknown, in which case the transport frames the
+     *                      body itself (e.g. chunked transfer encoding)
+     */
+    void commit(int statusCode, long contentLength) throws IOException;
+
+    boolean isCommitted();
+
+    /**
+     * The response body sink. The same stream is returned before and after
+     * {@link #commit(int, long)}, but writing to it is only allowed once committed.
+     * <p>
+     * A transport that writes ByteBuffers to the socket may return a stream
+     * that is also a {@link java.nio.channels.WritableByteChannel}, whose
+     * <code>write(ByteBuffer)</code> writes the whole buffer; callers holding
+     * a ByteBuffer then write it without copying it into an array.
+     * </p>
+     */
+    OutputStream getResponseBody();
+
+    /**
+     * Completes the exchange: finishes the response body and releases the
+     * connection for the next request. Idempotent.
+     */
+    void close();
+
+    // ------------------------------------------------------------ connection
+
+    InetSocketAddress getRemoteAddress();
+
+    InetSocketAddress getLocalAddress();
+
+    /**
+     * @return <code>http</code> or <code>https</code>
+     */
+    default String getScheme() {
+        return isSecure() ? "https" : "http";
+    }
+
+    default boolean isSecure() {
+        return false;
+    }
+
+    /**
+     * @return the protocol specific request id (e.g. an HTTP/2 stream id), or
+     * an empty string if the protocol has none
+     */
+    default String getProtocolRequestId() {
+        return "";
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.cloudgyb.jerry.http;
+
+import java.io.IOException;
+
+/**
+ * Handles the exchanges of one context. Connectors call it on a worker thread.
+ *
+ * @author cloudgyb
+ * @since 2025/4/8 20:42
+ */
+@FunctionalInterface
+public interface ExchangeHandler {
+    void handle(Exchange exchange) throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.github.cloudgyb.jerry.http;
+
+/**
+ * How JerryHttpServer runs servlet code for each request.
+ *
+ * @author cloudgyb
+ * @since 2025/4/13 09:40
+ */
+public enum ExecutionMode {
+    /**
+     * A fixed pool of <code>workerThreads</code> platform threads.
+     */
+    PLATFORM,
+    /**
+     * One virtual thread per request (Java 21+). Blocking servlet code no longer ties up
+     * a platform thread, so the number of in-flight requests is bounded by memory only.
+     * Falls back to {@link #PLATFORM} on JVMs without virtual threads.
+     */
+    VIRTUAL
+}
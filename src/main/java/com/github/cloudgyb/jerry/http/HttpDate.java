@@ -0,0 +1,66 @@
+package com.github.cloudgyb.jerry.http;
+
+import com.github.cloudgyb.jerry.util.DateUtil;
+import com.github.cloudgyb.jerry.util.NamedThreadFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The value of the <code>Date</code> response header.
+ * <p>
+ * The header only has a resolution of one second, so instead of formatting
+ * the time for every response a single daemon thread renders it once per
+ * second, both as a String and as a ready to send HTTP/1 header line.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/21 09:30
+ */
+public final class HttpDate {
+    private static volatile Rendered current = render(System.currentTimeMillis());
+
+    static {
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("jerry-date", true));
+        long now = System.currentTimeMillis();
+        // Tick right after each second starts
+        ticker.scheduleAtFixedRate(() -> current = render(System.currentTimeMillis()),
+                1000 - now % 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    private HttpDate() {
+    }
+
+    private static Rendered render(long timeMillis) {
+        String value = DateUtil.getHttpDate(timeMillis);
+        byte[] line = ("Date: " + value + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        return new Rendered(value, line);
+    }
+
+    /**
+     * @return the current time as an IMF-fixdate
+     */
+    public static String now() {
+        return current.value;
+    }
+
+    /**
+     * @return <code>Date: &lt;now&gt;\r\n</code>, shared, must not be modified
+     */
+    public static byte[] headerLine() {
+        return current.line;
+    }
+
+    private static final class Rendered {
+        final String value;
+        final byte[] line;
+
+        Rendered(String value, byte[] line) {
+            this.value = value;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.github.cloudgyb.jerry.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A case-insensitive, multi-valued and ordered collection of HTTP header fields.
+ * <p>
+ * Fields are kept as parallel name/value arrays: requests and responses
+ * rarely carry more than a few dozen fields, and a linear scan over them is
+ * cheaper than hashing every name.
+ * </p>
+ * <p>
+ * A subclass may add fields with {@link #addLazily(String)} and create their
+ * name and value Strings only when they are first looked at, see
+ * {@link #loadName(int)} and {@link #loadValue(int)}.
+ * </p>
+ * <p>
+ * {@link #add(String, String)} and {@link #set(String, String)} reject a
+ * name that is not a token and a value with CR, LF or NUL, which would
+ * otherwise end the field on the wire and start another (response
+ * splitting).
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/8 20:11
+ */
+public class HttpHeaders {
+    private String[] names;
+    private String[] values;
+    private int size;
+    // Some names or values are still to be loaded
+    private boolean lazy;
+
+    public HttpHeaders() {
+        this(16);
+    }
+
+    public HttpHeaders(int initialCapacity) {
+        names = new String[initialCapacity];
+        values = new String[initialCapacity];
+    }
+
+    /**
+     * @return the first value of the field, or null if absent
+     */
+    public String getFirst(String name) {
+        for (int i = 0; i < size; i++) {
+            if (name(i).equalsIgnoreCase(name)) {
+                return value(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all values of the field in order, or null if absent
+     */
+    public List<String> get(String name) {
+        List<String> list = null;
+        for (int i = 0; i < size; i++) {
+            if (name(i).equalsIgnoreCase(name)) {
+                if (list == null) {
+                    list = new ArrayList<>(2);
+                }
+                list.add(value(i));
+            }
+        }
+        return list;
+    }
+
+    public boolean contains(String name) {
+        return indexOf(name, 0) >= 0;
+    }
+
+    /**
+     * @return the distinct field names in order of first appearance
+     */
+    public List<String> names() {
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (indexOf(name(i), 0) == i) {
+                list.add(names[i]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name is not a token or the value contains CR, LF or NUL
+     */
+    public void add(String name, String value) {
+        checkField(name, value);
+        append(name, value);
+    }
+
+    private void append(String name, String value) {
+        if (size == names.length) {
+            int newCapacity = Math.max(8, size * 2);
+            names = Arrays.copyOf(names, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        names[size] = name;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Adds a field whose value, and name if null, are loaded on first access.
+     */
+    protected void addLazily(String name) {
+        lazy = true;
+        append(name, null);
+    }
+
+    /**
+     * @return the name of a field added by {@link #addLazily(String)} without a name
+     */
+    protected String loadName(int index) {
+        throw new IllegalStateException("No name to load at " + index);
+    }
+
+    /**
+     * @return the value of a field added by {@link #addLazily(String)}
+     */
+    protected String loadValue(int index) {
+        throw new IllegalStateException("No value to load at " + index);
+    }
+
+    private String name(int index) {
+        String name = names[index];
+        if (name == null && lazy) {
+            name = names[index] = loadName(index);
+        }
+        return name;
+    }
+
+    private String value(int index) {
+        String value = values[index];
+        if (value == null && lazy) {
+            value = values[index] = loadValue(index);
+        }
+        return value;
+    }
+
+    /**
+     * Loads every lazy field, before fields are moved around.
+     */
+    private void loadAll() {
+        if (!lazy) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            name(i);
+            value(i);
+        }
+        lazy = false;
+    }
+
+    /**
+     * Replaces all values of the field with the given one.
+     *
+     * @throws IllegalArgumentException if the name is not a token or the value contains CR, LF or NUL
+     */
+    public void set(String name, String value) {
+        checkField(name, value);
+        loadAll();
+        int i = indexOf(name, 0);
+        if (i < 0) {
+            append(name, value);
+            return;
+        }
+        values[i] = value;
+        removeFrom(name, i + 1);
+    }
+
+    public void remove(String name) {
+        removeFrom(name, 0);
+    }
+
+    public void clear() {
+        lazy = false;
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String nameAt(int index) {
+        checkIndex(index);
+        return name(index);
+    }
+
+    public String valueAt(int index) {
+        checkIndex(index);
+        return value(index);
+    }
+
+    private int indexOf(String name, int from) {
+        for (int i = from; i < size; i++) {
+            if (name(i).equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeFrom(String name, int from) {
+        loadAll();
+        int j = from;
+        for (int i = from; i < size; i++) {
+            if (!names[i].equalsIgnoreCase(name)) {
+                names[j] = names[i];
+                values[j] = values[i];
+                j++;
+            }
+        }
+        Arrays.fill(names, j, size, null);
+        Arrays.fill(values, j, size, null);
+        size = j;
+    }
+
+    private static void checkField(String name, String value) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Header name must not be empty");
+        }
+        for (int i = 0, n = name.length(); i < n; i++) {
+            if (!isTokenChar(name.charAt(i))) {
+                throw new IllegalArgumentException("Invalid character in header name: " + name);
+            }
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Header value must not be null: " + name);
+        }
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == 0) {
+                throw new IllegalArgumentException("Invalid character in the value of header " + name);
+            }
+        }
+    }
+
+    private static boolean isTokenChar(char c) {
+        if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') {
+            return true;
+        }
+        return "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            sb.append(name(i)).append(": ").append(value(i)).append("\r\n");
+        }
+        return sb.toString();
+    }
+}
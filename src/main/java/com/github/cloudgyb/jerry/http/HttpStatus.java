@@ -0,0 +1,65 @@
+package com.github.cloudgyb.jerry.http;
+
+/**
+ * HTTP status code reason phrases.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 11:02
+ */
+public final class HttpStatus {
+    private static final String[] REASON_PHRASES = new String[600];
+
+    static {
+        REASON_PHRASES[100] = "Continue";
+        REASON_PHRASES[101] = "Switching Protocols";
+        REASON_PHRASES[200] = "OK";
+        REASON_PHRASES[201] = "Created";
+        REASON_PHRASES[202] = "Accepted";
+        REASON_PHRASES[203] = "Non-Authoritative Information";
+        REASON_PHRASES[204] = "No Content";
+        REASON_PHRASES[205] = "Reset Content";
+        REASON_PHRASES[206] = "Partial Content";
+        REASON_PHRASES[300] = "Multiple Choices";
+        REASON_PHRASES[301] = "Moved Permanently";
+        REASON_PHRASES[302] = "Found";
+        REASON_PHRASES[303] = "See Other";
+        REASON_PHRASES[304] = "Not Modified";
+        REASON_PHRASES[307] = "Temporary Redirect";
+        REASON_PHRASES[308] = "Permanent Redirect";
+        REASON_PHRASES[400] = "Bad Request";
+        REASON_PHRASES[401] = "Unauthorized";
+        REASON_PHRASES[403] = "Forbidden";
+        REASON_PHRASES[404] = "Not Found";
+        REASON_PHRASES[405] = "Method Not Allowed";
+        REASON_PHRASES[406] = "Not Acceptable";
+        REASON_PHRASES[408] = "Request Timeout";
+        REASON_PHRASES[409] = "Conflict";
+        REASON_PHRASES[410] = "Gone";
+        REASON_PHRASES[411] = "Length Required";
+        REASON_PHRASES[412] = "Precondition Failed";
+        REASON_PHRASES[413] = "Content Too Large";
+        REASON_PHRASES[414] = "URI Too Long";
+        REASON_PHRASES[415] = "Unsupported Media Type";
+        REASON_PHRASES[417] = "Expectation Failed";
+        REASON_PHRASES[426] = "Upgrade Required";
+        REASON_PHRASES[429] = "Too Many Requests";
+        REASON_PHRASES[431] = "Request Header Fields Too Large";
+        REASON_PHRASES[500] = "Internal Server Error";
+        REASON_PHRASES[501] = "Not Implemented";
+        REASON_PHRASES[502] = "Bad Gateway";
+        REASON_PHRASES[503] = "Service Unavailable";
+        REASON_PHRASES[504] = "Gateway Timeout";
+        REASON_PHRASES[505] = "HTTP Version Not Supported";
+    }
+
+    private HttpStatus() {
+    }
+
+    public static String reasonPhrase(int statusCode) {
+        if (statusCode < 0 || statusCode >= REASON_PHRASES.length) {
+            return "";
+        }
+        String phrase = REASON_PHRASES[statusCode];
+        return phrase == null ? "" : phrase;
+    }
+}
@@ -2,25 +2,42 @@ package com.github.cloudgyb.jerry.http;
 
 import com.github.cloudgyb.jerry.servlet.HttpServletRequestImpl;
 import com.github.cloudgyb.jerry.servlet.HttpServletResponseImpl;
+import com.github.cloudgyb.jerry.servlet.RequestRecycler;
 import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 
 /**
  * @author cloudgyb
  * @since 2025/2/10 20:51
  */
-public class JerryHttpHandler implements HttpHandler {
+public class JerryHttpHandler implements ExchangeHandler {
     private final ServletContextImpl servletContext;
+    private final BufferPool bufferPool;
+    // null unless the request and response objects are recycled
+    private final RequestRecycler recycler;
 
     public JerryHttpHandler(ServletContextImpl servletContext) {
+        this(servletContext, null);
+    }
+
+    public JerryHttpHandler(ServletContextImpl servletContext, BufferPool bufferPool) {
+        this(servletContext, bufferPool, null);
+    }
+
+    public JerryHttpHandler(ServletContextImpl servletContext, BufferPool bufferPool, RequestRecycler recycler) {
         this.servletContext = servletContext;
+        this.bufferPool = bufferPool;
+        this.recycler = recycler;
     }
 
     @Override
-    public void handle(HttpExchange exchange) {
+    public void handle(Exchange exchange) {
+        if (recycler != null) {
+            recycler.handle(exchange);
+            return;
+        }
         HttpServletRequestImpl httpServletRequest = new HttpServletRequestImpl(exchange, servletContext);
-        HttpServletResponseImpl httpServletResponse = new HttpServletResponseImpl(exchange, httpServletRequest);
+        HttpServletResponseImpl httpServletResponse = new HttpServletResponseImpl(exchange, httpServletRequest,
+                bufferPool);
         servletContext.process(httpServletRequest, httpServletResponse);
     }
 }
@@ -1,8 +1,11 @@
 package com.github.cloudgyb.jerry.http;
 
+import com.github.cloudgyb.jerry.http.jdk.JdkHttpConnector;
+import com.github.cloudgyb.jerry.http.nio.NioHttpConnector;
+import com.github.cloudgyb.jerry.servlet.RequestRecycler;
+import com.github.cloudgyb.jerry.servlet.ResponseSizeStats;
 import com.github.cloudgyb.jerry.servlet.ServletContextFactory;
 import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
-import com.sun.net.httpserver.HttpServer;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 import org.slf4j.Logger;
@@ -12,8 +15,10 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http Server 实现类
@@ -23,48 +28,124 @@ import java.util.concurrent.Executors;
  */
 public class JerryHttpServer {
     private static final Logger logger = LoggerFactory.getLogger(JerryHttpServer.class);
-    private final InetSocketAddress address;
-    private final HttpServer httpServer;
+    // Recycled requests and responses are checked for use after they ended when assertions are on (-ea)
+    private static final boolean RECYCLE_CHECKS = assertionsEnabled();
+    private final ServerConfig config;
     private final Map<String, ServletContextImpl> servletContextMap = new HashMap<>();
+    private Connector connector;
+    private ExecutorService executor;
+    private BufferPool bufferPool;
 
-    public JerryHttpServer(InetSocketAddress address) throws IOException {
-        this.address = address;
-        this.httpServer = HttpServer.create(address, 512);
+    public JerryHttpServer(ServerConfig config) {
+        this.config = config;
     }
 
-    public JerryHttpServer(int port) throws IOException {
+    public JerryHttpServer(InetSocketAddress address) {
+        this(new ServerConfig(address));
+    }
+
+    public JerryHttpServer(int port) {
         this(new InetSocketAddress(port));
     }
 
-    public JerryHttpServer(String host, int port) throws IOException {
+    public JerryHttpServer(String host, int port) {
         this(new InetSocketAddress(host, port));
     }
 
+    /**
+     * Deploys an initialized ServletContext, must be called before {@link #start()}.
+     */
+    public void addServletContext(ServletContextImpl servletContext) {
+        if (connector != null) {
+            throw new IllegalStateException("The JerryServer has already been started!");
+        }
+        servletContextMap.put(servletContext.getContextPath(), servletContext);
+    }
+
     public void start() {
-        ServletContextImpl servletContext;
+        if (servletContextMap.isEmpty()) {
+            ServletContextImpl servletContext;
+            try {
+                servletContext = ServletContextFactory.create(Paths.get("D:\\IdeaProjects\\TestServlet\\target\\Test.war"));
+            } catch (ServletException e) {
+                throw new RuntimeException(e);
+            }
+            servletContextMap.put(servletContext.getContextPath(), servletContext);
+        }
+        if (config.getResponseBufferMaxSize() < config.getResponseBufferMinSize()) {
+            throw new IllegalArgumentException("responseBufferMaxSize must be >= responseBufferMinSize");
+        }
+        connector = createConnector();
+        servletContextMap.forEach((contextPath, servletContext) -> {
+            servletContext.setResponseBufferSizeBounds(config.getResponseBufferMinSize(),
+                    config.getResponseBufferMaxSize());
+            servletContext.setMappingCacheSize(config.getMappingCacheSize());
+            RequestRecycler recycler = recycleRequests() ?
+                    new RequestRecycler(servletContext, bufferPool, RECYCLE_CHECKS) : null;
+            connector.createContext(contextPath, new JerryHttpHandler(servletContext, bufferPool, recycler));
+        });
         try {
-            servletContext = ServletContextFactory.create(Paths.get("D:\\IdeaProjects\\TestServlet\\target\\Test.war"));
-        } catch (ServletException e) {
+            connector.start();
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        servletContextMap.put(servletContext.getContextPath(), servletContext);
-        JerryHttpHandler jerryHttpHandler = new JerryHttpHandler(servletContext);
-        httpServer.setExecutor(Executors.newSingleThreadExecutor());
-        httpServer.createContext(servletContext.getContextPath(), jerryHttpHandler);
-        httpServer.start();
         if (logger.isInfoEnabled()) {
-            logger.info("The JerryServer is running! It is listening at {}:{}",
-                    address.getHostString(), address.getPort());
+            InetSocketAddress address = connector.getAddress();
+            logger.info("The JerryServer({} connector, {} threads) is running! It is listening at {}:{}",
+                    config.getConnectorType(), config.getExecutionMode(), address.getHostString(), address.getPort());
+        }
+    }
+
+    @SuppressWarnings({"AssertWithSideEffects", "ConstantConditions"})
+    private static boolean assertionsEnabled() {
+        boolean enabled = false;
+        assert enabled = true;
+        return enabled;
+    }
+
+    /**
+     * Recycling is per worker thread, a virtual thread runs a single request.
+     */
+    private boolean recycleRequests() {
+        return config.isRecycleRequests() && !(config.getExecutionMode() == ExecutionMode.VIRTUAL
+                && WorkerExecutors.isVirtualThreadSupported());
+    }
+
+    private Connector createConnector() {
+        executor = WorkerExecutors.create(config);
+        bufferPool = new BufferPool(config.getBufferPoolMaxBytes());
+        switch (config.getConnectorType()) {
+            case JDK:
+                return new JdkHttpConnector(config, executor);
+            case NIO:
+            default:
+                return new NioHttpConnector(config, executor, bufferPool);
         }
     }
 
     public void stop() {
-        httpServer.stop(2);
+        if (connector != null) {
+            connector.stop(2);
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
         servletContextMap.forEach((k, servletContext) -> {
             logger.debug("Destroy ServletContext: {}", k);
             servletContext.destroy();
         });
         servletContextMap.clear();
+        if (bufferPool != null) {
+            bufferPool.close();
+        }
         if (logger.isInfoEnabled()) {
             logger.info("The JerryServer is stopped!");
         }
@@ -73,4 +154,53 @@ public class JerryHttpServer {
     public ServletContext getServletContext(String contextPath) {
         return servletContextMap.get(contextPath);
     }
+
+    /**
+     * @return the address the server is listening at, useful when bound to port 0
+     */
+    public InetSocketAddress getAddress() {
+        return connector == null ? config.getAddress() : connector.getAddress();
+    }
+
+    /**
+     * @return a snapshot of the worker pool: size, queue depth and the number of requests shed with 503
+     */
+    public WorkerPoolStats getWorkerPoolStats() {
+        if (executor == null) {
+            throw new IllegalStateException("The JerryServer has not been started!");
+        }
+        return WorkerExecutors.stats(executor);
+    }
+
+    /**
+     * @return connection and keep-alive counters, or null if the connector does not track them
+     */
+    public ConnectionStats getConnectionStats() {
+        if (connector == null) {
+            throw new IllegalStateException("The JerryServer has not been started!");
+        }
+        return connector.getConnectionStats();
+    }
+
+    /**
+     * @return hits, misses and outstanding buffers of the server-wide buffer pool
+     */
+    public BufferPoolStats getBufferPoolStats() {
+        if (bufferPool == null) {
+            throw new IllegalStateException("The JerryServer has not been started!");
+        }
+        return bufferPool.getStats();
+    }
+
+    /**
+     * @return the response sizes learned for each servlet of a context, or null if there is no such context
+     */
+    public List<ResponseSizeStats> getResponseSizeStats(String contextPath) {
+        ServletContextImpl servletContext = servletContextMap.get(contextPath);
+        return servletContext == null ? null : servletContext.getResponseSizeStats();
+    }
+
+    public ServerConfig getConfig() {
+        return config;
+    }
 }
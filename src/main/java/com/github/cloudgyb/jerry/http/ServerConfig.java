@@ -0,0 +1,466 @@
+package com.github.cloudgyb.jerry.http;
+
+import javax.net.ssl.SSLContext;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+
+/**
+ * Configuration of JerryHttpServer.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 10:18
+ */
+public class ServerConfig {
+    private InetSocketAddress address;
+    private ConnectorType connectorType = ConnectorType.NIO;
+    private int backlog = 512;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+    // Worker pool size in PLATFORM execution mode
+    private int workerThreads = Math.max(8, Runtime.getRuntime().availableProcessors() * 8);
+    // Requests waiting for a free worker, beyond it requests are shed with 503
+    private int workerQueueSize = 1024;
+    private int retryAfterSeconds = 1;
+    // NIO connector
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    // Listening sockets sharing the port with SO_REUSEPORT, each with its own acceptor
+    private int acceptorShards = 1;
+    // Unix domain socket listened on in addition to the address, null means none
+    private Path unixDomainSocketPath;
+    private int receiveBufferSize = 0; // 0 means the OS default
+    private int sendBufferSize = 0; // 0 means the OS default
+    private boolean tcpNoDelay = true;
+    private int maxRequestHeaderSize = 8192;
+    // The NIO connector buffers a request body before dispatch, an HTTP/2 connection one per stream
+    private int maxRequestBodySize = 16 * 1024 * 1024;
+    // Buffer pool: bytes kept per free list, 0 disables pooling
+    private long bufferPoolMaxBytes = 64L * 1024 * 1024;
+    // Socket read buffers of the NIO connector off-heap
+    private boolean directBuffers = false;
+    // Bounds of the response buffer sizes learned per servlet
+    private int responseBufferMinSize = 1024;
+    private int responseBufferMaxSize = 64 * 1024;
+    // Chunked responses of the NIO connector, a flush window of 0 disables coalescing
+    private int minChunkSize = 8192;
+    private long flushCoalesceMillis = 10;
+    // Request paths each context remembers the mapping of, 0 disables the cache
+    private int mappingCacheSize = 1024;
+    // Reuse the request and response objects of each worker thread
+    private boolean recycleRequests = false;
+    // Keep-alive, 0 means unlimited
+    private long keepAliveTimeoutMillis = 60_000;
+    private int maxKeepAliveRequests = 1000;
+    // HTTP/2 cleartext (h2c) on the NIO connector
+    private boolean http2Enabled = true;
+    private int http2MaxConcurrentStreams = 100;
+    // TLS, null means plain HTTP
+    private SSLContext sslContext;
+    private int tlsSessionCacheSize = 10_000;
+    private int tlsSessionTimeoutSeconds = 3600;
+
+    public ServerConfig(InetSocketAddress address) {
+        if (address == null) {
+            throw new IllegalArgumentException("address cannot be null!");
+        }
+        this.address = address;
+    }
+
+    public ServerConfig(int port) {
+        this(new InetSocketAddress(port));
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public void setAddress(InetSocketAddress address) {
+        if (address == null) {
+            throw new IllegalArgumentException("address cannot be null!");
+        }
+        this.address = address;
+    }
+
+    public ConnectorType getConnectorType() {
+        return connectorType;
+    }
+
+    public void setConnectorType(ConnectorType connectorType) {
+        if (connectorType == null) {
+            throw new IllegalArgumentException("connectorType cannot be null!");
+        }
+        this.connectorType = connectorType;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        if (executionMode == null) {
+            throw new IllegalArgumentException("executionMode cannot be null!");
+        }
+        this.executionMode = executionMode;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("ioThreads must be > 0");
+        }
+        this.ioThreads = ioThreads;
+    }
+
+    public int getAcceptorShards() {
+        return acceptorShards;
+    }
+
+    /**
+     * @param acceptorShards the number of listening sockets the NIO connector binds to the
+     *                       port with SO_REUSEPORT, each served by its own acceptor thread
+     *                       and event loops. It spreads bursts of new connections over the
+     *                       cores; 1 (the default) means a single listening socket. Falls
+     *                       back to 1 where SO_REUSEPORT is not supported.
+     */
+    public void setAcceptorShards(int acceptorShards) {
+        if (acceptorShards <= 0) {
+            throw new IllegalArgumentException("acceptorShards must be > 0");
+        }
+        this.acceptorShards = acceptorShards;
+    }
+
+    public Path getUnixDomainSocketPath() {
+        return unixDomainSocketPath;
+    }
+
+    /**
+     * @param unixDomainSocketPath a Unix domain socket the NIO connector listens on in addition
+     *                             to the TCP address, e.g. for a proxy on the same host. Requires
+     *                             Java 16+ at runtime. Requests received on it report the loopback
+     *                             address with port 0 as remote and local address.
+     */
+    public void setUnixDomainSocketPath(Path unixDomainSocketPath) {
+        this.unixDomainSocketPath = unixDomainSocketPath;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException("workerThreads must be > 0");
+        }
+        this.workerThreads = workerThreads;
+    }
+
+    public int getWorkerQueueSize() {
+        return workerQueueSize;
+    }
+
+    /**
+     * @param workerQueueSize the maximum number of requests waiting for a worker in PLATFORM
+     *                        execution mode, 0 means a request is only accepted if a worker is idle
+     */
+    public void setWorkerQueueSize(int workerQueueSize) {
+        if (workerQueueSize < 0) {
+            throw new IllegalArgumentException("workerQueueSize must be >= 0");
+        }
+        this.workerQueueSize = workerQueueSize;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * @param retryAfterSeconds the <code>Retry-After</code> value of the 503 sent when a request is shed
+     */
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        if (retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("retryAfterSeconds must be >= 0");
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getMaxRequestHeaderSize() {
+        return maxRequestHeaderSize;
+    }
+
+    public void setMaxRequestHeaderSize(int maxRequestHeaderSize) {
+        if (maxRequestHeaderSize < 256) {
+            throw new IllegalArgumentException("maxRequestHeaderSize must be >= 256");
+        }
+        this.maxRequestHeaderSize = maxRequestHeaderSize;
+    }
+
+    public int getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    /**
+     * Bounds the request bodies of the NIO connector, which reads a whole
+     * body into memory before the request is dispatched. A larger body is
+     * answered with 413 on HTTP/1.x and resets its stream on HTTP/2.
+     */
+    public void setMaxRequestBodySize(int maxRequestBodySize) {
+        if (maxRequestBodySize < 0) {
+            throw new IllegalArgumentException("maxRequestBodySize must be >= 0");
+        }
+        this.maxRequestBodySize = maxRequestBodySize;
+    }
+
+    public long getBufferPoolMaxBytes() {
+        return bufferPoolMaxBytes;
+    }
+
+    /**
+     * @param bufferPoolMaxBytes the bytes the server-wide {@link BufferPool} keeps in its heap and
+     *                           in its direct free lists each; 0 disables pooling
+     */
+    public void setBufferPoolMaxBytes(long bufferPoolMaxBytes) {
+        if (bufferPoolMaxBytes < 0) {
+            throw new IllegalArgumentException("bufferPoolMaxBytes must be >= 0");
+        }
+        this.bufferPoolMaxBytes = bufferPoolMaxBytes;
+    }
+
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+
+    /**
+     * @param directBuffers whether the NIO connector reads into direct buffers, which saves the
+     *                      JDK's copy through a temporary direct buffer on every read. Response
+     *                      and request body buffers stay on the heap, they are handed to
+     *                      <code>byte[]</code> based streams.
+     */
+    public void setDirectBuffers(boolean directBuffers) {
+        this.directBuffers = directBuffers;
+    }
+
+    public int getResponseBufferMinSize() {
+        return responseBufferMinSize;
+    }
+
+    /**
+     * @param responseBufferMinSize the smallest response buffer a servlet starts with. The size
+     *                              follows the 90th percentile of the servlet's recent response
+     *                              sizes, so that most responses are sent with a Content-Length
+     */
+    public void setResponseBufferMinSize(int responseBufferMinSize) {
+        if (responseBufferMinSize <= 0) {
+            throw new IllegalArgumentException("responseBufferMinSize must be > 0");
+        }
+        this.responseBufferMinSize = responseBufferMinSize;
+    }
+
+    public int getResponseBufferMaxSize() {
+        return responseBufferMaxSize;
+    }
+
+    /**
+     * @param responseBufferMaxSize the largest response buffer a servlet starts with, larger
+     *                              responses are chunked; set it to the minimum size to turn
+     *                              the learning off
+     */
+    public void setResponseBufferMaxSize(int responseBufferMaxSize) {
+        if (responseBufferMaxSize <= 0) {
+            throw new IllegalArgumentException("responseBufferMaxSize must be > 0");
+        }
+        this.responseBufferMaxSize = responseBufferMaxSize;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    /**
+     * @param minChunkSize the bytes of a chunked response body the NIO connector gathers before
+     *                     it sends them as one chunk; smaller chunks only leave on a flush or
+     *                     at the end of the response
+     */
+    public void setMinChunkSize(int minChunkSize) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException("minChunkSize must be > 0");
+        }
+        this.minChunkSize = minChunkSize;
+    }
+
+    public long getFlushCoalesceMillis() {
+        return flushCoalesceMillis;
+    }
+
+    /**
+     * @param flushCoalesceMillis a flush of a chunked response less than this long after its
+     *                            previous chunk is held back and sent with the next chunk, or
+     *                            at the end of that window at the latest, 0 sends every flush.
+     *                            Responses of type <code>text/event-stream</code> or with
+     *                            <code>X-Accel-Buffering: no</code> are always flushed at once
+     */
+    public void setFlushCoalesceMillis(long flushCoalesceMillis) {
+        if (flushCoalesceMillis < 0) {
+            throw new IllegalArgumentException("flushCoalesceMillis must be >= 0");
+        }
+        this.flushCoalesceMillis = flushCoalesceMillis;
+    }
+
+    public int getMappingCacheSize() {
+        return mappingCacheSize;
+    }
+
+    /**
+     * @param mappingCacheSize how many request paths each context remembers the servlet, servlet
+     *                         path and filters of, the least recently used ones are dropped first
+     */
+    public void setMappingCacheSize(int mappingCacheSize) {
+        if (mappingCacheSize < 0) {
+            throw new IllegalArgumentException("mappingCacheSize must be >= 0");
+        }
+        this.mappingCacheSize = mappingCacheSize;
+    }
+
+    public boolean isRecycleRequests() {
+        return recycleRequests;
+    }
+
+    /**
+     * @param recycleRequests whether each worker thread resets and reuses one request and
+     *                        response, with their streams, writer and maps, instead of building
+     *                        new ones for every request. Only platform worker threads recycle,
+     *                        a virtual thread runs a single request. With assertions enabled
+     *                        the servlet gets facades that throw once the request has ended.
+     */
+    public void setRecycleRequests(boolean recycleRequests) {
+        this.recycleRequests = recycleRequests;
+    }
+
+    public long getKeepAliveTimeoutMillis() {
+        return keepAliveTimeoutMillis;
+    }
+
+    /**
+     * @param keepAliveTimeoutMillis how long a connection may stay idle between requests (or while
+     *                               sending one) before it is closed, 0 means never
+     */
+    public void setKeepAliveTimeoutMillis(long keepAliveTimeoutMillis) {
+        if (keepAliveTimeoutMillis < 0) {
+            throw new IllegalArgumentException("keepAliveTimeoutMillis must be >= 0");
+        }
+        this.keepAliveTimeoutMillis = keepAliveTimeoutMillis;
+    }
+
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    /**
+     * @param maxKeepAliveRequests the number of requests served on one connection before it is
+     *                             closed with <code>Connection: close</code>, 0 means unlimited
+     */
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+        if (maxKeepAliveRequests < 0) {
+            throw new IllegalArgumentException("maxKeepAliveRequests must be >= 0");
+        }
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    /**
+     * @param http2Enabled whether the NIO connector accepts h2c, both with prior knowledge
+     *                     and through <code>Upgrade: h2c</code>
+     */
+    public void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+        if (http2MaxConcurrentStreams <= 0) {
+            throw new IllegalArgumentException("http2MaxConcurrentStreams must be > 0");
+        }
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * @param sslContext an initialized SSLContext to serve HTTPS with, null for plain HTTP.
+     *                   Both connectors support it; on the NIO connector HTTP/2 is negotiated
+     *                   with ALPN. Sessions are resumed from a bounded cache, and with
+     *                   stateless session tickets where the JDK enables them
+     *                   (<code>jdk.tls.server.enableSessionTicketExtension</code>).
+     */
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    /**
+     * @param tlsSessionCacheSize the maximum number of TLS sessions kept for resumption, 0 means unlimited
+     */
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        if (tlsSessionCacheSize < 0) {
+            throw new IllegalArgumentException("tlsSessionCacheSize must be >= 0");
+        }
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    public int getTlsSessionTimeoutSeconds() {
+        return tlsSessionTimeoutSeconds;
+    }
+
+    /**
+     * @param tlsSessionTimeoutSeconds how long a TLS session can be resumed, 0 means no limit
+     */
+    public void setTlsSessionTimeoutSeconds(int tlsSessionTimeoutSeconds) {
+        if (tlsSessionTimeoutSeconds < 0) {
+            throw new IllegalArgumentException("tlsSessionTimeoutSeconds must be >= 0");
+        }
+        this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.cloudgyb.jerry.http;
+
+import com.github.cloudgyb.jerry.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates the executor that servlet code runs on, according to {@link ServerConfig#getExecutionMode()}.
+ * <p>
+ * In PLATFORM mode the pool has a bounded queue: once <code>workerThreads</code> are busy and
+ * <code>workerQueueSize</code> requests are waiting, <code>execute</code> throws
+ * {@link RejectedExecutionException} and the connector answers 503 right away.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/13 09:45
+ */
+public final class WorkerExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(WorkerExecutors.class);
+    static final String WORKER_THREAD_PREFIX = "JerryWorker";
+    // Executors.newVirtualThreadPerTaskExecutor(), resolved reflectively because we compile for Java 11.
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookupVirtualThreadExecutorFactory();
+
+    private WorkerExecutors() {
+    }
+
+    private static Method lookupVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    public static ExecutorService create(ServerConfig config) {
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            if (isVirtualThreadSupported()) {
+                try {
+                    return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    logger.warn("Failed to create the virtual thread executor, fall back to platform threads", e);
+                }
+            } else {
+                logger.warn("Virtual threads are not supported by Java {}, fall back to platform threads",
+                        System.getProperty("java.version"));
+            }
+        }
+        int queueSize = config.getWorkerQueueSize();
+        BlockingQueue<Runnable> queue = queueSize == 0 ? new SynchronousQueue<>() : new LinkedBlockingQueue<>(queueSize);
+        int workerThreads = config.getWorkerThreads();
+        return new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS, queue,
+                new NamedThreadFactory(WORKER_THREAD_PREFIX), new CountingAbortPolicy());
+    }
+
+    /**
+     * @return a snapshot of the executor created by {@link #create(ServerConfig)}
+     */
+    public static WorkerPoolStats stats(ExecutorService executor) {
+        if (!(executor instanceof ThreadPoolExecutor)) {
+            // Virtual threads: unbounded and nothing is ever queued or rejected
+            return new WorkerPoolStats(-1, -1, 0, 0, 0);
+        }
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        BlockingQueue<Runnable> queue = pool.getQueue();
+        long rejected = 0;
+        if (pool.getRejectedExecutionHandler() instanceof CountingAbortPolicy) {
+            rejected = ((CountingAbortPolicy) pool.getRejectedExecutionHandler()).rejected.sum();
+        }
+        return new WorkerPoolStats(pool.getPoolSize(), pool.getActiveCount(), queue.size(),
+                queue.size() + queue.remainingCapacity(), rejected);
+    }
+
+    private static class CountingAbortPolicy implements RejectedExecutionHandler {
+        private final LongAdder rejected = new LongAdder();
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejected.increment();
+            throw new RejectedExecutionException("Worker pool is saturated");
+        }
+    }
+}
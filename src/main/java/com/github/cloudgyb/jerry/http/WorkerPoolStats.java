@@ -0,0 +1,62 @@
+package com.github.cloudgyb.jerry.http;
+
+/**
+ * A point in time snapshot of the worker pool.
+ *
+ * @author cloudgyb
+ * @since 2025/4/13 14:10
+ */
+public class WorkerPoolStats {
+    private final int poolSize;
+    private final int activeWorkers;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long rejectedCount;
+
+    public WorkerPoolStats(int poolSize, int activeWorkers, int queueDepth, int queueCapacity, long rejectedCount) {
+        this.poolSize = poolSize;
+        this.activeWorkers = activeWorkers;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.rejectedCount = rejectedCount;
+    }
+
+    /**
+     * @return the number of worker threads, -1 for virtual threads
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return the approximate number of workers running a request, -1 for virtual threads
+     */
+    public int getActiveWorkers() {
+        return activeWorkers;
+    }
+
+    /**
+     * @return the number of requests waiting for a worker
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return the number of requests shed with 503 since the server started
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerPoolStats{poolSize=" + poolSize + ", activeWorkers=" + activeWorkers +
+                ", queueDepth=" + queueDepth + ", queueCapacity=" + queueCapacity +
+                ", rejectedCount=" + rejectedCount + '}';
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.cloudgyb.jerry.http.jdk;
+
+import com.github.cloudgyb.jerry.http.Exchange;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsExchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adapts a <code>com.sun.net.httpserver.HttpExchange</code> to {@link Exchange}.
+ *
+ * @author cloudgyb
+ * @since 2025/4/8 21:20
+ */
+class JdkExchange implements Exchange {
+    private final HttpExchange httpExchange;
+    private final String requestTarget;
+    private final boolean head;
+    private final HttpHeaders requestHeaders;
+    private final HttpHeaders responseHeaders = new HttpHeaders();
+    private boolean committed;
+
+    JdkExchange(HttpExchange httpExchange) {
+        this.httpExchange = httpExchange;
+        this.requestTarget = httpExchange.getRequestURI().toString();
+        this.head = "HEAD".equals(httpExchange.getRequestMethod());
+        Headers headers = httpExchange.getRequestHeaders();
+        this.requestHeaders = new HttpHeaders(headers.size() + 4);
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            for (String value : entry.getValue()) {
+                requestHeaders.add(entry.getKey(), value);
+            }
+        }
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return httpExchange.getRequestMethod();
+    }
+
+    @Override
+    public String getRequestTarget() {
+        return requestTarget;
+    }
+
+    @Override
+    public String getRequestPath() {
+        return httpExchange.getRequestURI().getRawPath();
+    }
+
+    @Override
+    public String getQueryString() {
+        return httpExchange.getRequestURI().getRawQuery();
+    }
+
+    @Override
+    public String getProtocol() {
+        return httpExchange.getProtocol();
+    }
+
+    @Override
+    public HttpHeaders getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return httpExchange.getRequestBody();
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public void commit(int statusCode, long contentLength) throws IOException {
+        Headers headers = httpExchange.getResponseHeaders();
+        for (int i = 0; i < responseHeaders.size(); i++) {
+            headers.add(responseHeaders.nameAt(i), responseHeaders.valueAt(i));
+        }
+        long length;
+        if (head) {
+            // The JDK server drops a length passed for HEAD, so the counted one goes in as a header
+            if (contentLength > 0) {
+                headers.set("Content-Length", Long.toString(contentLength));
+            }
+            // The exchange ends right in sendResponseHeaders, and the JDK server only keeps
+            // the connection open if the request body has been consumed by then
+            httpExchange.getRequestBody().close();
+            length = -1;
+        } else {
+            // The JDK server uses -1 for no body and 0 for chunked
+            length = contentLength == 0 ? -1 : contentLength < 0 ? 0 : contentLength;
+        }
+        httpExchange.sendResponseHeaders(statusCode, length);
+        committed = true;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return httpExchange.getResponseBody();
+    }
+
+    @Override
+    public void close() {
+        httpExchange.close();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return httpExchange.getRemoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return httpExchange.getLocalAddress();
+    }
+
+    @Override
+    public boolean isSecure() {
+        return httpExchange instanceof HttpsExchange;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.cloudgyb.jerry.http.jdk;
+
+import com.github.cloudgyb.jerry.http.Connector;
+import com.github.cloudgyb.jerry.http.ExchangeHandler;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Connector backed by the JDK built-in <code>com.sun.net.httpserver.HttpServer</code>.
+ * Its exchanges are adapted to {@link com.github.cloudgyb.jerry.http.Exchange} by {@link JdkExchange}.
+ * <p>
+ * The HttpServer runs without an executor, so its dispatcher thread only hands each
+ * exchange off to the worker executor, and can answer 503 itself when that is saturated.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 10:31
+ */
+public class JdkHttpConnector implements Connector {
+    private static final Logger logger = LoggerFactory.getLogger(JdkHttpConnector.class);
+    private final ServerConfig config;
+    private final Executor executor;
+    private final String retryAfter;
+    private final Map<String, ExchangeHandler> contexts = new LinkedHashMap<>();
+    private HttpServer httpServer;
+
+    public JdkHttpConnector(ServerConfig config, Executor executor) {
+        this.config = config;
+        this.executor = executor;
+        this.retryAfter = String.valueOf(config.getRetryAfterSeconds());
+    }
+
+    @Override
+    public void createContext(String contextPath, ExchangeHandler handler) {
+        contexts.put(contextPath, handler);
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (config.getUnixDomainSocketPath() != null) {
+            throw new IllegalStateException("Unix domain sockets are only supported by the NIO connector!");
+        }
+        if (config.getSslContext() == null) {
+            httpServer = HttpServer.create(config.getAddress(), config.getBacklog());
+        } else {
+            HttpsServer httpsServer = HttpsServer.create(config.getAddress(), config.getBacklog());
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(config.getSslContext()));
+            httpServer = httpsServer;
+        }
+        contexts.forEach((contextPath, handler) -> httpServer.createContext(contextPath,
+                httpExchange -> dispatch(httpExchange, handler)));
+        httpServer.start();
+    }
+
+    private void dispatch(HttpExchange httpExchange, ExchangeHandler handler) throws IOException {
+        try {
+            executor.execute(() -> handle(httpExchange, handler));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Request rejected by the worker executor: {}", e.getMessage());
+            httpExchange.getResponseHeaders().set("Retry-After", retryAfter);
+            httpExchange.getResponseHeaders().set("Connection", "close");
+            httpExchange.sendResponseHeaders(503, -1);
+            httpExchange.close();
+        }
+    }
+
+    private void handle(HttpExchange httpExchange, ExchangeHandler handler) {
+        try {
+            handler.handle(new JdkExchange(httpExchange));
+        } catch (Throwable e) {
+            logger.error("Failed to handle request: ", e);
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        if (httpServer != null) {
+            httpServer.stop(delaySeconds);
+        }
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return httpServer == null ? config.getAddress() : httpServer.getAddress();
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * HPACK decoder (RFC 7541) of one HTTP/2 connection. It owns the dynamic table
+ * the peer's encoder inserts into, so header blocks must be decoded in the order
+ * they arrive on the connection.
+ *
+ * @author cloudgyb
+ * @since 2025/4/16 20:20
+ */
+final class HpackDecoder {
+    // Per entry overhead defined by RFC 7541 4.1
+    private static final int ENTRY_OVERHEAD = 32;
+    // Newest entry first
+    private final ArrayDeque<String[]> dynamicTable = new ArrayDeque<>();
+    private final int maxTableSizeLimit;
+    private int maxTableSize;
+    private int tableSize;
+
+    /**
+     * @param maxTableSize the SETTINGS_HEADER_TABLE_SIZE we advertised
+     */
+    HpackDecoder(int maxTableSize) {
+        this.maxTableSizeLimit = maxTableSize;
+        this.maxTableSize = maxTableSize;
+    }
+
+    interface HeaderListener {
+        void onHeader(String name, String value) throws HpackException;
+    }
+
+    void decode(byte[] block, int length, HeaderListener listener) throws HpackException {
+        int[] pos = {0};
+        boolean headerSeen = false;
+        while (pos[0] < length) {
+            int b = block[pos[0]] & 0xff;
+            if ((b & 0x80) != 0) {
+                // Indexed header field
+                String[] entry = entry(decodeInt(block, length, pos, 7));
+                listener.onHeader(entry[0], entry[1]);
+                headerSeen = true;
+            } else if ((b & 0x40) != 0) {
+                // Literal with incremental indexing
+                String[] header = decodeLiteral(block, length, pos, 6);
+                add(header);
+                listener.onHeader(header[0], header[1]);
+                headerSeen = true;
+            } else if ((b & 0x20) != 0) {
+                // Dynamic table size update, only allowed at the start of a block
+                if (headerSeen) {
+                    throw new HpackException("Dynamic table size update after a header field");
+                }
+                int size = decodeInt(block, length, pos, 5);
+                if (size > maxTableSizeLimit) {
+                    throw new HpackException("Dynamic table size update exceeds the limit: " + size);
+                }
+                maxTableSize = size;
+                evict();
+            } else {
+                // Literal without indexing / never indexed
+                String[] header = decodeLiteral(block, length, pos, 4);
+                listener.onHeader(header[0], header[1]);
+                headerSeen = true;
+            }
+        }
+    }
+
+    private String[] decodeLiteral(byte[] block, int length, int[] pos, int prefixBits) throws HpackException {
+        int index = decodeInt(block, length, pos, prefixBits);
+        String name = index == 0 ? decodeString(block, length, pos) : entry(index)[0];
+        String value = decodeString(block, length, pos);
+        return new String[]{name, value};
+    }
+
+    private String[] entry(int index) throws HpackException {
+        if (index <= 0) {
+            throw new HpackException("Invalid header index: " + index);
+        }
+        if (index <= HpackStaticTable.SIZE) {
+            return HpackStaticTable.entry(index);
+        }
+        int dynamicIndex = index - HpackStaticTable.SIZE - 1;
+        if (dynamicIndex >= dynamicTable.size()) {
+            throw new HpackException("Invalid header index: " + index);
+        }
+        Iterator<String[]> iterator = dynamicTable.iterator();
+        for (int i = 0; i < dynamicIndex; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    private void add(String[] header) {
+        int size = header[0].length() + header[1].length() + ENTRY_OVERHEAD;
+        if (size > maxTableSize) {
+            // An entry larger than the table empties it
+            dynamicTable.clear();
+            tableSize = 0;
+            return;
+        }
+        dynamicTable.addFirst(header);
+        tableSize += size;
+        evict();
+    }
+
+    private void evict() {
+        while (tableSize > maxTableSize) {
+            String[] oldest = dynamicTable.removeLast();
+            tableSize -= oldest[0].length() + oldest[1].length() + ENTRY_OVERHEAD;
+        }
+    }
+
+    static int decodeInt(byte[] block, int length, int[] pos, int prefixBits) throws HpackException {
+        int max = (1 << prefixBits) - 1;
+        int value = block[pos[0]++] & max;
+        if (value < max) {
+            return value;
+        }
+        int shift = 0;
+        while (true) {
+            if (pos[0] >= length) {
+                throw new HpackException("Truncated integer");
+            }
+            int b = block[pos[0]++] & 0xff;
+            value += (b & 0x7f) << shift;
+            if (value < 0 || shift > 21) {
+                throw new HpackException("Integer overflow");
+            }
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static String decodeString(byte[] block, int length, int[] pos) throws HpackException {
+        if (pos[0] >= length) {
+            throw new HpackException("Truncated string");
+        }
+        boolean huffman = (block[pos[0]] & 0x80) != 0;
+        int len = decodeInt(block, length, pos, 7);
+        if (len > length - pos[0]) {
+            throw new HpackException("Truncated string");
+        }
+        String s = huffman ? Huffman.decode(block, pos[0], len)
+                : new String(block, pos[0], len, StandardCharsets.ISO_8859_1);
+        pos[0] += len;
+        return s;
+    }
+}
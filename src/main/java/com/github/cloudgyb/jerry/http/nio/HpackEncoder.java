@@ -0,0 +1,66 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HPACK encoder for response headers.
+ * <p>
+ * It refers to the static table but never inserts into the dynamic table, so
+ * it has no per-connection state and the header blocks of concurrent streams
+ * can be encoded independently, in any order, by the workers writing them.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/16 20:40
+ */
+final class HpackEncoder {
+
+    private HpackEncoder() {
+    }
+
+    /**
+     * @param name lower case header name
+     */
+    static void encode(String name, String value, ByteArrayOutputStream out) {
+        int index = HpackStaticTable.indexOf(name, value);
+        if (index > 0) {
+            encodeInt(index, 7, 0x80, out);
+            return;
+        }
+        // Literal header field without indexing
+        index = HpackStaticTable.indexOf(name);
+        encodeInt(index, 4, 0x00, out);
+        if (index == 0) {
+            encodeString(name, out);
+        }
+        encodeString(value, out);
+    }
+
+    static void encodeInt(int value, int prefixBits, int firstByteFlags, ByteArrayOutputStream out) {
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            out.write(firstByteFlags | value);
+            return;
+        }
+        out.write(firstByteFlags | max);
+        value -= max;
+        while (value >= 0x80) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void encodeString(String s, ByteArrayOutputStream out) {
+        int huffmanLength = Huffman.encodedLength(s);
+        if (huffmanLength < s.length()) {
+            encodeInt(huffmanLength, 7, 0x80, out);
+            Huffman.encode(s, out);
+        } else {
+            encodeInt(s.length(), 7, 0x00, out);
+            byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+/**
+ * A header block could not be decoded, a connection error of type COMPRESSION_ERROR.
+ *
+ * @author cloudgyb
+ * @since 2025/4/16 20:00
+ */
+class HpackException extends Exception {
+    HpackException(String message) {
+        super(message);
+    }
+}
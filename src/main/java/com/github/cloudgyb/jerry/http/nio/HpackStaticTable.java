@@ -0,0 +1,113 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The HPACK static table (RFC 7541 Appendix A), shared by all connections.
+ *
+ * @author cloudgyb
+ * @since 2025/4/16 20:10
+ */
+final class HpackStaticTable {
+    private static final String[][] ENTRIES = {
+            null,
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+    static final int SIZE = ENTRIES.length - 1;
+    private static final Map<String, Integer> NAME_INDEX = new HashMap<>();
+    private static final Map<String, Integer> NAME_VALUE_INDEX = new HashMap<>();
+
+    static {
+        for (int i = SIZE; i > 0; i--) {
+            // Iterate backwards so that the lowest index wins
+            NAME_INDEX.put(ENTRIES[i][0], i);
+            if (!ENTRIES[i][1].isEmpty()) {
+                NAME_VALUE_INDEX.put(ENTRIES[i][0] + '\0' + ENTRIES[i][1], i);
+            }
+        }
+    }
+
+    private HpackStaticTable() {
+    }
+
+    static String[] entry(int index) {
+        return ENTRIES[index];
+    }
+
+    /**
+     * @return the index of the entry with this name, or 0
+     */
+    static int indexOf(String name) {
+        Integer index = NAME_INDEX.get(name);
+        return index == null ? 0 : index;
+    }
+
+    /**
+     * @return the index of the entry with this name and value, or 0
+     */
+    static int indexOf(String name, String value) {
+        Integer index = NAME_VALUE_INDEX.get(name + '\0' + value);
+        return index == null ? 0 : index;
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The header fields of an HTTP/1.x request, kept as offsets into the
+ * request head. Names of common fields are shared constants; other names
+ * and all values only become Strings when they are looked at.
+ *
+ * @author cloudgyb
+ * @since 2025/4/19 16:20
+ */
+final class Http1RequestHeaders extends HttpHeaders {
+    private final byte[] head;
+    // nameStart, nameEnd, valueStart, valueEnd of each field
+    private final int[] offsets;
+    private int fields;
+
+    Http1RequestHeaders(byte[] head, int capacity) {
+        super(capacity);
+        this.head = head;
+        this.offsets = new int[capacity * 4];
+    }
+
+    /**
+     * @param knownName the constant name of a common field, or null
+     */
+    void addField(String knownName, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int i = fields++ * 4;
+        offsets[i] = nameStart;
+        offsets[i + 1] = nameEnd;
+        offsets[i + 2] = valueStart;
+        offsets[i + 3] = valueEnd;
+        addLazily(knownName);
+    }
+
+    @Override
+    protected String loadName(int index) {
+        return index < fields ? string(index * 4) : null;
+    }
+
+    @Override
+    protected String loadValue(int index) {
+        return index < fields ? string(index * 4 + 2) : null;
+    }
+
+    private String string(int offset) {
+        int start = offsets[offset];
+        return new String(head, start, offsets[offset + 1] - start, StandardCharsets.ISO_8859_1);
+    }
+}
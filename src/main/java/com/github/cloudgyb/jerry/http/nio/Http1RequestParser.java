@@ -0,0 +1,652 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Incremental HTTP/1.x request parser. It is fed with whatever the socket
+ * delivered and returns a request once the head and the whole body
+ * (Content-Length or chunked) have arrived.
+ * <p>
+ * The head is copied once out of the read buffer and parsed as bytes.
+ * Common methods and field names resolve to constants through lookup
+ * tables; everything else becomes a String only when it is asked for (see
+ * {@link NioRequest} and {@link Http1RequestHeaders}).
+ * </p>
+ * <p>
+ * The body is read into memory, so it is bounded by
+ * <code>ServerConfig.maxRequestBodySize</code>; a larger one is answered with 413.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 11:20
+ */
+final class Http1RequestParser {
+    private static final int HEAD = 0;
+    private static final int BODY = 1;
+    private static final int CHUNK_SIZE = 2;
+    private static final int CHUNK_DATA = 3;
+    private static final int CHUNK_DATA_END = 4;
+    private static final int TRAILER = 5;
+    private static final int MAX_CHUNK_SIZE_LINE = 1024;
+    static final int MAX_BODY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String HTTP_1_0 = "HTTP/1.0";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String TRANSFER_ENCODING = "Transfer-Encoding";
+    private static final String CONNECTION = "Connection";
+    private static final String EXPECT = "Expect";
+    private static final String UPGRADE = "Upgrade";
+    // Lookup tables by length, so that common methods and field names cost no String
+    private static final String[][] METHODS = byLength("GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS",
+            "PATCH", "TRACE", "CONNECT");
+    private static final String[][] HEADER_NAMES = byLength(CONTENT_LENGTH, TRANSFER_ENCODING, CONNECTION,
+            EXPECT, UPGRADE, "Host", "Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language",
+            "Authorization", "Cache-Control", "Content-Encoding", "Content-Type", "Cookie", "DNT", "Forwarded",
+            "HTTP2-Settings", "If-Match", "If-Modified-Since", "If-None-Match", "If-Range", "If-Unmodified-Since",
+            "Keep-Alive", "Max-Forwards", "Origin", "Pragma", "Priority", "Proxy-Authorization", "Range",
+            "Referer", "Sec-Fetch-Dest", "Sec-Fetch-Mode", "Sec-Fetch-Site", "Sec-Fetch-User", "TE", "Trailer",
+            "Upgrade-Insecure-Requests", "User-Agent", "Via", "X-Forwarded-For", "X-Forwarded-Host",
+            "X-Forwarded-Proto", "X-Real-IP", "X-Requested-With");
+
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+    // Stages request bodies, null to allocate them
+    private final BufferPool bufferPool;
+    private int state = HEAD;
+    // bytes of the current line/head already scanned for its terminator
+    private int scanned;
+    private int trailerSize;
+    private long remaining;
+    private NioRequest request;
+    private boolean continueExpected;
+    // Fields of the current head interpreted by the parser, see parseHeaderLine()
+    private long contentLength;
+    // Times chunked is listed in Transfer-Encoding, -1 without the field
+    private int chunkedCodings;
+    private boolean connectionClose;
+    private boolean connectionKeepAlive;
+    private int expectStart;
+    private int expectEnd;
+
+    Http1RequestParser(int maxHeaderSize, int maxBodySize, BufferPool bufferPool) {
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = Math.min(maxBodySize, MAX_BODY_SIZE);
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Consumes bytes from <code>buf</code> (in read mode).
+     *
+     * @return a complete request, or null if more data is needed
+     */
+    NioRequest parse(ByteBuffer buf) throws HttpParseException {
+        while (true) {
+            switch (state) {
+                case HEAD:
+                    if (!parseHead(buf)) {
+                        return null;
+                    }
+                    break;
+                case BODY:
+                    readBody(buf, remaining);
+                    if (remaining > 0) {
+                        return null;
+                    }
+                    return finish();
+                case CHUNK_SIZE:
+                    if (!parseChunkSize(buf)) {
+                        return null;
+                    }
+                    break;
+                case CHUNK_DATA:
+                    readBody(buf, remaining);
+                    if (remaining > 0) {
+                        return null;
+                    }
+                    state = CHUNK_DATA_END;
+                    break;
+                case CHUNK_DATA_END:
+                    if (buf.remaining() < 2) {
+                        return null;
+                    }
+                    if (buf.get() != '\r' || buf.get() != '\n') {
+                        throw new HttpParseException(400, "Invalid chunk terminator");
+                    }
+                    state = CHUNK_SIZE;
+                    break;
+                case TRAILER:
+                    if (!skipTrailer(buf)) {
+                        return null;
+                    }
+                    return finish();
+                default:
+                    throw new IllegalStateException("Unknown state: " + state);
+            }
+        }
+    }
+
+    /**
+     * @return true once, right after the head of a request carrying
+     * <code>Expect: 100-continue</code> has been parsed
+     */
+    boolean takeContinueExpectation() {
+        boolean expected = continueExpected;
+        continueExpected = false;
+        return expected;
+    }
+
+    /**
+     * @return true if no byte of a next request has been consumed yet
+     */
+    boolean isIdle() {
+        return state == HEAD && scanned == 0;
+    }
+
+    private NioRequest finish() {
+        NioRequest r = request;
+        request = null;
+        state = HEAD;
+        scanned = 0;
+        return r;
+    }
+
+    private boolean parseHead(ByteBuffer buf) throws HttpParseException {
+        if (scanned == 0) {
+            // Be lenient to empty lines preceding the request line (RFC 9112 2.2)
+            while (buf.hasRemaining()) {
+                byte b = buf.get(buf.position());
+                if (b != '\r' && b != '\n') {
+                    break;
+                }
+                buf.position(buf.position() + 1);
+            }
+        }
+        int start = buf.position();
+        int end = indexOfEmptyLine(buf, start + Math.max(0, scanned - 3));
+        if (end < 0) {
+            scanned = buf.remaining();
+            if (scanned >= maxHeaderSize) {
+                throw new HttpParseException(431, "Request header is too large");
+            }
+            return false;
+        }
+        int headLength = end - start;
+        if (headLength > maxHeaderSize) {
+            throw new HttpParseException(431, "Request header is too large");
+        }
+        // The read buffer is reused as soon as parsing returns, the request keeps a copy of its head
+        byte[] head = new byte[headLength];
+        buf.get(head);
+        buf.position(end + 4);
+        scanned = 0;
+        parseHead(head);
+        return true;
+    }
+
+    /**
+     * Parses the head in place: the request line and the header fields are
+     * only recorded as offsets into <code>head</code>, the fields the parser
+     * itself needs (framing, connection management) are interpreted on the
+     * bytes.
+     */
+    private void parseHead(byte[] head) throws HttpParseException {
+        int lineEnd = indexOfCrlf(head, 0);
+        if (lineEnd < 0) {
+            lineEnd = head.length;
+        }
+        int fields = 0;
+        for (int i = lineEnd; i >= 0 && i < head.length; i = indexOfCrlf(head, i + 2)) {
+            fields++;
+        }
+        Http1RequestHeaders headers = new Http1RequestHeaders(head, Math.max(fields, 1));
+        request = new NioRequest(headers);
+        request.head = head;
+        parseRequestLine(head, lineEnd);
+        resetFieldState();
+        int lineStart = lineEnd + 2;
+        while (lineStart < head.length) {
+            lineEnd = indexOfCrlf(head, lineStart);
+            if (lineEnd < 0) {
+                lineEnd = head.length;
+            }
+            parseHeaderLine(headers, head, lineStart, lineEnd);
+            lineStart = lineEnd + 2;
+        }
+        prepareBody();
+    }
+
+    private void parseRequestLine(byte[] head, int end) throws HttpParseException {
+        int sp1 = indexOf(head, 0, end, (byte) ' ');
+        int sp2 = lastIndexOf(head, end, (byte) ' ');
+        if (sp1 <= 0 || sp2 == sp1 || indexOf(head, sp1 + 1, end, (byte) ' ') != sp2) {
+            throw new HttpParseException(400, "Invalid request line");
+        }
+        String protocol;
+        if (equalsAscii(head, sp2 + 1, end, HTTP_1_1)) {
+            protocol = HTTP_1_1;
+        } else if (equalsAscii(head, sp2 + 1, end, HTTP_1_0)) {
+            protocol = HTTP_1_0;
+        } else {
+            protocol = new String(head, sp2 + 1, end - sp2 - 1, StandardCharsets.ISO_8859_1);
+            if (protocol.startsWith("HTTP/")) {
+                throw new HttpParseException(505, "Unsupported protocol: " + protocol);
+            }
+            throw new HttpParseException(400, "Invalid protocol: " + protocol);
+        }
+        for (int i = 0; i < sp1; i++) {
+            if (!isTokenChar(head[i])) {
+                throw new HttpParseException(400, "Invalid method");
+            }
+        }
+        int targetStart = sp1 + 1;
+        if (targetStart == sp2) {
+            throw new HttpParseException(400, "Empty request target");
+        }
+        int queryStart = -1;
+        for (int i = targetStart; i < sp2; i++) {
+            byte b = head[i];
+            // Also rejects non-ASCII bytes, which are negative
+            if (b <= ' ' || b == 0x7f) {
+                throw new HttpParseException(400, "Invalid request target");
+            }
+            if (b == '?' && queryStart < 0) {
+                queryStart = i + 1;
+            }
+        }
+        String method = lookup(METHODS, head, 0, sp1, false);
+        request.method = method != null ? method : new String(head, 0, sp1, StandardCharsets.ISO_8859_1);
+        request.protocol = protocol;
+        request.targetStart = targetStart;
+        request.targetEnd = sp2;
+        request.queryStart = queryStart;
+    }
+
+    private void parseHeaderLine(Http1RequestHeaders headers, byte[] head, int start, int end)
+            throws HttpParseException {
+        if (start == end) {
+            return;
+        }
+        byte first = head[start];
+        if (first == ' ' || first == '\t') {
+            throw new HttpParseException(400, "Obsolete line folding is not supported");
+        }
+        int colon = indexOf(head, start, end, (byte) ':');
+        if (colon <= start) {
+            throw new HttpParseException(400, "Invalid header line");
+        }
+        for (int i = start; i < colon; i++) {
+            if (!isTokenChar(head[i])) {
+                throw new HttpParseException(400, "Invalid header name");
+            }
+        }
+        int valueStart = colon + 1;
+        int valueEnd = end;
+        while (valueStart < valueEnd && isWhitespace(head[valueStart])) {
+            valueStart++;
+        }
+        while (valueEnd > valueStart && isWhitespace(head[valueEnd - 1])) {
+            valueEnd--;
+        }
+        String name = lookup(HEADER_NAMES, head, start, colon, true);
+        headers.addField(name, start, colon, valueStart, valueEnd);
+        if (name == null) {
+            return;
+        }
+        // Constants from the lookup table, compared by identity
+        if (name == CONTENT_LENGTH) {
+            long length = parseContentLength(head, valueStart, valueEnd);
+            if (contentLength >= 0 && length != contentLength) {
+                throw new HttpParseException(400, "Invalid Content-Length: " +
+                        new String(head, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1));
+            }
+            contentLength = length;
+        } else if (name == TRANSFER_ENCODING) {
+            chunkedCodings = Math.max(chunkedCodings, 0) + countChunked(head, valueStart, valueEnd);
+        } else if (name == CONNECTION) {
+            connectionClose |= hasToken(head, valueStart, valueEnd, "close");
+            connectionKeepAlive |= hasToken(head, valueStart, valueEnd, "keep-alive");
+        } else if (name == EXPECT && expectStart < 0) {
+            expectStart = valueStart;
+            expectEnd = valueEnd;
+        } else if (name == UPGRADE) {
+            request.upgrade = true;
+        }
+    }
+
+    private void resetFieldState() {
+        contentLength = -1;
+        chunkedCodings = -1;
+        connectionClose = false;
+        connectionKeepAlive = false;
+        expectStart = -1;
+        expectEnd = -1;
+    }
+
+    private static long parseContentLength(byte[] head, int start, int end) throws HttpParseException {
+        if (start == end) {
+            throw new HttpParseException(400, "Invalid Content-Length: ");
+        }
+        long length = 0;
+        for (int i = start; i < end; i++) {
+            int d = head[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new HttpParseException(400, "Invalid Content-Length: " +
+                        new String(head, start, end - start, StandardCharsets.ISO_8859_1));
+            }
+            // Saturate, anything above MAX_BODY_SIZE is rejected anyway
+            length = Math.min(length * 10 + d, MAX_BODY_SIZE + 1L);
+        }
+        return length;
+    }
+
+    private void prepareBody() throws HttpParseException {
+        NioRequest r = request;
+        byte[] head = r.head;
+        if (r.isHttp10()) {
+            r.keepAlive = connectionKeepAlive;
+        } else {
+            r.keepAlive = !connectionClose;
+        }
+        if (chunkedCodings >= 0) {
+            if (contentLength >= 0) {
+                throw new HttpParseException(400, "Both Transfer-Encoding and Content-Length are present");
+            }
+            if (chunkedCodings != 1) {
+                throw new HttpParseException(400, "chunked must be applied exactly once");
+            }
+            state = CHUNK_SIZE;
+        } else if (contentLength >= 0) {
+            if (contentLength > maxBodySize) {
+                throw new HttpParseException(413, "Request body is too large");
+            }
+            remaining = contentLength;
+            state = BODY;
+        } else {
+            remaining = 0;
+            state = BODY;
+        }
+        if ((state != BODY || remaining > 0) && expectStart >= 0 && !r.isHttp10()) {
+            if (!equalsIgnoreCase(head, expectStart, expectEnd, "100-continue")) {
+                throw new HttpParseException(417, "Unsupported expectation: " +
+                        new String(head, expectStart, expectEnd - expectStart, StandardCharsets.ISO_8859_1));
+            }
+            r.expectContinue = true;
+            continueExpected = true;
+        }
+    }
+
+    private boolean parseChunkSize(ByteBuffer buf) throws HttpParseException {
+        int start = buf.position();
+        int end = indexOfCrlf(buf, start + Math.max(0, scanned - 1));
+        if (end < 0) {
+            scanned = buf.remaining();
+            if (scanned > MAX_CHUNK_SIZE_LINE) {
+                throw new HttpParseException(400, "Chunk size line is too long");
+            }
+            return false;
+        }
+        long size = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            int d = Character.digit(buf.get(i), 16);
+            if (d < 0) {
+                break; // chunk extensions or whitespace
+            }
+            size = (size << 4) + d;
+            if (++digits > 8) {
+                throw new HttpParseException(413, "Chunk is too large");
+            }
+        }
+        if (digits == 0) {
+            throw new HttpParseException(400, "Invalid chunk size");
+        }
+        buf.position(end + 2);
+        scanned = 0;
+        if (size == 0) {
+            trailerSize = 0;
+            state = TRAILER;
+        } else {
+            if (request.bodyLength + size > maxBodySize) {
+                throw new HttpParseException(413, "Request body is too large");
+            }
+            remaining = size;
+            state = CHUNK_DATA;
+        }
+        return true;
+    }
+
+    private boolean skipTrailer(ByteBuffer buf) throws HttpParseException {
+        while (true) {
+            int start = buf.position();
+            int end = indexOfCrlf(buf, start + Math.max(0, scanned - 1));
+            if (end < 0) {
+                scanned = buf.remaining();
+                if (trailerSize + scanned > maxHeaderSize) {
+                    throw new HttpParseException(431, "Trailer is too large");
+                }
+                return false;
+            }
+            buf.position(end + 2);
+            scanned = 0;
+            if (end == start) {
+                return true;
+            }
+            trailerSize += end - start + 2;
+        }
+    }
+
+    private void readBody(ByteBuffer buf, long wanted) {
+        int n = (int) Math.min(wanted, buf.remaining());
+        if (n == 0) {
+            return;
+        }
+        NioRequest r = request;
+        int required = r.bodyLength + n;
+        if (required > r.body.length) {
+            int newLength = Math.max(required, Math.max(r.body.length * 2, 1024));
+            if (state == BODY) {
+                // The total is known up front, never grow past it
+                newLength = (int) Math.min(newLength, r.bodyLength + wanted);
+            }
+            r.growBody(newLength, bufferPool);
+        }
+        buf.get(r.body, r.bodyLength, n);
+        r.bodyLength += n;
+        remaining -= n;
+    }
+
+    private static int indexOfEmptyLine(ByteBuffer buf, int from) {
+        int limit = buf.limit() - 3;
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n'
+                    && buf.get(i + 2) == '\r' && buf.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfCrlf(byte[] b, int from) {
+        for (int i = from; i < b.length - 1; i++) {
+            if (b[i] == '\r' && b[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte c) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] b, int to, byte c) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equalsAscii(byte[] b, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (b[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] b, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!equalsIgnoreCase(b[start + i], s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(byte b, char c) {
+        if (b == c) {
+            return true;
+        }
+        // Only letters differ in case: 'A' ^ 'a' == 0x20
+        return (c | 0x20) >= 'a' && (c | 0x20) <= 'z' && (b | 0x20) == (c | 0x20);
+    }
+
+    /**
+     * Only chunked is supported, we do not decode any other transfer coding
+     * and must not guess the framing of a body that uses one.
+     *
+     * @return the times the Transfer-Encoding list in <code>[start, end)</code> names chunked
+     * @throws HttpParseException with 501 for any other coding (RFC 9112 6.1)
+     */
+    private static int countChunked(byte[] b, int start, int end) throws HttpParseException {
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            int comma = indexOf(b, i, end, (byte) ',');
+            int elementEnd = comma < 0 ? end : comma;
+            int s = i;
+            int e = elementEnd;
+            while (s < e && isWhitespace(b[s])) {
+                s++;
+            }
+            while (e > s && isWhitespace(b[e - 1])) {
+                e--;
+            }
+            if (equalsIgnoreCase(b, s, e, "chunked")) {
+                count++;
+            } else if (s < e) {
+                throw new HttpParseException(501, "Unsupported Transfer-Encoding: " +
+                        new String(b, s, e - s, StandardCharsets.ISO_8859_1));
+            }
+            i = elementEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the comma separated list in <code>[start, end)</code> contains <code>token</code>
+     */
+    private static boolean hasToken(byte[] b, int start, int end, String token) {
+        int i = start;
+        while (i < end) {
+            int comma = indexOf(b, i, end, (byte) ',');
+            int elementEnd = comma < 0 ? end : comma;
+            int s = i;
+            int e = elementEnd;
+            while (s < e && isWhitespace(b[s])) {
+                s++;
+            }
+            while (e > s && isWhitespace(b[e - 1])) {
+                e--;
+            }
+            if (equalsIgnoreCase(b, s, e, token)) {
+                return true;
+            }
+            i = elementEnd + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return the constant of <code>table</code> equal to <code>[start, end)</code>, or null
+     */
+    private static String lookup(String[][] table, byte[] b, int start, int end, boolean ignoreCase) {
+        int length = end - start;
+        if (length >= table.length || table[length] == null) {
+            return null;
+        }
+        for (String candidate : table[length]) {
+            if (ignoreCase ? equalsIgnoreCase(b, start, end, candidate) : equalsAscii(b, start, end, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static String[][] byLength(String... strings) {
+        int max = 0;
+        for (String s : strings) {
+            max = Math.max(max, s.length());
+        }
+        String[][] table = new String[max + 1][];
+        for (String s : strings) {
+            String[] bucket = table[s.length()];
+            bucket = bucket == null ? new String[1] : Arrays.copyOf(bucket, bucket.length + 1);
+            bucket[bucket.length - 1] = s;
+            table[s.length()] = bucket;
+        }
+        return table;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static int indexOfCrlf(ByteBuffer buf, int from) {
+        int limit = buf.limit() - 1;
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean hasToken(String headerValue, String token) {
+        if (headerValue == null) {
+            return false;
+        }
+        for (String s : headerValue.split(",")) {
+            if (s.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTokenChar(byte c) {
+        if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') {
+            return true;
+        }
+        return "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.ServerInfo;
+import com.github.cloudgyb.jerry.http.HttpDate;
+import com.github.cloudgyb.jerry.http.HttpStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes an HTTP/1.1 response head straight into bytes.
+ * <p>
+ * Lines that many responses share are encoded once and copied: the status
+ * lines, the <code>Date</code> line rendered by {@link HttpDate}, our
+ * <code>Server</code> line, the framing headers and the Content-Types seen
+ * most. Everything else is encoded as ISO-8859-1, a character outside of
+ * it becomes <code>?</code>.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/21 10:10
+ */
+final class Http1ResponseHead {
+    static final byte[] CONNECTION_CLOSE = line("Connection: close");
+    static final byte[] CONNECTION_KEEP_ALIVE = line("Connection: keep-alive");
+    static final byte[] TRANSFER_ENCODING_CHUNKED = line("Transfer-Encoding: chunked");
+    private static final byte[] SERVER = line("Server: " + ServerInfo.serverNameAndVersion);
+    private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[][] STATUS_LINES = new byte[600][];
+    // Content-Type value -> encoded line; bounded, values are up to the application
+    private static final int MAX_CONTENT_TYPES = 64;
+    private static final Map<String, byte[]> CONTENT_TYPES = new ConcurrentHashMap<>();
+
+    static {
+        for (int statusCode = 100; statusCode < STATUS_LINES.length; statusCode++) {
+            STATUS_LINES[statusCode] = statusLine(statusCode);
+        }
+        for (String contentType : new String[]{"text/html", "text/html;charset=UTF-8", "text/html; charset=utf-8",
+                "text/plain", "text/plain;charset=UTF-8", "application/json", "application/octet-stream"}) {
+            CONTENT_TYPES.put(contentType, line("Content-Type: " + contentType));
+        }
+    }
+
+    private byte[] buf = new byte[256];
+    private int count;
+
+    private static byte[] line(String line) {
+        return (line + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] statusLine(int statusCode) {
+        return line("HTTP/1.1 " + statusCode + " " + HttpStatus.reasonPhrase(statusCode));
+    }
+
+    Http1ResponseHead(int statusCode) {
+        byte[] statusLine = statusCode >= 100 && statusCode < STATUS_LINES.length
+                ? STATUS_LINES[statusCode] : statusLine(statusCode);
+        write(statusLine);
+        write(HttpDate.headerLine());
+    }
+
+    void header(String name, String value) {
+        if (name.equalsIgnoreCase("Server") && value.equals(ServerInfo.serverNameAndVersion)) {
+            write(SERVER);
+            return;
+        }
+        if (name.equalsIgnoreCase("Content-Type")) {
+            byte[] line = CONTENT_TYPES.get(value);
+            if (line == null && CONTENT_TYPES.size() < MAX_CONTENT_TYPES) {
+                line = line("Content-Type: " + value);
+                CONTENT_TYPES.putIfAbsent(value, line);
+            }
+            if (line != null) {
+                write(line);
+                return;
+            }
+        }
+        ensureCapacity(name.length() + value.length() + 4);
+        writeLatin1(name);
+        buf[count++] = ':';
+        buf[count++] = ' ';
+        writeLatin1(value);
+        buf[count++] = '\r';
+        buf[count++] = '\n';
+    }
+
+    void contentLength(long contentLength) {
+        write(CONTENT_LENGTH);
+        ensureCapacity(21);
+        if (contentLength == 0) {
+            buf[count++] = '0';
+        } else {
+            int start = count;
+            for (long n = contentLength; n > 0; n /= 10) {
+                buf[count++] = (byte) ('0' + n % 10);
+            }
+            for (int i = start, j = count - 1; i < j; i++, j--) {
+                byte b = buf[i];
+                buf[i] = buf[j];
+                buf[j] = b;
+            }
+        }
+        buf[count++] = '\r';
+        buf[count++] = '\n';
+    }
+
+    void write(byte[] line) {
+        ensureCapacity(line.length);
+        System.arraycopy(line, 0, buf, count, line.length);
+        count += line.length;
+    }
+
+    /**
+     * Ends the head with the empty line.
+     */
+    ByteBuffer toByteBuffer() {
+        ensureCapacity(2);
+        buf[count++] = '\r';
+        buf[count++] = '\n';
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    private void writeLatin1(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            buf[count++] = c <= 0xff ? (byte) c : (byte) '?';
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (count + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+        }
+    }
+}
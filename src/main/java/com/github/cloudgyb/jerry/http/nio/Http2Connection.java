@@ -0,0 +1,830 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The HTTP/2 (RFC 9113) state of a {@link NioConnection} that has switched
+ * to h2c, either by prior knowledge or by an HTTP/1.1 <code>Upgrade: h2c</code>.
+ * <p>
+ * Frames are read and header blocks are decoded on the event loop. A stream
+ * whose request is complete is dispatched to a worker, so the streams of one
+ * connection are served concurrently. Workers write their frames through
+ * {@link NioConnection#write(ByteBuffer...)}, which writes every frame as a
+ * whole, and wait for flow-control window when the peer is slow to read.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/17 09:30
+ */
+final class Http2Connection {
+    private static final Logger logger = LoggerFactory.getLogger(Http2Connection.class);
+    static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    static final String PROTOCOL = "HTTP/2.0";
+    // Frame types
+    static final int DATA = 0x0;
+    static final int HEADERS = 0x1;
+    static final int PRIORITY = 0x2;
+    static final int RST_STREAM = 0x3;
+    static final int SETTINGS = 0x4;
+    static final int PUSH_PROMISE = 0x5;
+    static final int PING = 0x6;
+    static final int GOAWAY = 0x7;
+    static final int WINDOW_UPDATE = 0x8;
+    static final int CONTINUATION = 0x9;
+    // Flags
+    static final int FLAG_END_STREAM = 0x1;
+    static final int FLAG_ACK = 0x1;
+    static final int FLAG_END_HEADERS = 0x4;
+    static final int FLAG_PADDED = 0x8;
+    static final int FLAG_PRIORITY = 0x20;
+    // Error codes
+    static final int NO_ERROR = 0x0;
+    static final int PROTOCOL_ERROR = 0x1;
+    static final int INTERNAL_ERROR = 0x2;
+    static final int FLOW_CONTROL_ERROR = 0x3;
+    static final int STREAM_CLOSED = 0x5;
+    static final int FRAME_SIZE_ERROR = 0x6;
+    static final int REFUSED_STREAM = 0x7;
+    static final int COMPRESSION_ERROR = 0x9;
+    static final int ENHANCE_YOUR_CALM = 0xb;
+    // Per field overhead of the header list size (RFC 9113 6.5.2)
+    private static final int HEADER_FIELD_OVERHEAD = 32;
+    // Settings
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    private static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    static final int FRAME_HEADER_LENGTH = 9;
+    static final int DEFAULT_WINDOW_SIZE = 65535;
+    static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final int HEADER_TABLE_SIZE = 4096;
+
+    private final NioHttpConnector connector;
+    private final NioConnection connection;
+    private final int maxConcurrentStreams;
+    private final int maxHeaderListSize;
+    private final int maxBodySize;
+    private final HpackDecoder decoder = new HpackDecoder(HEADER_TABLE_SIZE);
+    // event loop only
+    private final Map<Integer, Http2Stream> streams = new HashMap<>();
+    private boolean prefaceReceived;
+    private int lastStreamId;
+    private boolean goAway;
+    private int headerBlockStreamId;
+    private boolean headerBlockEndStream;
+    private final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+    // send side flow control, guarded by flowLock
+    private final ReentrantLock flowLock = new ReentrantLock();
+    private final Condition windowAvailable = flowLock.newCondition();
+    private int connectionSendWindow = DEFAULT_WINDOW_SIZE;
+    private int initialSendWindow = DEFAULT_WINDOW_SIZE;
+    private volatile int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+    Http2Connection(NioHttpConnector connector, NioConnection connection) {
+        this.connector = connector;
+        this.connection = connection;
+        this.maxConcurrentStreams = connector.getConfig().getHttp2MaxConcurrentStreams();
+        this.maxHeaderListSize = connector.getConfig().getMaxRequestHeaderSize();
+        this.maxBodySize = Math.min(connector.getConfig().getMaxRequestBodySize(), Http1RequestParser.MAX_BODY_SIZE);
+    }
+
+    /**
+     * @return 1 if <code>buf</code> (in read mode) starts with the connection preface,
+     * 0 if it holds a prefix of it and -1 if it does not
+     */
+    static int matchPreface(ByteBuffer buf) {
+        int n = Math.min(buf.remaining(), PREFACE.length);
+        for (int i = 0; i < n; i++) {
+            if (buf.get(buf.position() + i) != PREFACE[i]) {
+                return -1;
+            }
+        }
+        return n == PREFACE.length ? 1 : 0;
+    }
+
+    /**
+     * @return true if the HTTP/1.1 request asks to switch to h2c (RFC 7540 3.2)
+     */
+    static boolean isUpgradeRequest(NioRequest request) {
+        if (!request.upgrade) {
+            return false;
+        }
+        String upgrade = request.headers.getFirst("Upgrade");
+        String connection = request.headers.getFirst("Connection");
+        return !request.isHttp10() && Http1RequestParser.hasToken(upgrade, "h2c")
+                && request.headers.getFirst("HTTP2-Settings") != null
+                && Http1RequestParser.hasToken(connection, "upgrade")
+                && Http1RequestParser.hasToken(connection, "http2-settings");
+    }
+
+    /**
+     * Starts the connection after the client preface has been detected.
+     */
+    void start() throws IOException {
+        sendSettings();
+    }
+
+    /**
+     * Starts the connection from an HTTP/1.1 upgrade request, which becomes stream 1.
+     * The <code>101 Switching Protocols</code> must already have been written.
+     */
+    void startUpgrade(NioRequest request) throws IOException {
+        sendSettings();
+        byte[] settings;
+        try {
+            settings = Base64.getUrlDecoder().decode(request.headers.getFirst("HTTP2-Settings").trim());
+        } catch (IllegalArgumentException e) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Invalid HTTP2-Settings");
+        }
+        // The 101 response acknowledges these settings implicitly
+        applySettings(ByteBuffer.wrap(settings));
+        request.protocol = PROTOCOL;
+        request.scheme = "http";
+        Http2Stream stream = new Http2Stream(1, request, initialSendWindow);
+        stream.remoteClosed = true;
+        lastStreamId = 1;
+        streams.put(1, stream);
+        dispatch(stream);
+    }
+
+    private void sendSettings() throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + 12);
+        putFrameHeader(frame, 12, SETTINGS, 0, 0);
+        frame.putShort((short) SETTINGS_MAX_CONCURRENT_STREAMS).putInt(maxConcurrentStreams);
+        frame.putShort((short) SETTINGS_MAX_HEADER_LIST_SIZE).putInt(maxHeaderListSize);
+        frame.flip();
+        connection.writeFromEventLoop(frame);
+    }
+
+    boolean hasOpenStreams() {
+        return !streams.isEmpty();
+    }
+
+    // ---------------------------------------------------------- event loop side: reading
+
+    /**
+     * Consumes all complete frames of <code>buf</code> (in read mode).
+     */
+    void onInput(ByteBuffer buf) throws IOException {
+        try {
+            if (!prefaceReceived) {
+                int match = matchPreface(buf);
+                if (match < 0) {
+                    throw new Http2Exception(PROTOCOL_ERROR, "Invalid connection preface");
+                }
+                if (match == 0) {
+                    return;
+                }
+                buf.position(buf.position() + PREFACE.length);
+                prefaceReceived = true;
+            }
+            while (buf.remaining() >= FRAME_HEADER_LENGTH && !connection.isClosed()) {
+                int p = buf.position();
+                int length = (buf.get(p) & 0xff) << 16 | (buf.get(p + 1) & 0xff) << 8 | (buf.get(p + 2) & 0xff);
+                if (length > DEFAULT_MAX_FRAME_SIZE) {
+                    throw new Http2Exception(FRAME_SIZE_ERROR, "Frame is too large: " + length);
+                }
+                if (buf.remaining() < FRAME_HEADER_LENGTH + length) {
+                    return;
+                }
+                int type = buf.get(p + 3) & 0xff;
+                int flags = buf.get(p + 4) & 0xff;
+                int streamId = buf.getInt(p + 5) & 0x7fffffff;
+                buf.position(p + FRAME_HEADER_LENGTH);
+                ByteBuffer payload = buf.slice();
+                payload.limit(length);
+                buf.position(p + FRAME_HEADER_LENGTH + length);
+                onFrame(type, flags, streamId, payload);
+            }
+        } catch (Http2Exception e) {
+            logger.debug("HTTP/2 connection error from {}: {}", connection.remoteAddress, e.getMessage());
+            buf.position(buf.limit());
+            goAway(e.getErrorCode());
+            connection.closeGracefully();
+        }
+    }
+
+    private void onFrame(int type, int flags, int streamId, ByteBuffer payload) throws IOException {
+        if (headerBlockStreamId != 0 && type != CONTINUATION) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Expected CONTINUATION frame");
+        }
+        switch (type) {
+            case DATA:
+                onData(flags, streamId, payload);
+                break;
+            case HEADERS:
+                onHeaders(flags, streamId, payload);
+                break;
+            case PRIORITY:
+                if (payload.remaining() != 5) {
+                    resetStream(streamId, FRAME_SIZE_ERROR);
+                }
+                break;
+            case RST_STREAM:
+                onRstStream(streamId, payload);
+                break;
+            case SETTINGS:
+                onSettings(flags, streamId, payload);
+                break;
+            case PUSH_PROMISE:
+                throw new Http2Exception(PROTOCOL_ERROR, "Clients must not push");
+            case PING:
+                onPing(flags, streamId, payload);
+                break;
+            case GOAWAY:
+                goAway = true;
+                if (streams.isEmpty()) {
+                    connection.closeGracefully();
+                }
+                break;
+            case WINDOW_UPDATE:
+                onWindowUpdate(streamId, payload);
+                break;
+            case CONTINUATION:
+                onContinuation(flags, streamId, payload);
+                break;
+            default:
+                // Unknown frame types are ignored
+                break;
+        }
+    }
+
+    private void onData(int flags, int streamId, ByteBuffer payload) throws IOException {
+        if (streamId == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "DATA frame on stream 0");
+        }
+        int frameLength = payload.remaining();
+        int dataLength = frameLength - padding(flags, payload);
+        // The body is buffered in memory, bounded by maxBodySize per stream, so the
+        // window is handed back right away
+        if (frameLength > 0) {
+            sendWindowUpdate(0, frameLength);
+        }
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.remoteClosed) {
+            if (streamId > lastStreamId) {
+                throw new Http2Exception(PROTOCOL_ERROR, "DATA frame on idle stream " + streamId);
+            }
+            resetStream(streamId, STREAM_CLOSED);
+            return;
+        }
+        if (stream.request.bodyLength + (long) dataLength > maxBodySize) {
+            logger.debug("Request body of stream {} is too large", streamId);
+            streams.remove(streamId);
+            resetStream(streamId, ENHANCE_YOUR_CALM);
+            return;
+        }
+        // Not pooled: a stream can be reset at any time before it is dispatched
+        stream.request.appendBody(payload, dataLength, null);
+        if ((flags & FLAG_END_STREAM) != 0) {
+            stream.remoteClosed = true;
+            dispatch(stream);
+        } else if (frameLength > 0) {
+            sendWindowUpdate(streamId, frameLength);
+        }
+    }
+
+    private void onHeaders(int flags, int streamId, ByteBuffer payload) throws IOException {
+        if (streamId == 0 || (streamId & 1) == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Invalid stream id for HEADERS: " + streamId);
+        }
+        int padding = padding(flags, payload);
+        if ((flags & FLAG_PRIORITY) != 0) {
+            if (payload.remaining() - padding < 5) {
+                throw new Http2Exception(PROTOCOL_ERROR, "HEADERS frame is too short");
+            }
+            payload.position(payload.position() + 5);
+        }
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null) {
+            if (streamId <= lastStreamId) {
+                throw new Http2Exception(STREAM_CLOSED, "HEADERS frame on closed stream " + streamId);
+            }
+            lastStreamId = streamId;
+        } else if (stream.remoteClosed || (flags & FLAG_END_STREAM) == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Unexpected HEADERS frame on stream " + streamId);
+        }
+        headerBlock.reset();
+        headerBlockStreamId = streamId;
+        headerBlockEndStream = (flags & FLAG_END_STREAM) != 0;
+        appendHeaderBlock(payload, payload.remaining() - padding);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    private void onContinuation(int flags, int streamId, ByteBuffer payload) throws IOException {
+        if (streamId == 0 || streamId != headerBlockStreamId) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Unexpected CONTINUATION frame");
+        }
+        appendHeaderBlock(payload, payload.remaining());
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    private void appendHeaderBlock(ByteBuffer payload, int length) throws Http2Exception {
+        // Only bounds what is buffered: the decoded list is limited by onHeaderBlock
+        if (headerBlock.size() + length > maxHeaderListSize) {
+            throw new Http2Exception(ENHANCE_YOUR_CALM, "Header block is too large");
+        }
+        for (int i = 0; i < length; i++) {
+            headerBlock.write(payload.get());
+        }
+    }
+
+    private void onHeaderBlock() throws IOException {
+        int streamId = headerBlockStreamId;
+        headerBlockStreamId = 0;
+        Http2Stream stream = streams.get(streamId);
+        NioRequest request = stream == null ? new NioRequest(new HttpHeaders()) : null;
+        String[] malformed = new String[1];
+        long[] listSize = new long[1];
+        byte[] block = headerBlock.toByteArray();
+        try {
+            decoder.decode(block, block.length, (name, value) -> {
+                // SETTINGS_MAX_HEADER_LIST_SIZE counts the decoded fields (RFC 9113 6.5.2): a small
+                // block of references to a large table entry can decode to megabytes
+                listSize[0] += name.length() + value.length() + HEADER_FIELD_OVERHEAD;
+                if (request == null || listSize[0] > maxHeaderListSize) {
+                    return; // trailers and oversized lists are decoded to keep the HPACK state, then dropped
+                }
+                if (!name.toLowerCase(Locale.ROOT).equals(name)) {
+                    malformed[0] = "Upper case header name: " + name;
+                } else if (name.startsWith(":")) {
+                    if (request.headers.size() > 0) {
+                        malformed[0] = "Pseudo header after regular headers";
+                    } else if (!setPseudoHeader(request, name, value)) {
+                        malformed[0] = "Invalid pseudo header: " + name;
+                    }
+                } else if (isConnectionSpecific(name, value)) {
+                    malformed[0] = "Connection specific header: " + name;
+                } else {
+                    try {
+                        request.headers.add(name, value);
+                    } catch (IllegalArgumentException e) {
+                        // CR, LF or NUL in a value, RFC 9113 8.2.1
+                        malformed[0] = e.getMessage();
+                    }
+                }
+            });
+        } catch (HpackException e) {
+            throw new Http2Exception(COMPRESSION_ERROR, e.getMessage());
+        }
+        if (listSize[0] > maxHeaderListSize) {
+            logger.debug("Header list of stream {} is too large: {}", streamId, listSize[0]);
+            if (stream != null) {
+                streams.remove(streamId);
+            }
+            resetStream(streamId, ENHANCE_YOUR_CALM);
+            return;
+        }
+        if (stream != null) {
+            // Trailers
+            stream.remoteClosed = true;
+            dispatch(stream);
+            return;
+        }
+        if (malformed[0] == null && (request.method == null || request.getTarget() == null || request.scheme == null)) {
+            malformed[0] = "Missing pseudo headers";
+        }
+        if (malformed[0] != null) {
+            logger.debug("Malformed request on stream {}: {}", streamId, malformed[0]);
+            resetStream(streamId, PROTOCOL_ERROR);
+            return;
+        }
+        if (goAway || streams.size() >= maxConcurrentStreams) {
+            resetStream(streamId, REFUSED_STREAM);
+            return;
+        }
+        if (request.authority != null && !request.headers.contains("Host")) {
+            // The servlet layer resolves the server name from Host
+            request.headers.add("Host", request.authority);
+        }
+        request.protocol = PROTOCOL;
+        Http2Stream newStream = new Http2Stream(streamId, request, initialSendWindowSnapshot());
+        streams.put(streamId, newStream);
+        if (headerBlockEndStream) {
+            newStream.remoteClosed = true;
+            dispatch(newStream);
+        } else if ("100-continue".equalsIgnoreCase(request.headers.getFirst("Expect"))) {
+            connection.writeFromEventLoop(headersFrame(streamId, encodeStatus(100), false));
+        }
+    }
+
+    private static boolean setPseudoHeader(NioRequest request, String name, String value) {
+        switch (name) {
+            case ":method":
+                request.method = value;
+                return true;
+            case ":path":
+                request.setTarget(value);
+                return !value.isEmpty();
+            case ":scheme":
+                request.scheme = value;
+                return true;
+            case ":authority":
+                request.authority = value;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isConnectionSpecific(String name, String value) {
+        switch (name) {
+            case "connection":
+            case "keep-alive":
+            case "proxy-connection":
+            case "transfer-encoding":
+            case "upgrade":
+                return true;
+            case "te":
+                return !value.equalsIgnoreCase("trailers");
+            default:
+                return false;
+        }
+    }
+
+    private void onRstStream(int streamId, ByteBuffer payload) throws Http2Exception {
+        if (payload.remaining() != 4) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid RST_STREAM frame");
+        }
+        if (streamId == 0 || streamId > lastStreamId) {
+            throw new Http2Exception(PROTOCOL_ERROR, "RST_STREAM on idle stream " + streamId);
+        }
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            flowLock.lock();
+            try {
+                stream.reset = true;
+                windowAvailable.signalAll();
+            } finally {
+                flowLock.unlock();
+            }
+        }
+    }
+
+    private void onSettings(int flags, int streamId, ByteBuffer payload) throws IOException {
+        if (streamId != 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "SETTINGS frame on stream " + streamId);
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            if (payload.remaining() != 0) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "SETTINGS ACK with payload");
+            }
+            return;
+        }
+        applySettings(payload);
+        ByteBuffer ack = ByteBuffer.allocate(FRAME_HEADER_LENGTH);
+        putFrameHeader(ack, 0, SETTINGS, FLAG_ACK, 0);
+        ack.flip();
+        connection.writeFromEventLoop(ack);
+    }
+
+    private void applySettings(ByteBuffer payload) throws Http2Exception {
+        if (payload.remaining() % 6 != 0) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid SETTINGS frame length");
+        }
+        while (payload.hasRemaining()) {
+            int id = payload.getShort() & 0xffff;
+            long value = payload.getInt() & 0xffffffffL;
+            switch (id) {
+                case SETTINGS_ENABLE_PUSH:
+                    if (value > 1) {
+                        throw new Http2Exception(PROTOCOL_ERROR, "Invalid SETTINGS_ENABLE_PUSH");
+                    }
+                    break;
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value > MAX_WINDOW_SIZE) {
+                        throw new Http2Exception(FLOW_CONTROL_ERROR, "Invalid SETTINGS_INITIAL_WINDOW_SIZE");
+                    }
+                    updateInitialSendWindow((int) value);
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    if (value < DEFAULT_MAX_FRAME_SIZE || value > 0xffffff) {
+                        throw new Http2Exception(PROTOCOL_ERROR, "Invalid SETTINGS_MAX_FRAME_SIZE");
+                    }
+                    peerMaxFrameSize = (int) value;
+                    break;
+                case SETTINGS_HEADER_TABLE_SIZE:
+                    // Our encoder never uses the dynamic table
+                case SETTINGS_MAX_CONCURRENT_STREAMS:
+                    // We never open streams
+                case SETTINGS_MAX_HEADER_LIST_SIZE:
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void updateInitialSendWindow(int value) throws Http2Exception {
+        flowLock.lock();
+        try {
+            int delta = value - initialSendWindow;
+            initialSendWindow = value;
+            for (Http2Stream stream : streams.values()) {
+                long window = (long) stream.sendWindow + delta;
+                if (window > MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(FLOW_CONTROL_ERROR, "Stream window overflow");
+                }
+                stream.sendWindow = (int) window;
+            }
+            windowAvailable.signalAll();
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    private int initialSendWindowSnapshot() {
+        flowLock.lock();
+        try {
+            return initialSendWindow;
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    private void onPing(int flags, int streamId, ByteBuffer payload) throws IOException {
+        if (payload.remaining() != 8) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid PING frame");
+        }
+        if (streamId != 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "PING frame on stream " + streamId);
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            return;
+        }
+        ByteBuffer ack = ByteBuffer.allocate(FRAME_HEADER_LENGTH + 8);
+        putFrameHeader(ack, 8, PING, FLAG_ACK, 0);
+        ack.put(payload);
+        ack.flip();
+        connection.writeFromEventLoop(ack);
+    }
+
+    private void onWindowUpdate(int streamId, ByteBuffer payload) throws IOException {
+        if (payload.remaining() != 4) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE frame");
+        }
+        int increment = payload.getInt() & 0x7fffffff;
+        if (increment == 0) {
+            if (streamId == 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "WINDOW_UPDATE with 0 increment");
+            }
+            resetStream(streamId, PROTOCOL_ERROR);
+            return;
+        }
+        flowLock.lock();
+        try {
+            if (streamId == 0) {
+                if ((long) connectionSendWindow + increment > MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(FLOW_CONTROL_ERROR, "Connection window overflow");
+                }
+                connectionSendWindow += increment;
+            } else {
+                Http2Stream stream = streams.get(streamId);
+                if (stream == null) {
+                    return;
+                }
+                if ((long) stream.sendWindow + increment > MAX_WINDOW_SIZE) {
+                    stream.reset = true;
+                    streams.remove(streamId);
+                    resetStream(streamId, FLOW_CONTROL_ERROR);
+                } else {
+                    stream.sendWindow += increment;
+                }
+            }
+            windowAvailable.signalAll();
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    private static int padding(int flags, ByteBuffer payload) throws Http2Exception {
+        if ((flags & FLAG_PADDED) == 0) {
+            return 0;
+        }
+        if (!payload.hasRemaining()) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Padded frame is too short");
+        }
+        int padding = payload.get() & 0xff;
+        if (padding > payload.remaining()) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Padding exceeds the frame payload");
+        }
+        return padding;
+    }
+
+    private void dispatch(Http2Stream stream) {
+        if (!connector.dispatch(new Http2Exchange(this, stream))) {
+            streams.remove(stream.id);
+            try {
+                resetStream(stream.id, REFUSED_STREAM);
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Called on the event loop once the worker has finished the stream.
+     */
+    private void onStreamComplete(Http2Stream stream) {
+        streams.remove(stream.id);
+        connection.touch();
+        if (goAway && streams.isEmpty()) {
+            connection.closeGracefully();
+        }
+    }
+
+    private void sendWindowUpdate(int streamId, int increment) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + 4);
+        putFrameHeader(frame, 4, WINDOW_UPDATE, 0, streamId);
+        frame.putInt(increment);
+        frame.flip();
+        connection.writeFromEventLoop(frame);
+    }
+
+    private void resetStream(int streamId, int errorCode) throws IOException {
+        connection.writeFromEventLoop(rstStreamFrame(streamId, errorCode));
+    }
+
+    /**
+     * Sends GOAWAY, streams above the last one seen will not be processed.
+     */
+    void goAway(int errorCode) {
+        goAway = true;
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + 8);
+        putFrameHeader(frame, 8, GOAWAY, 0, 0);
+        frame.putInt(lastStreamId).putInt(errorCode);
+        frame.flip();
+        try {
+            connection.writeFromEventLoop(frame);
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Wakes up the workers waiting for window, called when the connection is closed.
+     */
+    void onClosed() {
+        flowLock.lock();
+        try {
+            windowAvailable.signalAll();
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------- worker side: writing
+
+    /**
+     * Writes a header block as one HEADERS frame followed by as many
+     * CONTINUATION frames as the peer's maximum frame size requires.
+     */
+    void writeHeaders(Http2Stream stream, ByteArrayOutputStream block, boolean endStream) throws IOException {
+        checkWritable(stream);
+        connection.write(headersFrame(stream.id, block, endStream));
+    }
+
+    private ByteBuffer headersFrame(int streamId, ByteArrayOutputStream block, boolean endStream) {
+        byte[] bytes = block.toByteArray();
+        int maxFrameSize = peerMaxFrameSize;
+        int frames = Math.max(1, (bytes.length + maxFrameSize - 1) / maxFrameSize);
+        ByteBuffer buffer = ByteBuffer.allocate(frames * FRAME_HEADER_LENGTH + bytes.length);
+        int offset = 0;
+        for (int i = 0; i < frames; i++) {
+            int length = Math.min(maxFrameSize, bytes.length - offset);
+            boolean last = i == frames - 1;
+            int flags = last ? FLAG_END_HEADERS : 0;
+            if (i == 0 && endStream) {
+                flags |= FLAG_END_STREAM;
+            }
+            putFrameHeader(buffer, length, i == 0 ? HEADERS : CONTINUATION, flags, streamId);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes <code>len</code> bytes as DATA frames, waiting for flow-control window as needed.
+     */
+    void writeData(Http2Stream stream, byte[] b, int off, int len, boolean endStream) throws IOException {
+        do {
+            int n = acquireWindow(stream, len);
+            boolean last = n == len;
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_LENGTH);
+            putFrameHeader(header, n, DATA, last && endStream ? FLAG_END_STREAM : 0, stream.id);
+            header.flip();
+            connection.write(header, ByteBuffer.wrap(b, off, n));
+            off += n;
+            len -= n;
+        } while (len > 0);
+    }
+
+    private int acquireWindow(Http2Stream stream, int wanted) throws IOException {
+        int n = Math.min(wanted, peerMaxFrameSize);
+        if (n == 0) {
+            checkWritable(stream);
+            return 0;
+        }
+        flowLock.lock();
+        try {
+            long nanos = NioConnection.WRITE_TIMEOUT_NANOS;
+            while (true) {
+                checkWritable(stream);
+                int window = Math.min(connectionSendWindow, stream.sendWindow);
+                if (window > 0) {
+                    n = Math.min(n, window);
+                    connectionSendWindow -= n;
+                    stream.sendWindow -= n;
+                    return n;
+                }
+                if (nanos <= 0) {
+                    throw new IOException("Timed out waiting for flow-control window");
+                }
+                try {
+                    nanos = windowAvailable.awaitNanos(nanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for flow-control window", e);
+                }
+            }
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    private void checkWritable(Http2Stream stream) throws IOException {
+        if (connection.isClosed()) {
+            throw new ClosedChannelException();
+        }
+        if (stream.reset) {
+            throw new IOException("Stream " + stream.id + " has been reset by the peer");
+        }
+    }
+
+    /**
+     * Resets a stream whose response could not be completed.
+     */
+    void writeRstStream(Http2Stream stream, int errorCode) {
+        if (stream.reset || connection.isClosed()) {
+            return;
+        }
+        try {
+            connection.write(rstStreamFrame(stream.id, errorCode));
+        } catch (IOException e) {
+            logger.debug("Failed to reset stream {}: {}", stream.id, e.getMessage());
+        }
+    }
+
+    /**
+     * Called by the worker once the exchange of the stream has completed.
+     */
+    void complete(Http2Stream stream) {
+        connection.eventLoop.execute(() -> onStreamComplete(stream));
+    }
+
+    NioConnection getConnection() {
+        return connection;
+    }
+
+    static ByteArrayOutputStream encodeStatus(int statusCode) {
+        ByteArrayOutputStream block = new ByteArrayOutputStream(128);
+        HpackEncoder.encode(":status", String.valueOf(statusCode), block);
+        return block;
+    }
+
+    private static ByteBuffer rstStreamFrame(int streamId, int errorCode) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + 4);
+        putFrameHeader(frame, 4, RST_STREAM, 0, streamId);
+        frame.putInt(errorCode);
+        frame.flip();
+        return frame;
+    }
+
+    static void putFrameHeader(ByteBuffer buffer, int length, int type, int flags, int streamId) {
+        buffer.put((byte) (length >>> 16)).put((byte) (length >>> 8)).put((byte) length);
+        buffer.put((byte) type).put((byte) flags).putInt(streamId);
+    }
+}
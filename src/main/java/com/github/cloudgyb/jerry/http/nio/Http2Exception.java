@@ -0,0 +1,22 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import java.io.IOException;
+
+/**
+ * An HTTP/2 connection error, answered with GOAWAY before closing the connection.
+ *
+ * @author cloudgyb
+ * @since 2025/4/17 09:10
+ */
+class Http2Exception extends IOException {
+    private final int errorCode;
+
+    Http2Exception(int errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    int getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,237 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.Exchange;
+import com.github.cloudgyb.jerry.http.HttpDate;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+
+/**
+ * An exchange carried by one HTTP/2 stream.
+ *
+ * @author cloudgyb
+ * @since 2025/4/17 10:40
+ */
+class Http2Exchange implements Exchange {
+    private final Http2Connection connection;
+    private final Http2Stream stream;
+    private final NioRequest request;
+    private final HttpHeaders responseHeaders = new HttpHeaders();
+    private final InputStream requestBody;
+    private final ResponseBodyStream responseBodyStream = new ResponseBodyStream();
+    private int responseCode = -1;
+    private boolean closed;
+
+    Http2Exchange(Http2Connection connection, Http2Stream stream) {
+        this.connection = connection;
+        this.stream = stream;
+        this.request = stream.request;
+        this.requestBody = new RequestBodyStream(request.body, request.bodyLength);
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return request.method;
+    }
+
+    @Override
+    public String getRequestTarget() {
+        return request.getTarget();
+    }
+
+    @Override
+    public String getRequestPath() {
+        return request.getPath();
+    }
+
+    @Override
+    public String getQueryString() {
+        return request.getQuery();
+    }
+
+    @Override
+    public String getProtocol() {
+        return request.protocol;
+    }
+
+    @Override
+    public String getScheme() {
+        return request.scheme;
+    }
+
+    /**
+     * @return the stream identifier, as required by the Servlet specification for HTTP/2
+     */
+    @Override
+    public String getProtocolRequestId() {
+        return String.valueOf(stream.id);
+    }
+
+    @Override
+    public HttpHeaders getRequestHeaders() {
+        return request.headers;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public long getRequestContentLength() {
+        return request.bodyLength;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public void commit(int statusCode, long contentLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("Response headers have already been sent!");
+        }
+        if (closed) {
+            throw new IOException("Exchange has been closed!");
+        }
+        responseCode = statusCode;
+        boolean bodyless = request.isHead() || statusCode == 204 || statusCode == 304 || statusCode < 200;
+        ByteArrayOutputStream block = Http2Connection.encodeStatus(statusCode);
+        HpackEncoder.encode("date", HttpDate.now(), block);
+        for (int i = 0; i < responseHeaders.size(); i++) {
+            String name = responseHeaders.nameAt(i).toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "content-length":
+                case "connection":
+                case "keep-alive":
+                case "proxy-connection":
+                case "transfer-encoding":
+                case "upgrade":
+                    // Connection specific, not allowed in HTTP/2
+                    continue;
+                default:
+                    HpackEncoder.encode(name, responseHeaders.valueAt(i), block);
+            }
+        }
+        if (contentLength > 0 && !bodyless) {
+            HpackEncoder.encode("content-length", String.valueOf(contentLength), block);
+        }
+        boolean endStream = bodyless || contentLength == 0;
+        connection.writeHeaders(stream, block, endStream);
+        responseBodyStream.remaining = endStream ? 0 : contentLength;
+        responseBodyStream.endStreamSent = endStream;
+        responseBodyStream.discard = bodyless;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return responseCode != -1;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBodyStream;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (responseCode == -1) {
+                // The handler never responded
+                connection.writeRstStream(stream, Http2Connection.INTERNAL_ERROR);
+            } else {
+                responseBodyStream.finish();
+            }
+        } catch (IOException e) {
+            connection.writeRstStream(stream, Http2Connection.INTERNAL_ERROR);
+        } finally {
+            connection.complete(stream);
+        }
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getConnection().remoteAddress;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getConnection().localAddress;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return connection.getConnection().isSecure();
+    }
+
+    /**
+     * The stream returned by {@link #getResponseBody()}, it writes DATA frames.
+     * With a known content length the last DATA frame carries END_STREAM,
+     * otherwise an empty DATA frame ends the stream on {@link #finish()}.
+     */
+    private class ResponseBodyStream extends OutputStream {
+        // -1 means unknown
+        long remaining;
+        boolean endStreamSent;
+        boolean discard;
+        boolean finished;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Response body has been closed!");
+            }
+            if (responseCode == -1) {
+                throw new IOException("Response headers have not been sent!");
+            }
+            if (len <= 0 || discard) {
+                return;
+            }
+            if (remaining >= 0) {
+                if (len > remaining) {
+                    throw new IOException("Too many bytes to write to the response body, " +
+                            remaining + " bytes remaining but " + len + " bytes given");
+                }
+                remaining -= len;
+                endStreamSent = remaining == 0;
+                connection.writeData(stream, b, off, len, endStreamSent);
+            } else {
+                connection.writeData(stream, b, off, len, false);
+            }
+        }
+
+        @Override
+        public void close() {
+            Http2Exchange.this.close();
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (endStreamSent) {
+                return;
+            }
+            if (remaining > 0) {
+                throw new IOException("Response body is incomplete, " + remaining + " bytes missing");
+            }
+            connection.writeData(stream, new byte[0], 0, 0, true);
+        }
+    }
+}
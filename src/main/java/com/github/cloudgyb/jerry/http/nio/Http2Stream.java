@@ -0,0 +1,23 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+/**
+ * A stream of an {@link Http2Connection}.
+ *
+ * @author cloudgyb
+ * @since 2025/4/17 09:20
+ */
+final class Http2Stream {
+    final int id;
+    final NioRequest request;
+    // event loop only: END_STREAM has been received, the request is complete
+    boolean remoteClosed;
+    // guarded by the flow lock of the connection
+    int sendWindow;
+    volatile boolean reset;
+
+    Http2Stream(int id, NioRequest request, int sendWindow) {
+        this.id = id;
+        this.request = request;
+        this.sendWindow = sendWindow;
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+/**
+ * Thrown when a request cannot be parsed. The connection answers with
+ * {@link #getStatusCode()} and is closed afterward.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 11:10
+ */
+class HttpParseException extends Exception {
+    private final int statusCode;
+
+    HttpParseException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,851 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.BufferPool;
+import com.github.cloudgyb.jerry.http.HttpStatus;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngineResult;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * State of one HTTP/1.x connection.
+ * <p>
+ * Reading and parsing happen on the owning event loop. While a request is
+ * being processed by a worker, reading is suspended and resumed once the
+ * exchange completes, so requests of one connection are served in order.
+ * Workers write responses through {@link #write(ByteBuffer...)}, which
+ * writes directly when the socket accepts the data and otherwise waits for
+ * the event loop to drain it.
+ * </p>
+ * <p>
+ * On a TLS connection the same flow runs on decrypted bytes: input is
+ * unwrapped on the event loop, output is wrapped record by record into
+ * pooled packet buffers right before it is written or queued.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 14:30
+ */
+final class NioConnection {
+    private static final Logger logger = LoggerFactory.getLogger(NioConnection.class);
+    private static final int INITIAL_READ_BUFFER_SIZE = 4096;
+    static final long WRITE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] SWITCHING_PROTOCOLS = ("HTTP/1.1 101 Switching Protocols\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Upgrade: h2c\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    // At most this many pipelined requests are handed to a worker at once
+    private static final int MAX_PIPELINED_REQUESTS = 16;
+    private static final int CORK_BUFFER_SIZE = 16 * 1024;
+    private final NioHttpConnector connector;
+    final NioEventLoop eventLoop;
+    final SocketChannel channel;
+    SelectionKey selectionKey;
+    final InetSocketAddress remoteAddress;
+    final InetSocketAddress localAddress;
+    private final Http1RequestParser parser;
+    private final BufferPool bufferPool;
+    private final boolean directBuffers;
+    private int maxReadBufferSize;
+    private final int maxKeepAliveRequests;
+    private final boolean http2Enabled;
+    // null on a plaintext connection
+    private final TlsSession tls;
+    // Only held while bytes of an unfinished request are buffered, see onReadable()
+    private ByteBuffer readBuffer;
+    // event loop only
+    private boolean processing;
+    private boolean inputShutdown;
+    // The delegated tasks of the TLS handshake are running on a worker
+    private boolean handshakeTasksRunning;
+    // Set once the connection has switched to HTTP/2
+    private Http2Connection http2;
+    private int requestCount;
+    private long lastActiveNanos;
+    // A parse error behind pipelined requests, answered once they have been served
+    private int pendingErrorStatus;
+    // A 100-continue for a request behind pipelined requests, sent once they have been served
+    private boolean continueDeferred;
+    // worker side, only touched by the worker serving the current batch
+    private boolean corked;
+    private ByteBuffer corkBuffer;
+    // guarded by writeLock
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Condition drained = writeLock.newCondition();
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private boolean closeWhenDrained;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    NioConnection(NioHttpConnector connector, NioEventLoop eventLoop, SocketChannel channel) throws IOException {
+        this.connector = connector;
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.remoteAddress = UnixDomainSockets.toInetSocketAddress(channel.getRemoteAddress());
+        this.localAddress = UnixDomainSockets.toInetSocketAddress(channel.getLocalAddress());
+        int maxHeaderSize = connector.getConfig().getMaxRequestHeaderSize();
+        this.bufferPool = connector.getBufferPool();
+        this.directBuffers = connector.getConfig().isDirectBuffers();
+        this.parser = new Http1RequestParser(maxHeaderSize, connector.getConfig().getMaxRequestBodySize(),
+                bufferPool);
+        this.maxReadBufferSize = maxHeaderSize;
+        this.maxKeepAliveRequests = connector.getConfig().getMaxKeepAliveRequests();
+        this.http2Enabled = connector.getConfig().isHttp2Enabled();
+        this.lastActiveNanos = System.nanoTime();
+        this.tls = connector.newTlsSession(remoteAddress);
+    }
+
+    static int initialReadBufferSize(int maxHeaderSize) {
+        return Math.min(INITIAL_READ_BUFFER_SIZE, maxHeaderSize);
+    }
+
+    // ---------------------------------------------------------- event loop side
+
+    /**
+     * An idle keep-alive connection owns no read buffer: it reads into the
+     * event loop's shared buffer and only copies the bytes that remain after
+     * parsing (a partial or pipelined request) into a pooled buffer of its
+     * own, which goes back to the pool as soon as it has been consumed.
+     */
+    void onReadable() throws IOException {
+        if (tls != null) {
+            onTlsReadable();
+            return;
+        }
+        ByteBuffer buffer = readBuffer != null ? readBuffer : eventLoop.sharedReadBuffer();
+        int n = channel.read(buffer);
+        if (n < 0) {
+            buffer.clear();
+            onEndOfInput();
+            return;
+        }
+        if (n > 0) {
+            lastActiveNanos = System.nanoTime();
+            processInput(buffer);
+        }
+    }
+
+    private void onEndOfInput() {
+        if (processing) {
+            // Half-closed: still answer the request in progress
+            inputShutdown = true;
+            updateInterest();
+        } else if (tls != null) {
+            inputShutdown = true;
+            closeGracefully();
+        } else {
+            close();
+        }
+    }
+
+    /**
+     * Decrypts everything that has been received. The plaintext goes through
+     * {@link #processInput(ByteBuffer)} like the bytes of a plain connection,
+     * it is only unwrapped into the connection's read buffer (or the shared
+     * one) instead of being read into it.
+     */
+    private void onTlsReadable() throws IOException {
+        int n = tls.read(channel);
+        if (n < 0) {
+            tls.free();
+            onEndOfInput();
+            return;
+        }
+        lastActiveNanos = System.nanoTime();
+        unwrapInput();
+    }
+
+    /**
+     * Unwraps the received records until more input is needed, or until
+     * the handshake waits for its delegated tasks.
+     */
+    private void unwrapInput() throws IOException {
+        while (!closed.get() && !inputShutdown) {
+            int room = tls.applicationBufferSize();
+            ByteBuffer buffer = readBuffer != null ? readBuffer : eventLoop.sharedReadBuffer();
+            if (buffer.remaining() < room) {
+                buffer = growReadBuffer(buffer, room);
+            }
+            SSLEngineResult result = tls.unwrap(buffer);
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                // close_notify from the peer
+                onEndOfInput();
+                break;
+            }
+            SSLEngineResult.HandshakeStatus handshakeStatus = result.getHandshakeStatus();
+            runHandshake(handshakeStatus);
+            if (result.bytesProduced() > 0) {
+                processInput(buffer);
+            }
+            boolean progress = result.bytesConsumed() > 0 || result.bytesProduced() > 0
+                    || handshakeStatus == SSLEngineResult.HandshakeStatus.NEED_TASK
+                    || handshakeStatus == SSLEngineResult.HandshakeStatus.NEED_WRAP;
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW || !progress
+                    || handshakeTasksRunning) {
+                break;
+            }
+        }
+        if (!closed.get()) {
+            tls.releaseInputIfEmpty();
+        }
+    }
+
+    private ByteBuffer growReadBuffer(ByteBuffer buffer, int room) {
+        ByteBuffer bigger = bufferPool.acquire(buffer.position() + room, directBuffers);
+        buffer.flip();
+        bigger.put(buffer);
+        if (buffer == readBuffer) {
+            bufferPool.release(buffer);
+        } else {
+            buffer.clear();
+        }
+        readBuffer = bigger;
+        return bigger;
+    }
+
+    private void releaseReadBuffer() {
+        if (readBuffer != null) {
+            bufferPool.release(readBuffer);
+            readBuffer = null;
+        }
+    }
+
+    /**
+     * Drives the handshake as far as the event loop can. The delegated tasks
+     * (key exchange, certificate checks) take milliseconds of CPU and would
+     * stall every other connection of the loop, so they run on a worker;
+     * reading stays suspended until they are done, then
+     * {@link #onHandshakeTasksDone()} picks the handshake up again.
+     */
+    private void runHandshake(SSLEngineResult.HandshakeStatus status) throws IOException {
+        while (true) {
+            if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                handshakeTasksRunning = true;
+                updateInterest();
+                if (!connector.dispatchHandshakeTasks(this::runHandshakeTasks)) {
+                    handshakeTasksRunning = false;
+                    close();
+                }
+                return;
+            } else if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                writeLock.lock();
+                try {
+                    writeRecord(tls.wrapHandshake());
+                } finally {
+                    writeLock.unlock();
+                }
+                status = tls.getHandshakeStatus();
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Runs on a worker
+    private void runHandshakeTasks() {
+        try {
+            tls.runDelegatedTasks();
+        } finally {
+            eventLoop.execute(this::onHandshakeTasksDone);
+        }
+    }
+
+    private void onHandshakeTasksDone() {
+        handshakeTasksRunning = false;
+        if (closed.get()) {
+            return;
+        }
+        try {
+            runHandshake(tls.getHandshakeStatus());
+            if (!handshakeTasksRunning) {
+                // Records may have arrived with the ones that started the tasks
+                unwrapInput();
+                updateInterest();
+            }
+        } catch (IOException e) {
+            logger.debug("Connection error: {}", e.getMessage());
+            close();
+        }
+    }
+
+    void onWritable() throws IOException {
+        writeLock.lock();
+        try {
+            flushPending();
+            if (pendingWrites.isEmpty()) {
+                selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+                drained.signalAll();
+                if (closeWhenDrained) {
+                    close();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void processInput(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        if (http2 == null && !processHttp1(buffer)) {
+            return;
+        }
+        if (http2 != null) {
+            http2.onInput(buffer);
+        }
+        if (!buffer.hasRemaining()) {
+            // Everything has been consumed, park without a buffer
+            buffer.clear();
+            releaseReadBuffer();
+        } else if (buffer == readBuffer) {
+            readBuffer.compact();
+        } else {
+            readBuffer = bufferPool.acquire(buffer.capacity(), directBuffers);
+            readBuffer.put(buffer);
+            buffer.clear();
+        }
+        if (readBuffer != null && !processing && !readBuffer.hasRemaining()
+                && readBuffer.capacity() < maxReadBufferSize) {
+            ByteBuffer bigger = bufferPool.acquire(Math.min(readBuffer.capacity() * 2, maxReadBufferSize),
+                    directBuffers);
+            readBuffer.flip();
+            bigger.put(readBuffer);
+            bufferPool.release(readBuffer);
+            readBuffer = bigger;
+        }
+        updateInterest();
+    }
+
+    /**
+     * Parses every complete request in <code>buffer</code> (pipelining) and
+     * hands them to one worker, which serves them in order. Switches to
+     * HTTP/2 on the client preface or an <code>Upgrade: h2c</code> request.
+     *
+     * @return false if the connection is closing and no more input must be read
+     */
+    private boolean processHttp1(ByteBuffer buffer) throws IOException {
+        if (requestCount == 0 && http2Enabled && parser.isIdle() && (tls == null || tls.isHttp2())) {
+            int match = Http2Connection.matchPreface(buffer);
+            if (match > 0) {
+                switchToHttp2().start();
+                return true;
+            } else if (match == 0) {
+                // Wait for the rest of the preface
+                return true;
+            }
+        }
+        List<NioRequest> batch = null;
+        NioRequest upgrade = null;
+        try {
+            while (!processing) {
+                NioRequest request = parser.parse(buffer);
+                if (parser.takeContinueExpectation()) {
+                    if (batch == null) {
+                        writeFromEventLoop(ByteBuffer.wrap(CONTINUE));
+                    } else {
+                        // Must not overtake the responses of the requests before it
+                        continueDeferred = true;
+                    }
+                }
+                if (request == null) {
+                    break;
+                }
+                requestCount++;
+                if (batch == null && http2Enabled && tls == null && Http2Connection.isUpgradeRequest(request)) {
+                    upgrade = request;
+                    break;
+                }
+                if (batch == null) {
+                    batch = new ArrayList<>(4);
+                }
+                batch.add(request);
+                if (maxKeepAliveRequests > 0 && requestCount >= maxKeepAliveRequests) {
+                    request.keepAlive = false;
+                }
+                if (!request.keepAlive || batch.size() == MAX_PIPELINED_REQUESTS) {
+                    break;
+                }
+            }
+        } catch (HttpParseException e) {
+            logger.debug("Bad request from {}: {}", remoteAddress, e.getMessage());
+            buffer.clear();
+            releaseReadBuffer();
+            if (batch == null) {
+                sendErrorAndClose(e.getStatusCode());
+                return false;
+            }
+            pendingErrorStatus = e.getStatusCode();
+        }
+        if (upgrade != null) {
+            writeFromEventLoop(ByteBuffer.wrap(SWITCHING_PROTOCOLS));
+            switchToHttp2().startUpgrade(upgrade);
+            return true;
+        }
+        if (batch != null) {
+            processing = true;
+            connector.dispatch(this, batch);
+        }
+        if (pendingErrorStatus != 0) {
+            updateInterest();
+            return false;
+        }
+        return true;
+    }
+
+    private Http2Connection switchToHttp2() {
+        http2 = new Http2Connection(connector, this);
+        // A read buffer must be able to hold a whole frame
+        maxReadBufferSize = Math.max(maxReadBufferSize,
+                Http2Connection.FRAME_HEADER_LENGTH + Http2Connection.DEFAULT_MAX_FRAME_SIZE);
+        return http2;
+    }
+
+    private void updateInterest() {
+        if (!selectionKey.isValid()) {
+            return;
+        }
+        int ops = selectionKey.interestOps();
+        if (processing || inputShutdown || handshakeTasksRunning) {
+            ops &= ~SelectionKey.OP_READ;
+        } else {
+            ops |= SelectionKey.OP_READ;
+        }
+        selectionKey.interestOps(ops);
+    }
+
+    private void onExchangeComplete(boolean keepAlive) {
+        processing = false;
+        lastActiveNanos = System.nanoTime();
+        if (closed.get()) {
+            return;
+        }
+        if (pendingErrorStatus != 0) {
+            try {
+                sendErrorAndClose(pendingErrorStatus);
+            } catch (IOException e) {
+                close();
+            }
+            return;
+        }
+        if (!keepAlive || inputShutdown) {
+            closeGracefully();
+            return;
+        }
+        try {
+            if (continueDeferred) {
+                continueDeferred = false;
+                writeFromEventLoop(ByteBuffer.wrap(CONTINUE));
+            }
+            if (readBuffer != null) {
+                processInput(readBuffer);
+            } else {
+                updateInterest();
+            }
+        } catch (IOException e) {
+            logger.debug("Connection error: {}", e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Closes the connection if it has been idle for longer than the keep-alive timeout.
+     * A connection whose request is being processed by a worker is never idle.
+     *
+     * @return true if the connection has been closed
+     */
+    boolean closeIfIdle(long now, long timeoutNanos) {
+        if (processing || closed.get() || now - lastActiveNanos < timeoutNanos) {
+            return false;
+        }
+        if (http2 != null) {
+            if (http2.hasOpenStreams()) {
+                return false;
+            }
+            http2.goAway(Http2Connection.NO_ERROR);
+            closeGracefully();
+            return true;
+        }
+        writeLock.lock();
+        try {
+            if (!pendingWrites.isEmpty()) {
+                return false;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (parser.isIdle() && readBuffer == null) {
+            close();
+        } else {
+            // Stalled in the middle of a request
+            inputShutdown = true;
+            try {
+                sendErrorAndClose(408);
+            } catch (IOException e) {
+                close();
+            }
+        }
+        return true;
+    }
+
+    private void sendErrorAndClose(int statusCode) throws IOException {
+        inputShutdown = true;
+        String response = "HTTP/1.1 " + statusCode + " " + HttpStatus.reasonPhrase(statusCode) + "\r\n" +
+                "Content-Length: 0\r\n" +
+                "Connection: close\r\n\r\n";
+        writeFromEventLoop(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        closeGracefully();
+    }
+
+    /**
+     * Sends a complete, pre-encoded response and closes the connection once it is written.
+     * Must be called on the event loop, the connection reads no further requests.
+     */
+    void sendAndClose(byte[] response) {
+        inputShutdown = true;
+        try {
+            writeFromEventLoop(ByteBuffer.wrap(response));
+            closeGracefully();
+        } catch (IOException e) {
+            logger.debug("Connection error: {}", e.getMessage());
+            close();
+        }
+    }
+
+    void writeFromEventLoop(ByteBuffer buffer) throws IOException {
+        writeLock.lock();
+        try {
+            if (tls != null) {
+                ByteBuffer[] src = {buffer};
+                do {
+                    writeRecord(tls.wrap(src));
+                } while (buffer.hasRemaining());
+                return;
+            }
+            if (pendingWrites.isEmpty()) {
+                writeFully(new ByteBuffer[]{buffer});
+            }
+            if (buffer.hasRemaining()) {
+                pendingWrites.add(buffer);
+                selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void closeGracefully() {
+        writeLock.lock();
+        try {
+            if (tls != null && !closed.get() && tls.closeOutbound()) {
+                try {
+                    writeRecord(tls.wrapHandshake());
+                } catch (IOException e) {
+                    close();
+                    return;
+                }
+            }
+            if (pendingWrites.isEmpty()) {
+                close();
+            } else {
+                closeWhenDrained = true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------- worker side
+
+    /**
+     * Writes all the buffers to the socket, blocking the caller until they
+     * have been handed over to the kernel. The buffers are not retained
+     * after this method returns.
+     * <p>
+     * While corked, small writes are gathered in a buffer and only sent when
+     * it is full or on {@link #uncork()}.
+     * </p>
+     */
+    void write(ByteBuffer... buffers) throws IOException {
+        if (!corked) {
+            writeNow(buffers);
+            return;
+        }
+        if (corkBuffer == null) {
+            corkBuffer = bufferPool.acquire(CORK_BUFFER_SIZE, directBuffers);
+        }
+        if (remaining(buffers) <= corkBuffer.remaining()) {
+            for (ByteBuffer buffer : buffers) {
+                corkBuffer.put(buffer);
+            }
+            return;
+        }
+        // Does not fit: send what has been gathered and these buffers with one gathering write
+        ByteBuffer[] all = new ByteBuffer[buffers.length + 1];
+        corkBuffer.flip();
+        all[0] = corkBuffer;
+        System.arraycopy(buffers, 0, all, 1, buffers.length);
+        try {
+            writeNow(all);
+        } finally {
+            corkBuffer.clear();
+        }
+    }
+
+    /**
+     * @return true while the responses of a batch of pipelined requests are
+     * gathered; only meaningful on the thread running the batch
+     */
+    boolean isCorked() {
+        return corked;
+    }
+
+    /**
+     * Starts gathering the responses of a batch of pipelined requests.
+     */
+    void cork() {
+        corked = true;
+    }
+
+    /**
+     * Sends everything gathered since {@link #cork()}.
+     */
+    void uncork() throws IOException {
+        corked = false;
+        ByteBuffer buffer = corkBuffer;
+        corkBuffer = null;
+        if (buffer == null) {
+            return;
+        }
+        try {
+            if (buffer.position() > 0) {
+                buffer.flip();
+                writeNow(buffer);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void writeNow(ByteBuffer... buffers) throws IOException {
+        writeLock.lock();
+        try {
+            awaitDrained();
+            if (tls != null) {
+                writeTls(buffers);
+                return;
+            }
+            writeFully(buffers);
+            boolean hasRemaining = false;
+            for (ByteBuffer buffer : buffers) {
+                if (buffer.hasRemaining()) {
+                    pendingWrites.add(buffer);
+                    hasRemaining = true;
+                }
+            }
+            if (hasRemaining) {
+                eventLoop.execute(this::requestWriteInterest);
+                awaitDrained();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Wraps and writes one record at a time, so a connection has at most one
+     * packet buffer in flight while its worker waits for the socket to drain.
+     */
+    private void writeTls(ByteBuffer[] buffers) throws IOException {
+        while (hasRemaining(buffers)) {
+            ByteBuffer record = tls.wrap(buffers);
+            writeFully(new ByteBuffer[]{record});
+            if (!record.hasRemaining()) {
+                tls.release(record);
+                continue;
+            }
+            pendingWrites.add(record);
+            eventLoop.execute(this::requestWriteInterest);
+            awaitDrained();
+        }
+    }
+
+    /**
+     * Called by the worker when all the exchanges of a batch have completed.
+     */
+    void complete(boolean keepAlive) {
+        eventLoop.execute(() -> onExchangeComplete(keepAlive));
+    }
+
+    private void requestWriteInterest() {
+        if (selectionKey.isValid()) {
+            selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void awaitDrained() throws IOException {
+        long nanos = WRITE_TIMEOUT_NANOS;
+        while (!pendingWrites.isEmpty()) {
+            if (closed.get()) {
+                throw new ClosedChannelException();
+            }
+            if (nanos <= 0) {
+                close();
+                throw new IOException("Write timed out");
+            }
+            try {
+                nanos = drained.awaitNanos(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing", e);
+            }
+        }
+        if (closed.get()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    // ---------------------------------------------------------- common
+
+    private void writeFully(ByteBuffer[] buffers) throws IOException {
+        while (hasRemaining(buffers)) {
+            if (channel.write(buffers) == 0) {
+                return;
+            }
+        }
+    }
+
+    private static long remaining(ByteBuffer[] buffers) {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+
+    static boolean hasRemaining(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flushPending() throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            ByteBuffer head = pendingWrites.peek();
+            channel.write(head);
+            if (head.hasRemaining()) {
+                return;
+            }
+            pendingWrites.poll();
+            if (tls != null) {
+                tls.release(head);
+            }
+        }
+    }
+
+    /**
+     * Writes an encrypted record if nothing is queued before it, otherwise
+     * (or if the socket does not take all of it) queues it for the event loop.
+     * Must hold the write lock.
+     */
+    private void writeRecord(ByteBuffer record) throws IOException {
+        if (!record.hasRemaining()) {
+            tls.release(record);
+            return;
+        }
+        if (pendingWrites.isEmpty()) {
+            writeFully(new ByteBuffer[]{record});
+            if (!record.hasRemaining()) {
+                tls.release(record);
+                return;
+            }
+        }
+        pendingWrites.add(record);
+        if (eventLoop.inEventLoop()) {
+            requestWriteInterest();
+        } else {
+            eventLoop.execute(this::requestWriteInterest);
+        }
+    }
+
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        connector.onConnectionClosed();
+        if (http2 != null) {
+            http2.onClosed();
+        }
+        if (selectionKey != null) {
+            selectionKey.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+        writeLock.lock();
+        try {
+            if (tls != null) {
+                pendingWrites.forEach(tls::release);
+            }
+            pendingWrites.clear();
+            drained.signalAll();
+        } finally {
+            writeLock.unlock();
+        }
+        // Input side state belongs to the event loop
+        if (eventLoop.inEventLoop()) {
+            freeInput();
+        } else {
+            eventLoop.execute(this::freeInput);
+        }
+    }
+
+    private void freeInput() {
+        releaseReadBuffer();
+        if (tls != null) {
+            tls.free();
+        }
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    ServerConfig getConfig() {
+        return connector.getConfig();
+    }
+
+    /**
+     * @return true on a TLS connection
+     */
+    boolean isSecure() {
+        return tls != null;
+    }
+
+    /**
+     * Marks the connection as active, called on the event loop.
+     */
+    void touch() {
+        lastActiveNanos = System.nanoTime();
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An I/O event loop: one thread, one Selector. All reads, interest changes
+ * and connection lifecycle transitions of the connections registered here
+ * run on this thread; other threads submit work through {@link #execute(Runnable)}.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 14:02
+ */
+final class NioEventLoop implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
+    private final NioHttpConnector connector;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Earliest deadline first, only touched by this thread
+    private final PriorityQueue<ScheduledTask> scheduledTasks = new PriorityQueue<>();
+    // Read buffer for connections that have nothing buffered, see NioConnection.onReadable()
+    private final ByteBuffer sharedReadBuffer;
+    private final long keepAliveTimeoutNanos;
+    private final long idleCheckIntervalMillis;
+    private long lastIdleCheckNanos = System.nanoTime();
+    private volatile boolean running = true;
+
+    NioEventLoop(NioHttpConnector connector, String name) throws IOException {
+        this.connector = connector;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        ServerConfig config = connector.getConfig();
+        // On TLS it must hold a whole decrypted record
+        this.sharedReadBuffer = connector.getBufferPool().acquire(Math.max(connector.getTlsApplicationBufferSize(),
+                NioConnection.initialReadBufferSize(config.getMaxRequestHeaderSize())), config.isDirectBuffers());
+        long keepAliveTimeoutMillis = config.getKeepAliveTimeoutMillis();
+        this.keepAliveTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveTimeoutMillis);
+        // Check a few times per timeout period, but at most once per second
+        this.idleCheckIntervalMillis = keepAliveTimeoutMillis == 0 ? 0 :
+                Math.max(1, Math.min(1000, keepAliveTimeoutMillis / 4));
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Runs the task on this thread once the delay has passed, or soon after.
+     */
+    void schedule(Runnable task, long delayNanos) {
+        long deadline = System.nanoTime() + delayNanos;
+        execute(() -> scheduledTasks.add(new ScheduledTask(deadline, task)));
+    }
+
+    ByteBuffer sharedReadBuffer() {
+        return sharedReadBuffer;
+    }
+
+    void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                NioConnection connection = new NioConnection(connector, this, channel);
+                connection.selectionKey = channel.register(selector, SelectionKey.OP_READ, connection);
+                connector.onConnectionOpened();
+            } catch (IOException e) {
+                logger.debug("Failed to register channel: {}", e.getMessage());
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                select();
+                runTasks();
+                processSelectedKeys();
+                runScheduledTasks();
+                closeIdleConnections();
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Throwable e) {
+                logger.error("Unexpected exception in event loop: ", e);
+            }
+        }
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioConnection) {
+                ((NioConnection) attachment).close();
+            }
+        }
+        connector.getBufferPool().release(sharedReadBuffer);
+        try {
+            selector.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Waits for I/O until the next idle check or scheduled task is due.
+     */
+    private void select() throws IOException {
+        ScheduledTask next = scheduledTasks.peek();
+        if (next == null) {
+            selector.select(idleCheckIntervalMillis);
+            return;
+        }
+        long delayNanos = next.deadline - System.nanoTime();
+        if (delayNanos <= 0) {
+            selector.selectNow();
+            return;
+        }
+        // Rounded up, select(0) would wait forever
+        long delayMillis = (delayNanos + 999_999) / 1_000_000;
+        selector.select(idleCheckIntervalMillis == 0 ? delayMillis : Math.min(delayMillis, idleCheckIntervalMillis));
+    }
+
+    private void runScheduledTasks() {
+        long now = System.nanoTime();
+        ScheduledTask next;
+        while ((next = scheduledTasks.peek()) != null && next.deadline - now <= 0) {
+            scheduledTasks.poll();
+            try {
+                next.task.run();
+            } catch (Throwable e) {
+                logger.error("Scheduled event loop task failed: ", e);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.error("Event loop task failed: ", e);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            NioConnection connection = (NioConnection) key.attachment();
+            if (!key.isValid()) {
+                connection.close();
+                continue;
+            }
+            try {
+                int readyOps = key.readyOps();
+                if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                    connection.onWritable();
+                }
+                if ((readyOps & SelectionKey.OP_READ) != 0 && key.isValid()) {
+                    connection.onReadable();
+                }
+            } catch (IOException e) {
+                logger.debug("Connection error: {}", e.getMessage());
+                connection.close();
+            } catch (CancelledKeyException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private void closeIdleConnections() {
+        if (keepAliveTimeoutNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastIdleCheckNanos < TimeUnit.MILLISECONDS.toNanos(idleCheckIntervalMillis)) {
+            return;
+        }
+        lastIdleCheckNanos = now;
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioConnection
+                    && ((NioConnection) attachment).closeIfIdle(now, keepAliveTimeoutNanos)) {
+                connector.onIdleTimeout();
+            }
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    void awaitTermination(long millis) throws InterruptedException {
+        thread.join(millis);
+    }
+
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+        final long deadline;
+        final Runnable task;
+
+        ScheduledTask(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            return Long.compare(deadline - other.deadline, 0);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
@@ -0,0 +1,607 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.Exchange;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exchange served by {@link NioHttpConnector}.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 15:20
+ */
+class NioExchange implements Exchange {
+    private static final Logger logger = LoggerFactory.getLogger(NioExchange.class);
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+    private static final byte[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
+            'a', 'b', 'c', 'd', 'e', 'f'};
+    // The hex digits of a long and CRLF
+    private static final int CHUNK_SIZE_LINE_ROOM = 18;
+    // The CRLF closing the data of a chunk, and the last chunk
+    private static final int CHUNK_TRAILER_ROOM = CRLF.length + LAST_CHUNK.length;
+    // How soon the event loop looks again at a pending flush while the worker is writing
+    private final NioConnection connection;
+    private final NioRequest request;
+    private final HttpHeaders responseHeaders = new HttpHeaders();
+    private final InputStream requestBody;
+    private final ResponseBodyStream responseBodyStream = new ResponseBodyStream();
+    // The encoded head once committed, until it is written
+    private ByteBuffer pendingHead;
+    private int responseCode = -1;
+    private boolean keepAlive;
+    private boolean closed;
+
+    NioExchange(NioConnection connection, NioRequest request) {
+        this.connection = connection;
+        this.request = request;
+        this.keepAlive = request.keepAlive;
+        this.requestBody = new RequestBodyStream(request.body, request.bodyLength);
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return request.method;
+    }
+
+    @Override
+    public String getRequestTarget() {
+        return request.getTarget();
+    }
+
+    @Override
+    public String getRequestPath() {
+        return request.getPath();
+    }
+
+    @Override
+    public String getQueryString() {
+        return request.getQuery();
+    }
+
+    @Override
+    public String getProtocol() {
+        return request.protocol;
+    }
+
+    @Override
+    public HttpHeaders getRequestHeaders() {
+        return request.headers;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (responseCode == -1) {
+                // The handler never responded, the connection can't be reused
+                keepAlive = false;
+            } else {
+                responseBodyStream.finish();
+            }
+        } catch (IOException e) {
+            keepAlive = false;
+        } finally {
+            request.releaseBody(connection.getBufferPool());
+        }
+    }
+
+    /**
+     * @return true if the connection can serve another request after this exchange
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public long getRequestContentLength() {
+        return request.bodyLength;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBodyStream;
+    }
+
+    @Override
+    public void commit(int statusCode, long contentLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("Response headers have already been sent!");
+        }
+        if (closed) {
+            throw new IOException("Exchange has been closed!");
+        }
+        responseCode = statusCode;
+        boolean bodyless = request.isHead() || statusCode == 204 || statusCode == 304 || statusCode < 200;
+        if (Http1RequestParser.hasToken(responseHeaders.getFirst("Connection"), "close")) {
+            keepAlive = false;
+        }
+        Http1ResponseHead head = new Http1ResponseHead(statusCode);
+        for (int i = 0; i < responseHeaders.size(); i++) {
+            String name = responseHeaders.nameAt(i);
+            if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding")
+                    || name.equalsIgnoreCase("Connection")) {
+                continue;
+            }
+            head.header(name, responseHeaders.valueAt(i));
+        }
+        BodyWriter writer;
+        if (contentLength >= 0) {
+            // A HEAD or 304 response may state the length of the body it leaves out,
+            // a 1xx or 204 response has no Content-Length at all (RFC 9110 8.6)
+            if (!bodyless || (contentLength > 0 && statusCode >= 200 && statusCode != 204)) {
+                head.contentLength(contentLength);
+            }
+            writer = bodyless ? new DiscardingWriter() : new FixedLengthWriter(contentLength);
+        } else if (bodyless) {
+            writer = new DiscardingWriter();
+        } else if (request.isHttp10()) {
+            // HTTP/1.0 clients don't understand chunked, the body is delimited by closing the connection
+            keepAlive = false;
+            writer = new CloseDelimitedWriter();
+        } else {
+            head.write(Http1ResponseHead.TRANSFER_ENCODING_CHUNKED);
+            writer = new ChunkedWriter(connection.getConfig(), isRealTime());
+        }
+        if (!keepAlive) {
+            head.write(Http1ResponseHead.CONNECTION_CLOSE);
+        } else if (request.isHttp10()) {
+            head.write(Http1ResponseHead.CONNECTION_KEEP_ALIVE);
+        }
+        // Sent with the first body bytes, or alone on flush or close
+        pendingHead = head.toByteBuffer();
+        responseBodyStream.writer = writer;
+    }
+
+    /**
+     * @return true if the application wants every flush to reach the client
+     * at once: an event stream, or the <code>X-Accel-Buffering: no</code>
+     * that asks proxies not to buffer the response
+     */
+    private boolean isRealTime() {
+        String contentType = responseHeaders.getFirst("Content-Type");
+        if (contentType != null && contentType.regionMatches(true, 0, "text/event-stream", 0, 17)) {
+            return true;
+        }
+        String accelBuffering = responseHeaders.getFirst("X-Accel-Buffering");
+        return accelBuffering != null && accelBuffering.trim().equalsIgnoreCase("no");
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return responseCode != -1;
+    }
+
+    /**
+     * Writes body bytes. The head, if not sent yet, goes first in the same
+     * gathering write, so a small response leaves in one system call.
+     */
+    private void send(ByteBuffer... buffers) throws IOException {
+        ByteBuffer head = pendingHead;
+        if (head == null) {
+            connection.write(buffers);
+            return;
+        }
+        pendingHead = null;
+        ByteBuffer[] all = new ByteBuffer[buffers.length + 1];
+        all[0] = head;
+        System.arraycopy(buffers, 0, all, 1, buffers.length);
+        connection.write(all);
+    }
+
+    private void sendHead() throws IOException {
+        ByteBuffer head = pendingHead;
+        if (head != null) {
+            pendingHead = null;
+            connection.write(head);
+        }
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.remoteAddress;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.localAddress;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return connection.isSecure();
+    }
+
+    /**
+     * The stream returned by {@link #getResponseBody()}. It is handed out
+     * before the headers are sent and delegates to the body writer chosen
+     * by {@link #commit(int, long)}. As a channel it takes ByteBuffers,
+     * which go to the socket as they are.
+     */
+    private class ResponseBodyStream extends OutputStream implements WritableByteChannel {
+        BodyWriter writer;
+        boolean finished;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            write(ByteBuffer.wrap(b, off, len));
+        }
+
+        /**
+         * Writes all of <code>src</code>, blocking until it has been handed to the socket.
+         */
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (finished) {
+                throw new IOException("Response body has been closed!");
+            }
+            if (writer == null) {
+                throw new IOException("Response headers have not been sent!");
+            }
+            int len = src.remaining();
+            if (len > 0) {
+                writer.write(src);
+            }
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !finished;
+        }
+
+        /**
+         * Sends the body bytes the writer holds back, unless it coalesces
+         * this flush, and the head if no body bytes have carried it yet.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (!finished) {
+                if (writer != null) {
+                    writer.flush();
+                }
+                sendHead();
+            }
+        }
+
+        @Override
+        public void close() {
+            NioExchange.this.close();
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (writer != null) {
+                writer.finish();
+                sendHead();
+            }
+        }
+    }
+
+    private interface BodyWriter {
+        /**
+         * Writes all of <code>src</code>, which has remaining bytes.
+         */
+        void write(ByteBuffer src) throws IOException;
+
+        /**
+         * Sends what the writer holds back, if anything and if it sees fit.
+         */
+        default void flush() throws IOException {
+        }
+
+        void finish() throws IOException;
+    }
+
+    private class FixedLengthWriter implements BodyWriter {
+        private long remaining;
+
+        FixedLengthWriter(long length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            int len = src.remaining();
+            if (len > remaining) {
+                keepAlive = false;
+                throw new IOException("Too many bytes to write to the response body, " +
+                        remaining + " bytes remaining but " + len + " bytes given");
+            }
+            remaining -= len;
+            send(src);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (remaining > 0) {
+                throw new IOException("Response body is incomplete, " + remaining + " bytes missing");
+            }
+        }
+    }
+
+    /**
+     * Frames the body in chunks of at least {@link ServerConfig#getMinChunkSize()}
+     * bytes. Smaller writes are gathered in a pooled buffer that keeps room
+     * in front of the data for the chunk-size line and behind it for the CRLF
+     * and the last chunk, so a gathered chunk, or the final one together with
+     * the terminator, leaves as one buffer. A write that completes a chunk is
+     * sent behind the gathered bytes without being copied.
+     * <p>
+     * A flush less than {@link ServerConfig#getFlushCoalesceMillis()} after
+     * the previous chunk is held back, so a page flushed piece by piece goes
+     * out in fewer and fuller packets. It goes out with the next chunk or, if
+     * the servlet writes nothing more in time, when the event loop sends it at
+     * the end of the window; if the worker is in the writer then, it sends
+     * the chunk itself before it leaves. The first flush of a response and
+     * the flushes of a real-time response are never held back.
+     * </p>
+     */
+    private class ChunkedWriter implements BodyWriter {
+        private final int minChunkSize;
+        private final long coalesceNanos;
+        private final boolean realTime;
+        // Gathered data from CHUNK_SIZE_LINE_ROOM to the position, null until needed
+        private ByteBuffer buffer;
+        private boolean chunkSent;
+        private long lastChunkNanos;
+        // A flush was coalesced, the event loop sends the gathered bytes at the end of the window
+        private boolean flushPending;
+        // Held by the worker while it writes, tried by the event loop when a pending flush is due
+        private final ReentrantLock lock = new ReentrantLock();
+        // The window of a pending flush ended while the worker held the lock, the worker sends it
+        private volatile boolean flushDue;
+
+        ChunkedWriter(ServerConfig config, boolean realTime) {
+            this.minChunkSize = config.getMinChunkSize();
+            this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushCoalesceMillis());
+            this.realTime = realTime;
+        }
+
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            lock.lock();
+            try {
+                gather(src);
+                sendDueFlush();
+            } finally {
+                unlock();
+            }
+        }
+
+        private void gather(ByteBuffer src) throws IOException {
+            int len = src.remaining();
+            if ((long) gathered() + len < minChunkSize) {
+                if (buffer == null) {
+                    buffer = connection.getBufferPool().acquire(
+                            minChunkSize + CHUNK_SIZE_LINE_ROOM + CHUNK_TRAILER_ROOM, false);
+                    buffer.position(CHUNK_SIZE_LINE_ROOM);
+                }
+                if (len <= buffer.remaining() - CHUNK_TRAILER_ROOM) {
+                    buffer.put(src);
+                    return;
+                }
+            }
+            int gathered = gathered();
+            if (gathered == 0) {
+                ByteBuffer sizeLine = ByteBuffer.allocate(CHUNK_SIZE_LINE_ROOM);
+                sizeLine.position(putSizeLine(sizeLine, len));
+                send(sizeLine, src, ByteBuffer.wrap(CRLF));
+            } else {
+                buffer.limit(buffer.position()).position(putSizeLine(buffer, (long) gathered + len));
+                try {
+                    send(buffer, src, ByteBuffer.wrap(CRLF));
+                } finally {
+                    buffer.clear().position(CHUNK_SIZE_LINE_ROOM);
+                }
+            }
+            chunkSent();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            lock.lock();
+            try {
+                sendDueFlush();
+                int gathered = gathered();
+                if (gathered == 0) {
+                    return;
+                }
+                long sinceLastChunk = System.nanoTime() - lastChunkNanos;
+                // A corked batch of pipelined responses holds its flushes back anyway
+                if (chunkSent && !realTime && sinceLastChunk < coalesceNanos && !connection.isCorked()) {
+                    if (!flushPending) {
+                        flushPending = true;
+                        connection.eventLoop.schedule(this::sendPendingFlush, coalesceNanos - sinceLastChunk);
+                    }
+                    return;
+                }
+                sendGathered(gathered, false);
+                chunkSent();
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Sends a pending flush the event loop could not, because this
+         * worker held the lock when its window ended.
+         */
+        private void sendDueFlush() throws IOException {
+            if (!flushDue) {
+                return;
+            }
+            flushDue = false;
+            int gathered = gathered();
+            if (flushPending && gathered > 0) {
+                sendGathered(gathered, false);
+                chunkSent();
+            }
+        }
+
+        /**
+         * Lets go of the lock. A flush that fell due after the worker last
+         * looked is handed back to the event loop, which now finds the lock free.
+         */
+        private void unlock() {
+            lock.unlock();
+            if (flushDue) {
+                connection.eventLoop.execute(this::sendPendingFlush);
+            }
+        }
+
+        /**
+         * Sends what a coalesced flush held back, unless a later write or
+         * flush has sent it already. Runs on the event loop, so it must not
+         * block: the chunk is copied and queued on the connection.
+         */
+        private void sendPendingFlush() {
+            // Set before trying the lock, so a worker holding it sees it when it lets go
+            flushDue = true;
+            if (!lock.tryLock()) {
+                // The worker sends it, or hands it back from unlock()
+                return;
+            }
+            try {
+                flushDue = false;
+                int gathered = gathered();
+                if (!flushPending || gathered == 0) {
+                    return;
+                }
+                frameGathered(gathered, false);
+                ByteBuffer chunk = ByteBuffer.allocate(buffer.remaining()).put(buffer).flip();
+                buffer.clear().position(CHUNK_SIZE_LINE_ROOM);
+                chunkSent();
+                connection.writeFromEventLoop(chunk);
+            } catch (IOException e) {
+                logger.debug("Failed to send a coalesced flush: {}", e.getMessage());
+                connection.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            lock.lock();
+            try {
+                int gathered = gathered();
+                if (gathered == 0) {
+                    send(ByteBuffer.wrap(LAST_CHUNK));
+                } else {
+                    sendGathered(gathered, true);
+                }
+            } finally {
+                flushPending = false;
+                flushDue = false;
+                if (buffer != null) {
+                    connection.getBufferPool().release(buffer);
+                    buffer = null;
+                }
+                lock.unlock();
+            }
+        }
+
+        private int gathered() {
+            return buffer == null ? 0 : buffer.position() - CHUNK_SIZE_LINE_ROOM;
+        }
+
+        private void sendGathered(int gathered, boolean last) throws IOException {
+            frameGathered(gathered, last);
+            try {
+                send(buffer);
+            } finally {
+                buffer.clear().position(CHUNK_SIZE_LINE_ROOM);
+            }
+        }
+
+        /**
+         * Puts the size line and the trailer around the gathered bytes, and
+         * leaves the buffer ready to be sent.
+         */
+        private void frameGathered(int gathered, boolean last) {
+            buffer.put(CRLF);
+            if (last) {
+                buffer.put(LAST_CHUNK);
+            }
+            buffer.limit(buffer.position()).position(putSizeLine(buffer, gathered));
+        }
+
+        private void chunkSent() {
+            flushPending = false;
+            chunkSent = true;
+            lastChunkNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Writes the chunk-size line of <code>size</code> so that it ends at
+     * {@link #CHUNK_SIZE_LINE_ROOM}, right in front of the chunk data.
+     *
+     * @return the index the line starts at
+     */
+    private static int putSizeLine(ByteBuffer buffer, long size) {
+        int index = CHUNK_SIZE_LINE_ROOM;
+        buffer.put(--index, (byte) '\n');
+        buffer.put(--index, (byte) '\r');
+        do {
+            buffer.put(--index, HEX_DIGITS[(int) (size & 0xf)]);
+            size >>>= 4;
+        } while (size != 0);
+        return index;
+    }
+
+    private class CloseDelimitedWriter implements BodyWriter {
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            send(src);
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    private static class DiscardingWriter implements BodyWriter {
+        @Override
+        public void write(ByteBuffer src) {
+            src.position(src.limit());
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.BufferPool;
+import com.github.cloudgyb.jerry.http.ConnectionStats;
+import com.github.cloudgyb.jerry.http.Connector;
+import com.github.cloudgyb.jerry.http.Exchange;
+import com.github.cloudgyb.jerry.http.ExchangeHandler;
+import com.github.cloudgyb.jerry.http.HttpStatus;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Selector based HTTP/1.1 connector.
+ * <p>
+ * One acceptor thread accepts connections and distributes them round-robin
+ * over N I/O event loops (one per core by default). With acceptor shards
+ * several listening sockets are bound to the same port with SO_REUSEPORT,
+ * each with its own acceptor and its own share of the event loops, and the
+ * kernel spreads new connections over them. A Unix domain socket can be
+ * listened on as well, for proxies on the same host. Each event loop reads
+ * and parses the requests of its connections; complete requests are handed
+ * off to the worker executor where the context handler runs.
+ * </p>
+ * <p>
+ * With an SSLContext configured every connection speaks TLS, handled by a
+ * non-blocking SSLEngine per connection; HTTP/2 is then negotiated with ALPN.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 15:50
+ */
+public class NioHttpConnector implements Connector {
+    private static final Logger logger = LoggerFactory.getLogger(NioHttpConnector.class);
+    private static final int MAX_POOLED_PACKET_BUFFERS = 256;
+    private final ServerConfig config;
+    private final Executor executor;
+    private final BufferPool bufferPool;
+    // Closed in stop() when the connector made the pool itself
+    private final boolean ownsBufferPool;
+    private final List<NioHttpContext> contexts = new ArrayList<>();
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+    private final LongAdder acceptedConnections = new LongAdder();
+    private final AtomicLong openConnections = new AtomicLong();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder idleTimeouts = new LongAdder();
+    // Pre-encoded so that shedding load costs no allocation or formatting
+    private final byte[] serviceUnavailable;
+    // TLS, set up in start() when an SSLContext is configured
+    private String[] applicationProtocols;
+    private PacketBufferPool packetBufferPool;
+    private int tlsApplicationBufferSize;
+    private ServerSocketChannel[] serverChannels;
+    private NioEventLoop[] eventLoops;
+    private Thread[] acceptors;
+    // Listens on ServerConfig.unixDomainSocketPath, next to the TCP sockets
+    private ServerSocketChannel unixServerChannel;
+    private volatile boolean running;
+
+    public NioHttpConnector(ServerConfig config, Executor executor) {
+        this(config, executor, new BufferPool(config.getBufferPoolMaxBytes()), true);
+    }
+
+    public NioHttpConnector(ServerConfig config, Executor executor, BufferPool bufferPool) {
+        this(config, executor, bufferPool, false);
+    }
+
+    private NioHttpConnector(ServerConfig config, Executor executor, BufferPool bufferPool, boolean ownsBufferPool) {
+        this.config = config;
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+        this.ownsBufferPool = ownsBufferPool;
+        this.serviceUnavailable = ("HTTP/1.1 503 " + HttpStatus.reasonPhrase(503) + "\r\n" +
+                "Retry-After: " + config.getRetryAfterSeconds() + "\r\n" +
+                "Content-Length: 0\r\n" +
+                "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void createContext(String contextPath, ExchangeHandler handler) {
+        if (running) {
+            throw new IllegalStateException("The connector has already been started!");
+        }
+        contexts.add(new NioHttpContext(contextPath, handler));
+        // Longest context path first
+        contexts.sort((a, b) -> Integer.compare(b.path.length(), a.path.length()));
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (config.getSslContext() != null) {
+            initTls(config.getSslContext());
+        }
+        int shards = acceptorShards();
+        serverChannels = new ServerSocketChannel[shards];
+        InetSocketAddress address = config.getAddress();
+        try {
+            for (int i = 0; i < shards; i++) {
+                serverChannels[i] = openServerChannel(address, shards > 1);
+                // The other shards must share the port the first one got, even an ephemeral one
+                address = (InetSocketAddress) serverChannels[0].getLocalAddress();
+            }
+            if (config.getUnixDomainSocketPath() != null) {
+                unixServerChannel = UnixDomainSockets.bind(config.getUnixDomainSocketPath(), config.getBacklog());
+            }
+        } catch (IOException e) {
+            for (ServerSocketChannel serverChannel : serverChannels) {
+                if (serverChannel != null) {
+                    closeQuietly(serverChannel);
+                }
+            }
+            throw e;
+        }
+        eventLoops = new NioEventLoop[Math.max(config.getIoThreads(), shards)];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new NioEventLoop(this, "JerryEventLoop-" + i);
+            eventLoops[i].start();
+        }
+        running = true;
+        acceptors = new Thread[unixServerChannel == null ? shards : shards + 1];
+        for (int i = 0; i < shards; i++) {
+            ServerSocketChannel serverChannel = serverChannels[i];
+            NioEventLoop[] shardEventLoops = shardEventLoops(i, shards);
+            acceptors[i] = new Thread(() -> accept(serverChannel, shardEventLoops, true),
+                    shards == 1 ? "JerryAcceptor" : "JerryAcceptor-" + i);
+        }
+        if (unixServerChannel != null) {
+            // Unix domain socket connections are served by all the event loops
+            acceptors[shards] = new Thread(() -> accept(unixServerChannel, eventLoops, false), "JerryAcceptor-unix");
+        }
+        for (Thread acceptor : acceptors) {
+            acceptor.start();
+        }
+    }
+
+    private int acceptorShards() {
+        int shards = config.getAcceptorShards();
+        if (shards > 1 && !isReusePortSupported()) {
+            logger.warn("SO_REUSEPORT is not supported on this platform, falling back to a single acceptor");
+            return 1;
+        }
+        return shards;
+    }
+
+    /**
+     * @return true if listening sockets can share a port with SO_REUSEPORT
+     */
+    public static boolean isReusePortSupported() {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private ServerSocketChannel openServerChannel(InetSocketAddress address, boolean reusePort) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (reusePort) {
+                serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            if (config.getReceiveBufferSize() > 0) {
+                // Set on the listening socket so that accepted sockets inherit it before the handshake
+                serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+            }
+            serverChannel.bind(address, config.getBacklog());
+        } catch (IOException e) {
+            closeQuietly(serverChannel);
+            throw e;
+        }
+        return serverChannel;
+    }
+
+    /**
+     * @return the event loops served by acceptor shard <code>shard</code>: every
+     * <code>shards</code>-th one, so that shards never share an event loop
+     */
+    private NioEventLoop[] shardEventLoops(int shard, int shards) {
+        NioEventLoop[] loops = new NioEventLoop[(eventLoops.length - shard + shards - 1) / shards];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = eventLoops[shard + i * shards];
+        }
+        return loops;
+    }
+
+    private void initTls(SSLContext sslContext) {
+        SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+        sessionContext.setSessionCacheSize(config.getTlsSessionCacheSize());
+        sessionContext.setSessionTimeout(config.getTlsSessionTimeoutSeconds());
+        applicationProtocols = config.isHttp2Enabled() ?
+                new String[]{TlsSession.ALPN_H2, "http/1.1"} : new String[]{"http/1.1"};
+        SSLSession session = sslContext.createSSLEngine().getSession();
+        tlsApplicationBufferSize = session.getApplicationBufferSize();
+        packetBufferPool = new PacketBufferPool(session.getPacketBufferSize(), MAX_POOLED_PACKET_BUFFERS);
+    }
+
+    /**
+     * @return the TLS state of a new connection, or null if TLS is not enabled
+     */
+    TlsSession newTlsSession(InetSocketAddress remoteAddress) {
+        SSLContext sslContext = config.getSslContext();
+        if (sslContext == null) {
+            return null;
+        }
+        SSLEngine engine = sslContext.createSSLEngine(remoteAddress.getHostString(), remoteAddress.getPort());
+        engine.setUseClientMode(false);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setApplicationProtocols(applicationProtocols);
+        engine.setSSLParameters(parameters);
+        return new TlsSession(engine, packetBufferPool);
+    }
+
+    /**
+     * @return the largest plaintext a TLS record decrypts to, 0 if TLS is not enabled
+     */
+    int getTlsApplicationBufferSize() {
+        return tlsApplicationBufferSize;
+    }
+
+    private void accept(ServerSocketChannel serverChannel, NioEventLoop[] eventLoops, boolean tcp) {
+        int next = 0;
+        while (running) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                // e.g. too many open files, back off a little
+                logger.warn("Failed to accept connection: {}", e.getMessage());
+                sleepQuietly();
+                continue;
+            }
+            try {
+                channel.configureBlocking(false);
+                if (tcp) {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, config.isTcpNoDelay());
+                }
+                if (config.getSendBufferSize() > 0) {
+                    channel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+                }
+            } catch (IOException e) {
+                logger.debug("Failed to configure accepted channel: {}", e.getMessage());
+                closeQuietly(channel);
+                continue;
+            }
+            eventLoops[next].register(channel);
+            next = (next + 1) % eventLoops.length;
+        }
+    }
+
+    /**
+     * Hands a batch of requests read from one connection to a worker. The
+     * requests are served in order and, when there are several (pipelining),
+     * their responses are coalesced into as few socket writes as possible.
+     */
+    void dispatch(NioConnection connection, List<NioRequest> requests) {
+        requestCount.add(requests.size());
+        inFlightBatches.incrementAndGet();
+        try {
+            executor.execute(() -> handle(connection, requests));
+        } catch (RejectedExecutionException e) {
+            inFlightBatches.decrementAndGet();
+            logger.debug("Request rejected by the worker executor: {}", e.getMessage());
+            requests.forEach(request -> request.releaseBody(bufferPool));
+            connection.sendAndClose(serviceUnavailable);
+        }
+    }
+
+    /**
+     * Runs the delegated tasks of a TLS handshake on the worker executor.
+     *
+     * @return false if the worker executor rejected them
+     */
+    boolean dispatchHandshakeTasks(Runnable tasks) {
+        try {
+            executor.execute(tasks);
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.debug("Handshake rejected by the worker executor: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void handle(NioConnection connection, List<NioRequest> requests) {
+        boolean keepAlive = true;
+        boolean corked = requests.size() > 1;
+        if (corked) {
+            connection.cork();
+        }
+        int served = 0;
+        try {
+            for (NioRequest request : requests) {
+                NioExchange exchange = new NioExchange(connection, request);
+                served++;
+                handle(exchange, findContext(request.getPath()));
+                if (!exchange.isKeepAlive()) {
+                    keepAlive = false;
+                    break;
+                }
+            }
+        } finally {
+            // Requests behind a connection close are dropped unanswered
+            for (int i = served; i < requests.size(); i++) {
+                requests.get(i).releaseBody(bufferPool);
+            }
+            if (corked) {
+                try {
+                    connection.uncork();
+                } catch (IOException e) {
+                    keepAlive = false;
+                }
+            }
+            connection.complete(keepAlive);
+            inFlightBatches.decrementAndGet();
+        }
+    }
+
+    /**
+     * Hands an HTTP/2 stream to a worker, streams of one connection run concurrently.
+     *
+     * @return false if the worker executor is saturated
+     */
+    boolean dispatch(Http2Exchange exchange) {
+        requestCount.increment();
+        inFlightBatches.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    handle(exchange, findContext(exchange.getRequestPath()));
+                } finally {
+                    inFlightBatches.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlightBatches.decrementAndGet();
+            logger.debug("Stream rejected by the worker executor: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void handle(Exchange exchange, NioHttpContext context) {
+        try {
+            if (context == null) {
+                exchange.commit(404, 0);
+            } else {
+                context.handler.handle(exchange);
+            }
+        } catch (Throwable e) {
+            logger.error("Failed to handle request: ", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private NioHttpContext findContext(String path) {
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        for (NioHttpContext context : contexts) {
+            if (context.matches(path)) {
+                return context;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (ServerSocketChannel serverChannel : serverChannels) {
+            closeQuietly(serverChannel);
+        }
+        if (unixServerChannel != null) {
+            closeQuietly(unixServerChannel);
+            try {
+                Files.deleteIfExists(config.getUnixDomainSocketPath());
+            } catch (IOException e) {
+                logger.warn("Failed to delete the socket file {}: {}", config.getUnixDomainSocketPath(), e.getMessage());
+            }
+        }
+        try {
+            for (Thread acceptor : acceptors) {
+                acceptor.join(1000);
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(delaySeconds);
+            while (inFlightBatches.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            for (NioEventLoop eventLoop : eventLoops) {
+                eventLoop.shutdown();
+            }
+            for (NioEventLoop eventLoop : eventLoops) {
+                eventLoop.awaitTermination(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownsBufferPool) {
+            bufferPool.close();
+        }
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        if (serverChannels != null && serverChannels[0].isOpen()) {
+            try {
+                return (InetSocketAddress) serverChannels[0].getLocalAddress();
+            } catch (IOException ignore) {
+            }
+        }
+        return config.getAddress();
+    }
+
+    @Override
+    public ConnectionStats getConnectionStats() {
+        return new ConnectionStats(acceptedConnections.sum(), openConnections.get(), requestCount.sum(),
+                idleTimeouts.sum());
+    }
+
+    ServerConfig getConfig() {
+        return config;
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    void onConnectionOpened() {
+        acceptedConnections.increment();
+        openConnections.incrementAndGet();
+    }
+
+    void onConnectionClosed() {
+        openConnections.decrementAndGet();
+    }
+
+    void onIdleTimeout() {
+        idleTimeouts.increment();
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.ExchangeHandler;
+
+/**
+ * A context of {@link NioHttpConnector}: a context path and its handler.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 15:05
+ */
+final class NioHttpContext {
+    final String path;
+    final ExchangeHandler handler;
+
+    NioHttpContext(String path, ExchangeHandler handler) {
+        this.path = path;
+        this.handler = handler;
+    }
+
+    /**
+     * @return true if the request path belongs to this context
+     */
+    boolean matches(String requestPath) {
+        if (path.equals("/")) {
+            return true;
+        }
+        return requestPath.startsWith(path) &&
+                (requestPath.length() == path.length() || requestPath.charAt(path.length()) == '/');
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import com.github.cloudgyb.jerry.http.BufferPool;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+import com.github.cloudgyb.jerry.util.UriUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A fully received HTTP/1.x request.
+ * <p>
+ * The request-target of an HTTP/1.x request is kept as offsets into its head
+ * and only cut into Strings when asked for; an HTTP/2 request sets it with
+ * {@link #setTarget(String)}.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 11:12
+ */
+final class NioRequest {
+    static final byte[] EMPTY_BODY = new byte[0];
+    String method;
+    String protocol;
+    // HTTP/2 only: the :scheme and :authority pseudo headers
+    String scheme;
+    String authority;
+    HttpHeaders headers;
+    byte[] body = EMPTY_BODY;
+    // The pooled buffer backing body, if any
+    private ByteBuffer pooledBody;
+    int bodyLength;
+    boolean keepAlive;
+    boolean expectContinue;
+    // HTTP/1.x only: an Upgrade field is present
+    boolean upgrade;
+    // HTTP/1.x only: the head as received, the request-target is at [targetStart, targetEnd)
+    byte[] head;
+    int targetStart;
+    int targetEnd;
+    // Start of the query in head, -1 if the target has none
+    int queryStart = -1;
+    private String target;
+    private String path;
+    private String query;
+
+    NioRequest(HttpHeaders headers) {
+        this.headers = headers;
+    }
+
+    void setTarget(String target) {
+        this.target = target;
+        this.path = UriUtil.pathOf(target);
+        this.query = UriUtil.queryOf(target);
+    }
+
+    String getTarget() {
+        if (target == null && head != null) {
+            target = new String(head, targetStart, targetEnd - targetStart, StandardCharsets.ISO_8859_1);
+        }
+        return target;
+    }
+
+    /**
+     * @return the path of the request-target, not decoded
+     */
+    String getPath() {
+        if (path == null && head != null) {
+            if (head[targetStart] == '/') {
+                int end = queryStart < 0 ? targetEnd : queryStart - 1;
+                path = new String(head, targetStart, end - targetStart, StandardCharsets.ISO_8859_1);
+            } else {
+                path = UriUtil.pathOf(getTarget());
+            }
+        }
+        return path;
+    }
+
+    /**
+     * @return the query of the request-target, not decoded, or null if absent
+     */
+    String getQuery() {
+        if (query == null && queryStart >= 0) {
+            query = new String(head, queryStart, targetEnd - queryStart, StandardCharsets.ISO_8859_1);
+        }
+        return query;
+    }
+
+    /**
+     * Appends <code>n</code> bytes of <code>src</code> to the body.
+     */
+    void appendBody(ByteBuffer src, int n, BufferPool pool) {
+        if (n <= 0) {
+            return;
+        }
+        int required = bodyLength + n;
+        if (required > body.length) {
+            growBody(Math.max(required, Math.max(body.length * 2, 1024)), pool);
+        }
+        src.get(body, bodyLength, n);
+        bodyLength += n;
+    }
+
+    /**
+     * Moves the body to storage of at least <code>capacity</code> bytes, taken
+     * from <code>pool</code> unless it is null.
+     */
+    void growBody(int capacity, BufferPool pool) {
+        if (pool == null) {
+            body = Arrays.copyOf(body, capacity);
+            return;
+        }
+        ByteBuffer bigger = pool.acquire(capacity, false);
+        System.arraycopy(body, 0, bigger.array(), 0, bodyLength);
+        if (pooledBody != null) {
+            pool.release(pooledBody);
+        }
+        pooledBody = bigger;
+        body = bigger.array();
+    }
+
+    /**
+     * Hands pooled body storage back once the exchange is done with the body.
+     */
+    void releaseBody(BufferPool pool) {
+        if (pooledBody != null) {
+            pool.release(pooledBody);
+            pooledBody = null;
+            body = EMPTY_BODY;
+            bodyLength = 0;
+        }
+    }
+
+    boolean isHead() {
+        return "HEAD".equals(method);
+    }
+
+    boolean isHttp10() {
+        return "HTTP/1.0".equals(protocol);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The request body of an NIO exchange, read straight out of the array the
+ * connector staged it in. Being a {@link ReadableByteChannel} lets the
+ * servlet input stream fill a ByteBuffer, even a direct one, without an
+ * intermediate array.
+ *
+ * @author cloudgyb
+ * @since 2025/4/20 15:30
+ */
+final class RequestBodyStream extends ByteArrayInputStream implements ReadableByteChannel {
+
+    RequestBodyStream(byte[] body, int length) {
+        super(body, 0, length);
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) {
+        if (pos >= count) {
+            return -1;
+        }
+        int n = Math.min(count - pos, dst.remaining());
+        dst.put(buf, pos, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+}
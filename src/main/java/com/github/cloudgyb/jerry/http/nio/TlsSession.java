@@ -0,0 +1,171 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The TLS state of one {@link NioConnection}: its SSLEngine and the buffer
+ * of received, still encrypted bytes.
+ * <p>
+ * The network buffers come from the connector's {@link PacketBufferPool}.
+ * The input buffer is given back as soon as it holds no partial record, so
+ * an idle TLS connection, like a plain one, owns no buffer. Reading and
+ * unwrapping happen on the event loop, wrapping under the connection's
+ * write lock, which keeps the records in the order they are queued. Only the
+ * delegated tasks of the handshake run on a worker.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/18 09:55
+ */
+final class TlsSession {
+    static final String ALPN_H2 = "h2";
+    private static final ByteBuffer[] NO_DATA = new ByteBuffer[]{ByteBuffer.allocate(0)};
+    private final SSLEngine engine;
+    private final PacketBufferPool pool;
+    // Encrypted input, in write mode, event loop only
+    private ByteBuffer netIn;
+    private boolean closeNotifySent;
+
+    TlsSession(SSLEngine engine, PacketBufferPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    /**
+     * Reads encrypted bytes from the channel.
+     *
+     * @return the number of bytes read, -1 at the end of the stream
+     */
+    int read(SocketChannel channel) throws IOException {
+        if (netIn == null) {
+            netIn = pool.acquire();
+        } else if (!netIn.hasRemaining()) {
+            // A record larger than the pooled buffers (the peer negotiated a larger record size)
+            int size = Math.max(engine.getSession().getPacketBufferSize(), netIn.capacity() * 2);
+            ByteBuffer bigger = ByteBuffer.allocate(size);
+            netIn.flip();
+            bigger.put(netIn);
+            pool.release(netIn);
+            netIn = bigger;
+        }
+        return channel.read(netIn);
+    }
+
+    /**
+     * Decrypts as many bytes as fit into <code>dst</code>, which must have room
+     * for {@link #applicationBufferSize()} bytes.
+     */
+    SSLEngineResult unwrap(ByteBuffer dst) throws SSLException {
+        if (netIn == null) {
+            netIn = pool.acquire();
+        }
+        netIn.flip();
+        try {
+            return engine.unwrap(netIn, dst);
+        } finally {
+            netIn.compact();
+        }
+    }
+
+    /**
+     * Gives the input buffer back to the pool if it holds no partial record.
+     */
+    void releaseInputIfEmpty() {
+        if (netIn != null && netIn.position() == 0) {
+            pool.release(netIn);
+            netIn = null;
+        }
+    }
+
+    /**
+     * Encrypts the next record of <code>src</code> into a pooled buffer, or
+     * produces the pending handshake data if <code>src</code> is empty.
+     *
+     * @return the record in read mode, to be given back by {@link #release(ByteBuffer)}
+     */
+    ByteBuffer wrap(ByteBuffer[] src) throws IOException {
+        ByteBuffer record = pool.acquire();
+        try {
+            SSLEngineResult result = engine.wrap(src, record);
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED && result.bytesProduced() == 0
+                    && NioConnection.hasRemaining(src)) {
+                throw new SSLException("TLS session has been closed");
+            }
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                throw new SSLException("TLS record does not fit into a packet buffer");
+            }
+        } catch (IOException e) {
+            pool.release(record);
+            throw e;
+        }
+        record.flip();
+        return record;
+    }
+
+    /**
+     * @return the data of a pending handshake message, or of the close_notify alert
+     */
+    ByteBuffer wrapHandshake() throws IOException {
+        return wrap(NO_DATA);
+    }
+
+    /**
+     * Starts closing the session.
+     *
+     * @return false if the close_notify alert has already been produced
+     */
+    boolean closeOutbound() {
+        if (closeNotifySent) {
+            return false;
+        }
+        closeNotifySent = true;
+        engine.closeOutbound();
+        return true;
+    }
+
+    void release(ByteBuffer record) {
+        pool.release(record);
+    }
+
+    /**
+     * Runs the expensive parts of the handshake (key exchange, certificate
+     * checks) in the calling thread, a worker rather than the event loop.
+     */
+    SSLEngineResult.HandshakeStatus runDelegatedTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+        return engine.getHandshakeStatus();
+    }
+
+    SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+        return engine.getHandshakeStatus();
+    }
+
+    int applicationBufferSize() {
+        return engine.getSession().getApplicationBufferSize();
+    }
+
+    /**
+     * @return true if HTTP/2 has been negotiated with ALPN
+     */
+    boolean isHttp2() {
+        return ALPN_H2.equals(engine.getApplicationProtocol());
+    }
+
+    /**
+     * Releases the input buffer, must run on the event loop.
+     */
+    void free() {
+        if (netIn != null) {
+            pool.release(netIn);
+            netIn = null;
+        }
+    }
+}
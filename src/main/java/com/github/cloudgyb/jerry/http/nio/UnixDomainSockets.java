@@ -0,0 +1,95 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Unix domain socket support of Java 16+ (<code>UnixDomainSocketAddress</code>,
+ * <code>StandardProtocolFamily.UNIX</code>), resolved reflectively because we
+ * compile for Java 11.
+ *
+ * @author cloudgyb
+ * @since 2025/4/19 10:15
+ */
+final class UnixDomainSockets {
+    // The peer of a Unix domain socket is on this host and has no port
+    static final InetSocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    private static final ProtocolFamily UNIX;
+    // ServerSocketChannel.open(ProtocolFamily)
+    private static final Method OPEN;
+    // UnixDomainSocketAddress.of(Path)
+    private static final Method ADDRESS_OF;
+
+    static {
+        ProtocolFamily unix = null;
+        Method open = null;
+        Method addressOf = null;
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+            open = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+        } catch (IllegalArgumentException | ReflectiveOperationException ignore) {
+        }
+        UNIX = unix;
+        OPEN = open;
+        ADDRESS_OF = addressOf;
+    }
+
+    private UnixDomainSockets() {
+    }
+
+    static boolean isSupported() {
+        return ADDRESS_OF != null;
+    }
+
+    /**
+     * Binds a listening socket to <code>path</code>, replacing a socket file
+     * left behind by a previous run.
+     */
+    static ServerSocketChannel bind(Path path, int backlog) throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unix domain sockets require Java 16+, running on Java " +
+                    System.getProperty("java.version"));
+        }
+        if (Files.exists(path) && !Files.isRegularFile(path) && !Files.isDirectory(path)) {
+            Files.delete(path);
+        }
+        ServerSocketChannel channel;
+        SocketAddress address;
+        try {
+            channel = (ServerSocketChannel) OPEN.invoke(null, UNIX);
+            address = (SocketAddress) ADDRESS_OF.invoke(null, path);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            channel.bind(address, backlog);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * @return <code>address</code> if it is an internet socket address, otherwise
+     * (the address of a Unix domain socket) the loopback address
+     */
+    static InetSocketAddress toInetSocketAddress(SocketAddress address) {
+        return address instanceof InetSocketAddress ? (InetSocketAddress) address : LOOPBACK;
+    }
+}
@@ -1,15 +1,18 @@
 package com.github.cloudgyb.jerry.servlet;
 
+import com.github.cloudgyb.jerry.http.Exchange;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
 import com.github.cloudgyb.jerry.servlet.multipart.PartImpl;
-import com.sun.net.httpserver.Headers;
-import com.sun.net.httpserver.HttpExchange;
 import jakarta.servlet.*;
 import jakarta.servlet.http.*;
 import org.apache.commons.fileupload2.core.*;
 import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
 
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.*;
 import java.util.function.Consumer;
@@ -20,61 +23,121 @@ import java.util.function.Consumer;
  */
 public class HttpServletRequestImpl implements HttpServletRequest {
     private static final String NO_CHECK_AUTH_TYPE = "no-check";
-    private final HttpExchange httpExchange;
-    private final Headers requestHeaders;
+    private Exchange exchange;
+    private HttpHeaders requestHeaders;
     private final ServletContextImpl servletContext;
-    private final ServletInputStream servletInputStream;
+    private final ServletInputStreamImpl servletInputStream;
     private String authType = NO_CHECK_AUTH_TYPE;
+    // Everything below is worked out on first use, most requests need none of it
     private Cookie[] cookies;
-    private final String requestId;
-    private final Map<String, String[]> parameterMap;
-    private final Map<String, Object> attributeMap;
-    private final boolean isSecure;
+    private String requestId;
+    private Map<String, String[]> parameterMap;
+    private Map<String, Object> attributeMap;
+    private boolean isSecure;
     private final DispatcherType dispatcherType = DispatcherType.REQUEST;
     private String characterEncoding;
     private String jsessionid = null;
     // multipart
     private List<Part> parts = null;
-
-    public HttpServletRequestImpl(HttpExchange httpExchange, ServletContextImpl servletContext) {
-        this.httpExchange = httpExchange;
-        this.requestHeaders = httpExchange.getRequestHeaders();
-        this.servletInputStream = new ServletInputStreamImpl(httpExchange.getRequestBody());
+    private boolean partsParsed;
+    // Whether parameterMap holds the parameters of this request, it is kept when recycled
+    private boolean parametersParsed;
+    // Set by ServletContextImpl.process before the request is handled
+    private RequestMapping mapping;
+    private String requestURI;
+
+    public HttpServletRequestImpl(Exchange exchange, ServletContextImpl servletContext) {
+        this.exchange = exchange;
+        this.requestHeaders = exchange.getRequestHeaders();
+        this.servletInputStream = new ServletInputStreamImpl(exchange.getRequestBody(),
+                exchange.getRequestContentLength());
         this.servletContext = servletContext;
-        this.parameterMap = new HashMap<>();
-        this.attributeMap = new HashMap<>();
-        this.requestId = UUID.randomUUID().toString();
-        this.isSecure = false;
-        parseParameters();
-        parseCookies();
-        boolean isMultipart = JakartaServletFileUpload.isMultipartContent(this);
-        if (isMultipart) {
-            parts = new ArrayList<>();
-            JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> uploadParser = new JakartaServletFileUpload<>();
-            uploadParser.setFileItemFactory(new DiskFileItemFactory.Builder().get());
-            try {
-                List<DiskFileItem> diskFileItems = uploadParser.parseRequest(this);
-                for (DiskFileItem diskFileItem : diskFileItems) {
-                    parts.add(new PartImpl(diskFileItem));
-                }
-            } catch (FileUploadException e) {
-                throw new RuntimeException(e);
+        this.isSecure = exchange.isSecure();
+        // The session is accessed by this request whether or not the servlet asks for it
+        touchSession();
+    }
+
+    /**
+     * Resets this request once it has ended, and lets go of its exchange.
+     * The parameter and attribute maps are cleared and kept.
+     */
+    void recycle() {
+        exchange = null;
+        requestHeaders = null;
+        servletInputStream.recycle(InputStream.nullInputStream(), 0);
+        authType = NO_CHECK_AUTH_TYPE;
+        cookies = null;
+        requestId = null;
+        parametersParsed = false;
+        if (parameterMap != null) {
+            parameterMap.clear();
+        }
+        if (attributeMap != null) {
+            attributeMap.clear();
+        }
+        characterEncoding = null;
+        jsessionid = null;
+        parts = null;
+        partsParsed = false;
+        mapping = null;
+        requestURI = null;
+    }
+
+    /**
+     * Takes up the next exchange after {@link #recycle()}.
+     */
+    void reuse(Exchange exchange) {
+        this.exchange = exchange;
+        this.requestHeaders = exchange.getRequestHeaders();
+        servletInputStream.recycle(exchange.getRequestBody(), exchange.getRequestContentLength());
+        this.isSecure = exchange.isSecure();
+        touchSession();
+    }
+
+    private void parseParts() {
+        partsParsed = true;
+        if (!JakartaServletFileUpload.isMultipartContent(this)) {
+            return;
+        }
+        parts = new ArrayList<>();
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> uploadParser = new JakartaServletFileUpload<>();
+        uploadParser.setFileItemFactory(new DiskFileItemFactory.Builder().get());
+        try {
+            List<DiskFileItem> diskFileItems = uploadParser.parseRequest(this);
+            for (DiskFileItem diskFileItem : diskFileItems) {
+                parts.add(new PartImpl(diskFileItem));
+            }
+        } catch (FileUploadException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Map<String, String[]> parameters() {
+        if (!parametersParsed) {
+            if (parameterMap == null) {
+                parameterMap = new HashMap<>();
             }
+            parametersParsed = true;
+            parseParameters();
         }
+        return parameterMap;
     }
 
     private void parseParameters() {
-        String query = httpExchange.getRequestURI().getQuery();
+        String query = exchange.getQueryString();
         if (query == null || query.trim().isEmpty()) {
             return;
         }
         String[] split = query.split("&");
         for (String s : split) {
-            String[] split1 = s.split("=");
-            String k = split1[0];
+            if (s.isEmpty()) {
+                continue;
+            }
+            String[] split1 = s.split("=", 2);
+            String k = URLDecoder.decode(split1[0], StandardCharsets.UTF_8);
             String v = "";
             if (split1.length > 1) {
-                v = split1[1];
+                v = URLDecoder.decode(split1[1], StandardCharsets.UTF_8);
             }
             String[] values = parameterMap.putIfAbsent(k, new String[]{v});
             if (values != null) {
@@ -112,9 +175,48 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public Cookie[] getCookies() {
+        if (cookies == null) {
+            parseCookies();
+        }
         return cookies;
     }
 
+    /**
+     * Finds the session cookie without parsing the other cookies, and marks
+     * the session as accessed.
+     */
+    private void touchSession() {
+        List<String> cookieHeaders = this.requestHeaders.get("Cookie");
+        if (cookieHeaders == null) {
+            return;
+        }
+        String key = servletContext.sessionManager.SESSION_ID_KEY;
+        for (String cookieHeader : cookieHeaders) {
+            int start = 0;
+            while (start < cookieHeader.length()) {
+                int end = cookieHeader.indexOf(';', start);
+                if (end < 0) {
+                    end = cookieHeader.length();
+                }
+                while (start < end && cookieHeader.charAt(start) == ' ') {
+                    start++;
+                }
+                int valueStart = start + key.length() + 1;
+                if (valueStart <= end && cookieHeader.startsWith(key, start)
+                        && cookieHeader.charAt(valueStart - 1) == '=') {
+                    jsessionid = cookieHeader.substring(valueStart, end).trim();
+                    HttpSessionImpl session = servletContext.sessionManager.getSession(jsessionid);
+                    if (session != null) {
+                        session.setLastAccessedTime(System.currentTimeMillis());
+                        session.changeToOld();
+                    }
+                    return;
+                }
+                start = end + 1;
+            }
+        }
+    }
+
     private void parseCookies() {
         List<String> cookieHeaders = this.requestHeaders.get("Cookie");
         if (cookieHeaders == null) {
@@ -133,14 +235,6 @@ public class HttpServletRequestImpl implements HttpServletRequest {
                 String[] split1 = s.split("=");
                 String cookieName = split1[0];
                 String cookieValue = split1[1];
-                if (servletContext.sessionManager.SESSION_ID_KEY.equals(cookieName)) {
-                    jsessionid = cookieValue;
-                    HttpSessionImpl session = servletContext.sessionManager.getSession(jsessionid);
-                    if (session != null) {
-                        session.setLastAccessedTime(System.currentTimeMillis());
-                        session.changeToOld();
-                    }
-                }
                 cookieList.add(new Cookie(cookieName, cookieValue));
             }
         }
@@ -173,8 +267,7 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public Enumeration<String> getHeaderNames() {
-        Set<String> headerNames = requestHeaders.keySet();
-        return Collections.enumeration(headerNames);
+        return Collections.enumeration(requestHeaders.names());
     }
 
     @Override
@@ -188,12 +281,12 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public String getMethod() {
-        return httpExchange.getRequestMethod();
+        return exchange.getRequestMethod();
     }
 
     @Override
     public String getPathInfo() {
-        return httpExchange.getRequestURI().getPath();
+        return mapping == null ? null : mapping.pathInfo;
     }
 
     @Override
@@ -203,12 +296,14 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public String getContextPath() {
-        return httpExchange.getHttpContext().getPath();
+        // The root context is ""
+        String contextPath = servletContext.getContextPath();
+        return contextPath.equals("/") ? "" : contextPath;
     }
 
     @Override
     public String getQueryString() {
-        return httpExchange.getRequestURI().getQuery();
+        return exchange.getQueryString();
     }
 
     @Override
@@ -233,20 +328,40 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public String getRequestURI() {
-        return httpExchange.getRequestURI().getPath();
+        if (requestURI == null) {
+            requestURI = exchange.getRequestPath();
+        }
+        return requestURI;
     }
 
     @Override
     public StringBuffer getRequestURL() {
-        String s = httpExchange.getRequestURI().toString();
-        int i = s.indexOf("?");
-        s = s.substring(0, i);
-        return new StringBuffer(s);
+        StringBuffer url = new StringBuffer();
+        String scheme = getScheme();
+        int port = getServerPort();
+        url.append(scheme).append("://").append(getServerName());
+        if (!(scheme.equals("http") && port == 80) && !(scheme.equals("https") && port == 443)) {
+            url.append(':').append(port);
+        }
+        url.append(getRequestURI());
+        return url;
     }
 
     @Override
     public String getServletPath() {
-        return httpExchange.getRequestURI().getPath();
+        return mapping == null ? "" : mapping.servletPath;
+    }
+
+    @Override
+    public HttpServletMapping getHttpServletMapping() {
+        if (mapping == null || mapping.servletMapping == null) {
+            return HttpServletRequest.super.getHttpServletMapping();
+        }
+        return mapping;
+    }
+
+    void setMapping(RequestMapping mapping) {
+        this.mapping = mapping;
     }
 
     @Override
@@ -321,6 +436,9 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public Collection<Part> getParts() {
+        if (!partsParsed) {
+            parseParts();
+        }
         if (parts == null) {
             return Collections.emptyList();
         }
@@ -329,6 +447,9 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public Part getPart(String s) {
+        if (!partsParsed) {
+            parseParts();
+        }
         if (parts == null) {
             return null;
         }
@@ -345,11 +466,14 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public Object getAttribute(String s) {
-        return attributeMap.get(s);
+        return attributeMap == null ? null : attributeMap.get(s);
     }
 
     @Override
     public Enumeration<String> getAttributeNames() {
+        if (attributeMap == null) {
+            return Collections.emptyEnumeration();
+        }
         return Collections.enumeration(attributeMap.keySet());
     }
 
@@ -370,16 +494,13 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public int getContentLength() {
-        try {
-            return httpExchange.getRequestBody().available();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        long length = getContentLengthLong();
+        return length > Integer.MAX_VALUE ? -1 : (int) length;
     }
 
     @Override
     public long getContentLengthLong() {
-        return getContentLength();
+        return exchange.getRequestContentLength();
     }
 
     @Override
@@ -394,62 +515,89 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public String getParameter(String s) {
-        String[] params = parameterMap.get(s);
+        String[] params = parameters().get(s);
         return params == null ? null : params[0];
     }
 
     @Override
     public Enumeration<String> getParameterNames() {
-        return Collections.enumeration(parameterMap.keySet());
+        return Collections.enumeration(parameters().keySet());
     }
 
     @Override
     public String[] getParameterValues(String s) {
-        return parameterMap.get(s);
+        return parameters().get(s);
     }
 
     @Override
     public Map<String, String[]> getParameterMap() {
-        return parameterMap;
+        return parameters();
     }
 
     @Override
     public String getProtocol() {
-        return httpExchange.getProtocol();
+        return exchange.getProtocol();
     }
 
     @Override
     public String getScheme() {
-        return httpExchange.getRequestURI().getScheme();
+        return exchange.getScheme();
     }
 
     @Override
     public String getServerName() {
-        return httpExchange.getRequestURI().getHost();
+        String host = requestHeaders.getFirst("Host");
+        if (host == null || host.isEmpty()) {
+            return exchange.getLocalAddress().getHostString();
+        }
+        int colon = host.lastIndexOf(':');
+        // IPv6 literal, e.g. [::1]:8080
+        if (colon > 0 && host.lastIndexOf(']') < colon) {
+            return host.substring(0, colon);
+        }
+        return host;
     }
 
     @Override
     public int getServerPort() {
-        return httpExchange.getRequestURI().getPort();
+        String host = requestHeaders.getFirst("Host");
+        if (host == null || host.isEmpty()) {
+            return exchange.getLocalAddress().getPort();
+        }
+        int colon = host.lastIndexOf(':');
+        if (colon > 0 && host.lastIndexOf(']') < colon) {
+            try {
+                return Integer.parseInt(host.substring(colon + 1));
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return isSecure() ? 443 : 80;
     }
 
     @Override
     public BufferedReader getReader() {
-        return new BufferedReader(new InputStreamReader(httpExchange.getRequestBody()));
+        return new BufferedReader(new InputStreamReader(servletInputStream));
     }
 
     @Override
     public String getRemoteAddr() {
-        return httpExchange.getRemoteAddress().toString();
+        InetSocketAddress remoteAddress = exchange.getRemoteAddress();
+        if (remoteAddress.getAddress() == null) {
+            return remoteAddress.getHostString();
+        }
+        return remoteAddress.getAddress().getHostAddress();
     }
 
     @Override
     public String getRemoteHost() {
-        return httpExchange.getRemoteAddress().getHostName();
+        return exchange.getRemoteAddress().getHostName();
     }
 
     @Override
     public void setAttribute(String s, Object value) {
+        if (attributeMap == null) {
+            attributeMap = new HashMap<>();
+        }
         Object oldValue = attributeMap.get(s);
         attributeMap.put(s, value);
         ServletRequestAttributeEvent event = new ServletRequestAttributeEvent(
@@ -462,6 +610,9 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public void removeAttribute(String s) {
+        if (attributeMap == null) {
+            return;
+        }
         Object value = attributeMap.remove(s);
         ServletRequestAttributeEvent event = new ServletRequestAttributeEvent(
                 servletContext, this, s, value);
@@ -492,22 +643,26 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public int getRemotePort() {
-        return httpExchange.getRequestURI().getPort();
+        return exchange.getRemoteAddress().getPort();
     }
 
     @Override
     public String getLocalName() {
-        return httpExchange.getHttpContext().getServer().getAddress().getHostName();
+        return exchange.getLocalAddress().getHostName();
     }
 
     @Override
     public String getLocalAddr() {
-        return httpExchange.getHttpContext().getServer().getAddress().getHostString();
+        InetSocketAddress localAddress = exchange.getLocalAddress();
+        if (localAddress.getAddress() == null) {
+            return localAddress.getHostString();
+        }
+        return localAddress.getAddress().getHostAddress();
     }
 
     @Override
     public int getLocalPort() {
-        return httpExchange.getHttpContext().getServer().getAddress().getPort();
+        return exchange.getLocalAddress().getPort();
     }
 
     @Override
@@ -547,12 +702,15 @@ public class HttpServletRequestImpl implements HttpServletRequest {
 
     @Override
     public String getRequestId() {
+        if (requestId == null) {
+            requestId = Long.toString(RequestIdSequence.next());
+        }
         return requestId;
     }
 
     @Override
     public String getProtocolRequestId() {
-        return "";
+        return exchange.getProtocolRequestId();
     }
 
     @Override
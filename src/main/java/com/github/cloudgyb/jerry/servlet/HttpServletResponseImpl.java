@@ -1,10 +1,12 @@
 package com.github.cloudgyb.jerry.servlet;
 
 import com.github.cloudgyb.jerry.ServerInfo;
+import com.github.cloudgyb.jerry.http.BufferPool;
+import com.github.cloudgyb.jerry.http.Exchange;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
 import com.github.cloudgyb.jerry.servlet.buffer.OutputBuffer;
+import com.github.cloudgyb.jerry.servlet.buffer.ResponseWriter;
 import com.github.cloudgyb.jerry.util.DateUtil;
-import com.sun.net.httpserver.Headers;
-import com.sun.net.httpserver.HttpExchange;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
@@ -13,11 +15,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 
@@ -29,45 +33,128 @@ import java.util.Objects;
  */
 public class HttpServletResponseImpl implements HttpServletResponse {
     private final static String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
     private static final Logger log = LoggerFactory.getLogger(HttpServletResponseImpl.class);
     boolean isCommit = false;
-    private final HttpExchange httpExchange;
+    private Exchange exchange;
     private final HttpServletRequestImpl requestImpl;
-    private final Headers responseHeaders;
+    private HttpHeaders responseHeaders;
     private int statusCode = HttpServletResponse.SC_OK;
     private String characterEncoding;
     private String contentType = null;
     private long contentLength = -1;
-    private int bufferSize = 4096;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
     private final OutputBuffer outputBuffer;
-    private ServletOutputStream outputStream;
-    private PrintWriter writer;
+    private ServletOutputStreamImpl outputStream;
+    private ResponseWriter writer;
+    // Left by a recycled response, for the next one to take up
+    private ServletOutputStreamImpl spareOutputStream;
+    private ResponseWriter spareWriter;
     private Locale locale = Locale.getDefault();
 
-    public HttpServletResponseImpl(HttpExchange httpExchange, HttpServletRequestImpl requestImpl) {
-        this.httpExchange = httpExchange;
+    public HttpServletResponseImpl(Exchange exchange, HttpServletRequestImpl requestImpl) {
+        this(exchange, requestImpl, null);
+    }
+
+    /**
+     * @param bufferPool where the response buffer is taken from, null to allocate it
+     */
+    public HttpServletResponseImpl(Exchange exchange, HttpServletRequestImpl requestImpl, BufferPool bufferPool) {
+        this.exchange = exchange;
         this.requestImpl = requestImpl;
-        this.responseHeaders = httpExchange.getResponseHeaders();
-        this.outputBuffer = new OutputBuffer(bufferSize, httpExchange.getResponseBody());
+        this.responseHeaders = exchange.getResponseHeaders();
+        this.outputBuffer = new OutputBuffer(bufferSize, exchange.getResponseBody(), bufferPool);
         this.outputBuffer.setBufferFlushLister(this::commit);
+        begin();
+    }
+
+    private void begin() {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            // No body goes out, the servlet's output is only counted for the Content-Length
+            this.outputBuffer.setCounting();
+        }
         this.characterEncoding = requestImpl.getServletContext().getResponseCharacterEncoding();
     }
 
+    /**
+     * Resets this ended response and lets go of its exchange.
+     *
+     * @param keepStreams whether the next response may hand out the same
+     *                    output stream or writer again; if not they are
+     *                    closed, so that writing through them fails
+     */
+    void recycle(boolean keepStreams) {
+        if (keepStreams) {
+            if (outputStream != null) {
+                spareOutputStream = outputStream;
+            }
+            if (writer != null) {
+                spareWriter = writer;
+            }
+        } else {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        outputStream = null;
+        writer = null;
+        exchange = null;
+        responseHeaders = null;
+        isCommit = false;
+        statusCode = HttpServletResponse.SC_OK;
+        contentType = null;
+        contentLength = -1;
+        bufferSize = DEFAULT_BUFFER_SIZE;
+        locale = Locale.getDefault();
+    }
+
+    /**
+     * Takes up the next exchange after {@link #recycle(boolean)}.
+     */
+    void reuse(Exchange exchange) {
+        this.exchange = exchange;
+        this.responseHeaders = exchange.getResponseHeaders();
+        outputBuffer.recycle(exchange.getResponseBody(), bufferSize);
+        begin();
+    }
+
+    /**
+     * Sizes the response buffer before the servlet runs, from what the servlet
+     * usually answers. A later {@link #setBufferSize(int)} still wins.
+     */
+    void setInitialBufferSize(int size) {
+        if (isCommit) {
+            return;
+        }
+        outputBuffer.setSize(size);
+        bufferSize = size;
+    }
+
+    /**
+     * @return the body bytes the application has written
+     */
+    long getBodyBytes() {
+        return outputBuffer.getBytesWritten();
+    }
+
     void end() throws IOException {
         if (!isCommit) {
             if (writer != null) {
-                writer.flush();
+                writer.finish();
             }
-            int count = outputBuffer.getCount();
-            if (count == 0) {
-                contentLength = -1; // Content-Length is 0
-            } else {
-                contentLength = count;
+            // The whole body is still buffered (or counted), so its length is known. A HEAD
+            // handler may declare the length without writing the body.
+            long bodyBytes = outputBuffer.getBytesWritten();
+            if (!outputBuffer.isCounting() || bodyBytes > 0 || contentLength < 0) {
+                contentLength = bodyBytes;
             }
             commit();
         }
         outputBuffer.close();
-        httpExchange.close();
+        exchange.close();
     }
 
     private void commit() {
@@ -96,13 +183,12 @@ public class HttpServletResponseImpl implements HttpServletResponse {
                 sessionCookie.setHttpOnly(true);
                 addCookie(sessionCookie);
             }
-            // Methods to write data were not called.
-            if (outputStream == null && writer == null) {
-                CL = -1; // Content-Length is 0
-            } else if (CL == -1) {
-                CL = 0; // Use chunked encoding
+            // Methods to write data were not called and the length is unknown, so there is no body.
+            // Otherwise -1 is passed through and the exchange uses chunked encoding.
+            if (CL == -1 && outputStream == null && writer == null) {
+                CL = 0;
             }
-            httpExchange.sendResponseHeaders(statusCode, CL);
+            exchange.commit(statusCode, CL);
             isCommit = true;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -119,7 +205,7 @@ public class HttpServletResponseImpl implements HttpServletResponse {
 
     @Override
     public boolean containsHeader(String name) {
-        return responseHeaders.containsKey(name);
+        return responseHeaders.contains(name);
     }
 
     @Override
@@ -140,10 +226,11 @@ public class HttpServletResponseImpl implements HttpServletResponse {
         responseHeaders.set("Content-Type", "text/html; charset=utf-8");
         contentLength = bytes.length;
         commit();
-        httpExchange.getResponseBody().write(bytes);
-        httpExchange.getResponseBody().flush();
-        httpExchange.getResponseBody().close();
-        httpExchange.close();
+        OutputStream body = exchange.getResponseBody();
+        body.write(bytes);
+        body.flush();
+        body.close();
+        exchange.close();
     }
 
     @Override
@@ -156,8 +243,8 @@ public class HttpServletResponseImpl implements HttpServletResponse {
         checkIfCommitted();
         statusCode = sc;
         responseHeaders.set("Location", location);
-        httpExchange.sendResponseHeaders(sc, -1);
-        httpExchange.getRequestBody().close();
+        exchange.commit(sc, 0);
+        exchange.getRequestBody().close();
         isCommit = true;
     }
 
@@ -169,7 +256,7 @@ public class HttpServletResponseImpl implements HttpServletResponse {
         if (name == null || name.isEmpty()) {
             return;
         }
-        responseHeaders.set(name, DateUtil.getDateRFC5322(date));
+        responseHeaders.set(name, DateUtil.getHttpDate(date));
     }
 
     @Override
@@ -180,7 +267,7 @@ public class HttpServletResponseImpl implements HttpServletResponse {
         if (name == null || name.isEmpty()) {
             return;
         }
-        responseHeaders.add(name, DateUtil.getDateRFC5322(date));
+        responseHeaders.add(name, DateUtil.getHttpDate(date));
     }
 
     @Override
@@ -251,12 +338,13 @@ public class HttpServletResponseImpl implements HttpServletResponse {
 
     @Override
     public Collection<String> getHeaders(String name) {
-        return responseHeaders.get(name);
+        List<String> values = responseHeaders.get(name);
+        return values == null ? Collections.emptyList() : values;
     }
 
     @Override
     public Collection<String> getHeaderNames() {
-        return responseHeaders.keySet();
+        return responseHeaders.names();
     }
 
     @Override
@@ -275,7 +363,13 @@ public class HttpServletResponseImpl implements HttpServletResponse {
             throw new IllegalStateException("getWriter() has already been called!");
         }
         if (outputStream == null) {
-            this.outputStream = new ServletOutputStreamImpl(this.outputBuffer);
+            if (spareOutputStream != null) {
+                spareOutputStream.recycle();
+                outputStream = spareOutputStream;
+                spareOutputStream = null;
+            } else {
+                this.outputStream = new ServletOutputStreamImpl(this.outputBuffer);
+            }
         }
         return outputStream;
     }
@@ -286,11 +380,15 @@ public class HttpServletResponseImpl implements HttpServletResponse {
             throw new IllegalStateException("getOutputStream() has already been called!");
         }
         if (writer == null) {
-            OutputStreamWriter out = new OutputStreamWriter(
-                    outputBuffer,
-                    Charset.forName(getCharacterEncoding())
-            );
-            writer = new PrintWriter(out, false);
+            ServletContextImpl servletContext = (ServletContextImpl) requestImpl.getServletContext();
+            Charset charset = servletContext.getCharset(getCharacterEncoding());
+            if (spareWriter != null && spareWriter.getCharset().equals(charset)) {
+                spareWriter.recycle();
+                writer = spareWriter;
+                spareWriter = null;
+            } else {
+                writer = new ResponseWriter(outputBuffer, charset);
+            }
         }
         return writer;
     }
@@ -0,0 +1,36 @@
+package com.github.cloudgyb.jerry.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * What the servlet sees of a recycled request when checks are on, see
+ * {@link RequestRecycler}. Once the request has ended the facade is cut off
+ * from it, and any call throws instead of reaching the next request the
+ * object serves.
+ *
+ * @author cloudgyb
+ * @since 2025/4/23 14:20
+ */
+final class RequestFacade extends HttpServletRequestWrapper {
+    private static final HttpServletRequest ENDED = (HttpServletRequest) Proxy.newProxyInstance(
+            RequestFacade.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+            (proxy, method, args) -> {
+                throw new IllegalStateException("The request has ended, "
+                        + method.getName() + "() cannot be called any more");
+            });
+
+    RequestFacade(HttpServletRequestImpl request) {
+        super(request);
+    }
+
+    HttpServletRequestImpl getRequestImpl() {
+        return (HttpServletRequestImpl) getRequest();
+    }
+
+    void release() {
+        setRequest(ENDED);
+    }
+}
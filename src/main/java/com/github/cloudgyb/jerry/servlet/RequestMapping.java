@@ -0,0 +1,85 @@
+package com.github.cloudgyb.jerry.servlet;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.MappingMatch;
+
+/**
+ * What a request path is mapped to within a context: the servlet, the path
+ * split into servlet path and path info (Servlet specification 3.5), and the
+ * filters in front of the servlet.
+ * <p>
+ * It only depends on the raw request path, so it is worked out once per path
+ * and cached, see <code>ServletContextImpl</code>.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/22 16:40
+ */
+final class RequestMapping implements HttpServletMapping {
+    // The path does not decode, or climbs above the root
+    static final RequestMapping BAD_REQUEST = new RequestMapping(null, "", null, "", null);
+    // No servlet is mapped to the path
+    static final RequestMapping NOT_FOUND = new RequestMapping(null, "", null, "", null);
+    // null for BAD_REQUEST and NOT_FOUND
+    final ServletMapping servletMapping;
+    final String servletPath;
+    final String pathInfo;
+    private final String matchValue;
+    final Filter[] filters;
+
+    RequestMapping(ServletMapping servletMapping, String servletPath, String pathInfo, String matchValue,
+                   Filter[] filters) {
+        this.servletMapping = servletMapping;
+        this.servletPath = servletPath;
+        this.pathInfo = pathInfo;
+        this.matchValue = matchValue;
+        this.filters = filters;
+    }
+
+    /**
+     * Splits a path mapped to <code>servletMapping</code> as the specification does.
+     *
+     * @param path the decoded and normalized path within the context
+     */
+    static RequestMapping of(ServletMapping servletMapping, String path, Filter[] filters) {
+        String urlPattern = servletMapping.getUrlPattern();
+        switch (servletMapping.getMappingMatch()) {
+            case CONTEXT_ROOT:
+                return new RequestMapping(servletMapping, "", "/", "", filters);
+            case PATH:
+                String servletPath = urlPattern.substring(0, urlPattern.length() - 2);
+                String pathInfo = path.length() > servletPath.length() ? path.substring(servletPath.length()) : null;
+                return new RequestMapping(servletMapping, servletPath, pathInfo,
+                        pathInfo == null ? null : pathInfo.substring(1), filters);
+            case EXTENSION:
+                // "/a/b.do" -> "a/b"
+                int extensionStart = path.length() - urlPattern.length() + 1;
+                return new RequestMapping(servletMapping, path, null, path.substring(1, extensionStart), filters);
+            case DEFAULT:
+                return new RequestMapping(servletMapping, path, null, "", filters);
+            default:
+                return new RequestMapping(servletMapping, path, null, path.substring(1), filters);
+        }
+    }
+
+    @Override
+    public String getMatchValue() {
+        return matchValue;
+    }
+
+    @Override
+    public String getPattern() {
+        return servletMapping == null ? "" : servletMapping.getUrlPattern();
+    }
+
+    @Override
+    public String getServletName() {
+        return servletMapping == null ? "" : servletMapping.getServletName();
+    }
+
+    @Override
+    public MappingMatch getMappingMatch() {
+        return servletMapping == null ? null : servletMapping.getMappingMatch();
+    }
+}
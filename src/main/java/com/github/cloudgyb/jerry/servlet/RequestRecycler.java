@@ -0,0 +1,85 @@
+package com.github.cloudgyb.jerry.servlet;
+
+import com.github.cloudgyb.jerry.http.BufferPool;
+import com.github.cloudgyb.jerry.http.Exchange;
+
+/**
+ * Runs the requests of a context on request and response objects that each
+ * worker thread resets and reuses, instead of building new ones per request:
+ * the request and its body stream and maps, the response and its buffer,
+ * output stream and writer.
+ * <p>
+ * A request runs on one thread from start to end, so a thread's objects are
+ * free again once {@link ServletContextImpl#process} returns. A servlet that
+ * keeps a reference beyond that would see a later request through it. With
+ * checks on, the servlet is handed a {@link RequestFacade} and a
+ * {@link ResponseFacade} that are cut off when the request ends, and the
+ * output stream and writer are closed rather than reused, so that such use
+ * fails instead. The facades are the only objects still built per request.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/23 14:40
+ */
+public final class RequestRecycler {
+    private final ServletContextImpl servletContext;
+    private final BufferPool bufferPool;
+    private final boolean checks;
+    private final ThreadLocal<Recycled> recycled = new ThreadLocal<>();
+
+    /**
+     * @param bufferPool where response buffers are taken from, null to allocate them
+     * @param checks     whether to detect use of a request or response after it ended
+     */
+    public RequestRecycler(ServletContextImpl servletContext, BufferPool bufferPool, boolean checks) {
+        this.servletContext = servletContext;
+        this.bufferPool = bufferPool;
+        this.checks = checks;
+    }
+
+    public void handle(Exchange exchange) {
+        Recycled objects = recycled.get();
+        if (objects == null) {
+            objects = new Recycled(exchange);
+            recycled.set(objects);
+        } else if (objects.inUse) {
+            // A request run from within another one on the same thread gets its own objects
+            HttpServletRequestImpl request = new HttpServletRequestImpl(exchange, servletContext);
+            servletContext.process(request, new HttpServletResponseImpl(exchange, request, bufferPool));
+            return;
+        } else {
+            objects.request.reuse(exchange);
+            objects.response.reuse(exchange);
+        }
+        objects.inUse = true;
+        try {
+            if (checks) {
+                RequestFacade request = new RequestFacade(objects.request);
+                ResponseFacade response = new ResponseFacade(objects.response);
+                try {
+                    servletContext.process(request, response);
+                } finally {
+                    request.release();
+                    response.release();
+                }
+            } else {
+                servletContext.process(objects.request, objects.response);
+            }
+        } finally {
+            objects.request.recycle();
+            objects.response.recycle(!checks);
+            objects.inUse = false;
+        }
+    }
+
+    private final class Recycled {
+        final HttpServletRequestImpl request;
+        final HttpServletResponseImpl response;
+        boolean inUse;
+
+        Recycled(Exchange exchange) {
+            request = new HttpServletRequestImpl(exchange, servletContext);
+            response = new HttpServletResponseImpl(exchange, request, bufferPool);
+        }
+    }
+}
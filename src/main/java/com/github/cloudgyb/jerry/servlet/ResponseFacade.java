@@ -0,0 +1,36 @@
+package com.github.cloudgyb.jerry.servlet;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * What the servlet sees of a recycled response when checks are on, see
+ * {@link RequestRecycler}. Once the response has ended the facade is cut off
+ * from it, and any call throws instead of reaching the next response the
+ * object serves.
+ *
+ * @author cloudgyb
+ * @since 2025/4/23 14:20
+ */
+final class ResponseFacade extends HttpServletResponseWrapper {
+    private static final HttpServletResponse ENDED = (HttpServletResponse) Proxy.newProxyInstance(
+            ResponseFacade.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+            (proxy, method, args) -> {
+                throw new IllegalStateException("The response has ended, "
+                        + method.getName() + "() cannot be called any more");
+            });
+
+    ResponseFacade(HttpServletResponseImpl response) {
+        super(response);
+    }
+
+    HttpServletResponseImpl getResponseImpl() {
+        return (HttpServletResponseImpl) getResponse();
+    }
+
+    void release() {
+        setResponse(ENDED);
+    }
+}
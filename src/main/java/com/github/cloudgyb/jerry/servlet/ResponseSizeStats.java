@@ -0,0 +1,54 @@
+package com.github.cloudgyb.jerry.servlet;
+
+/**
+ * A point in time snapshot of the response sizes learned for one servlet.
+ *
+ * @author cloudgyb
+ * @since 2025/4/21 14:50
+ */
+public class ResponseSizeStats {
+    private final String servletName;
+    private final long responses;
+    private final long learnedSize;
+    private final int bufferSize;
+
+    public ResponseSizeStats(String servletName, long responses, long learnedSize, int bufferSize) {
+        this.servletName = servletName;
+        this.responses = responses;
+        this.learnedSize = learnedSize;
+        this.bufferSize = bufferSize;
+    }
+
+    public String getServletName() {
+        return servletName;
+    }
+
+    /**
+     * @return the number of responses seen
+     */
+    public long getResponses() {
+        return responses;
+    }
+
+    /**
+     * @return the power of two buffer size that holds 90% of the recent responses,
+     * or -1 if there were too few responses to tell
+     */
+    public long getLearnedSize() {
+        return learnedSize;
+    }
+
+    /**
+     * @return the response buffer size a request to this servlet starts with,
+     * the learned size within the configured bounds
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseSizeStats{servletName=" + servletName + ", responses=" + responses +
+                ", learnedSize=" + learnedSize + ", bufferSize=" + bufferSize + '}';
+    }
+}
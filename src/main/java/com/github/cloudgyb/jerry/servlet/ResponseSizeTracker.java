@@ -0,0 +1,84 @@
+package com.github.cloudgyb.jerry.servlet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Learns the response sizes of one servlet, to size its response buffers.
+ * <p>
+ * Sizes are counted in power of two buckets, bucket <code>i</code> holding the
+ * sizes below <code>2^i</code>. Every {@link #DECAY_INTERVAL} responses all
+ * counts are halved, so the percentile follows what the servlet answers now
+ * rather than since the server started. Updates race without locking; the
+ * result is an estimate either way.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/21 14:20
+ */
+class ResponseSizeTracker {
+    // Responses that fit in this share of buffers get an exact Content-Length
+    static final double PERCENTILE = 0.9;
+    // Responses to see before the tracker has an opinion
+    static final int MIN_SAMPLES = 16;
+    private static final int DECAY_INTERVAL = 1024;
+    // Responses between two computations of the estimate
+    private static final int ESTIMATE_INTERVAL = 16;
+    private static final int BUCKETS = 64;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long estimate = -1;
+
+    void record(long bytes) {
+        counts.incrementAndGet(bucket(bytes));
+        long n = samples.incrementAndGet();
+        if (n % DECAY_INTERVAL == 0) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.getAndUpdate(i, count -> count >> 1);
+            }
+        }
+        if (n % ESTIMATE_INTERVAL == 0) {
+            estimate = computeEstimate();
+        }
+    }
+
+    /**
+     * @return the smallest power of two a buffer of which holds
+     * {@link #PERCENTILE} of the responses without filling up, or -1 if
+     * there are not enough samples yet
+     */
+    long bufferSizeEstimate() {
+        return estimate;
+    }
+
+    private long computeEstimate() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (samples.get() < MIN_SAMPLES || total == 0) {
+            return -1;
+        }
+        long target = (long) Math.ceil(total * PERCENTILE);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    long getSamples() {
+        return samples.get();
+    }
+
+    /**
+     * A buffer flushes once it is full, so a response of exactly <code>2^i</code>
+     * bytes needs a buffer of <code>2^(i+1)</code> to keep its Content-Length.
+     */
+    private static int bucket(long bytes) {
+        return 64 - Long.numberOfLeadingZeros(bytes);
+    }
+}
@@ -6,6 +6,9 @@ import com.github.cloudgyb.jerry.servlet.filter.FilterChainImpl;
 import com.github.cloudgyb.jerry.servlet.filter.FilterConfigImpl;
 import com.github.cloudgyb.jerry.servlet.filter.FilterMapping;
 import com.github.cloudgyb.jerry.servlet.filter.FilterRegistrationImpl;
+import com.github.cloudgyb.jerry.servlet.mapping.MappingIndex;
+import com.github.cloudgyb.jerry.util.LruCache;
+import com.github.cloudgyb.jerry.util.UriUtil;
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.MultipartConfig;
 import jakarta.servlet.annotation.WebFilter;
@@ -21,6 +24,7 @@ import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -36,15 +40,27 @@ import java.util.stream.Collectors;
 public class ServletContextImpl implements ServletContext {
     private final static String DEFAULT_ENCODING = StandardCharsets.UTF_8.name();
     private final static int DEFAULT_SESSION_TIMEOUT = 24 * 3600; // one day
+    // Response buffer of a servlet that has not answered enough requests to learn from
+    private final static int DEFAULT_RESPONSE_BUFFER_SIZE = 4096;
+    private final static int DEFAULT_MAPPING_CACHE_SIZE = 1024;
     private final String contextPath;
     private final Logger logger;
     private final Map<String, Object> attributes;
     // Servlet info store
     final List<ServletMapping> servletMappings;
+    // servletMappings compiled by init()
+    private MappingIndex<ServletMapping> servletMappingIndex = new MappingIndex<>(List.of());
     private final Map<String, Servlet> nameToServletMap;
     private final Map<String, ServletRegistrationImpl> nameToServletRegistrationMap;
+    // url patterns mapped by any servlet of this context
+    final Set<String> mappedUrlPatterns;
     // Filter info store
     final List<FilterMapping> filterMappings;
+    // filterMappings compiled by init()
+    private MappingIndex<FilterMapping> filterMappingIndex = new MappingIndex<>(List.of());
+    // request path -> what it maps to, for the hot paths
+    private int mappingCacheSize = DEFAULT_MAPPING_CACHE_SIZE;
+    private LruCache<String, RequestMapping> mappingCache = new LruCache<>(0);
     private final Map<String, FilterRegistrationImpl> nameToFilterRegistrationMap;
     private final Map<String, Set<Filter>> servletNameToFilterMap;
     // WebListener info store
@@ -57,7 +73,12 @@ public class ServletContextImpl implements ServletContext {
     // Encoding
     private String requestCharacterEncoding;
     private String responseCharacterEncoding;
+    // encoding name -> Charset, so that a response does not look its charset up again
+    private final Map<String, Charset> charsets = new ConcurrentHashMap<>();
     boolean initialized = false;
+    // Bounds of the response buffer sizes learned per servlet
+    private int responseBufferMinSize = 1024;
+    private int responseBufferMaxSize = 64 * 1024;
     private int sessionTimeout;
     // session manager
     final HttpSessionManager sessionManager;
@@ -99,6 +120,7 @@ public class ServletContextImpl implements ServletContext {
         this.servletMappings = new ArrayList<>();
         this.nameToServletMap = new HashMap<>();
         this.nameToServletRegistrationMap = new HashMap<>();
+        this.mappedUrlPatterns = new HashSet<>();
         this.filterMappings = new ArrayList<>();
         this.nameToFilterRegistrationMap = new HashMap<>();
         this.servletNameToFilterMap = new HashMap<>();
@@ -138,6 +160,7 @@ public class ServletContextImpl implements ServletContext {
         }
         // Sort the servletMappings
         Collections.sort(servletMappings);
+        servletMappingIndex = new MappingIndex<>(servletMappings);
 
         //2. For Filter init
         Collection<FilterRegistrationImpl> filterRegistrations = nameToFilterRegistrationMap.values();
@@ -148,6 +171,8 @@ public class ServletContextImpl implements ServletContext {
         }
         // Sort the filterMappings
         Collections.sort(filterMappings);
+        filterMappingIndex = new MappingIndex<>(filterMappings);
+        mappingCache = new LruCache<>(mappingCacheSize);
 
         initialized = true;
     }
@@ -163,36 +188,39 @@ public class ServletContextImpl implements ServletContext {
     }
 
     public void process(HttpServletRequest request, HttpServletResponse response) {
+        // The servlet may be handed facades of recycled objects
+        HttpServletRequest requestImpl = request instanceof RequestFacade ?
+                ((RequestFacade) request).getRequestImpl() : request;
+        HttpServletResponse responseImpl = response instanceof ResponseFacade ?
+                ((ResponseFacade) response).getResponseImpl() : response;
+        RequestMapping mapping = requestMapping(request.getRequestURI());
+        if (requestImpl instanceof HttpServletRequestImpl) {
+            ((HttpServletRequestImpl) requestImpl).setMapping(mapping);
+        }
         ServletRequestEvent requestEvent = new ServletRequestEvent(this, request);
         servletRequestListeners.forEach(l -> l.requestInitialized(requestEvent));
 
-        String requestURI = request.getRequestURI();
-        requestURI = requestURI.replaceFirst(contextPath, "");
-        if (requestURI.isEmpty()) {
-            requestURI = "/";
-        }
+        ServletRegistrationImpl servletRegistration = null;
         try {
-            Servlet servlet = null;
-            ServletRegistrationImpl servletRegistration = null;
-            for (ServletMapping servletMapping : servletMappings) {
-                boolean match = servletMapping.match(requestURI);
-                if (match) {
-                    servlet = servletMapping.servlet;
-                    servletRegistration = servletMapping.servletRegistration;
-                    break;
-                }
-            }
-            if (servlet != null) {
+            ServletMapping servletMapping = mapping.servletMapping;
+            if (servletMapping != null) {
+                Servlet servlet = servletMapping.servlet;
+                servletRegistration = servletMapping.servletRegistration;
                 if (!servletRegistration.initialized) {
                     initServlet(servletRegistration, servlet);
                 }
-                String servletName = servletRegistration.getName();
-                FilterChainImpl filterChain = createFilterChain(servletName, requestURI);
+                if (responseImpl instanceof HttpServletResponseImpl) {
+                    ((HttpServletResponseImpl) responseImpl).setInitialBufferSize(responseBufferSize(servletRegistration));
+                }
+                FilterChainImpl filterChain = new FilterChainImpl(mapping.filters, servlet);
                 filterChain.doFilter(request, response);
             } else {
-                String resBody404 = "404 NOT FOUND!";
                 try {
-                    response.sendError(404, resBody404);
+                    if (mapping == RequestMapping.BAD_REQUEST) {
+                        response.sendError(400, "400 BAD REQUEST!");
+                    } else {
+                        response.sendError(404, "404 NOT FOUND!");
+                    }
                     response.getOutputStream().close();
                 } catch (IOException e) {
                     throw new RuntimeException(e);
@@ -202,9 +230,12 @@ public class ServletContextImpl implements ServletContext {
             logger.error("process request exception: ", e);
         } finally {
             try {
-                if (response instanceof HttpServletResponseImpl) {
-                    HttpServletResponseImpl resp = (HttpServletResponseImpl) response;
+                if (responseImpl instanceof HttpServletResponseImpl) {
+                    HttpServletResponseImpl resp = (HttpServletResponseImpl) responseImpl;
                     resp.end();
+                    if (servletRegistration != null) {
+                        servletRegistration.responseSizes.record(resp.getBodyBytes());
+                    }
                 }
             } catch (IOException e) {
                 System.err.println(e.getMessage());
@@ -213,22 +244,123 @@ public class ServletContextImpl implements ServletContext {
         }
     }
 
-    private FilterChainImpl createFilterChain(String servletName, String requestURI) {
-        ArrayList<FilterMapping> matchedFilterMappings = new ArrayList<>();
-        for (FilterMapping filterMapping : filterMappings) {
-            boolean match = filterMapping.match(requestURI);
-            if (match) {
-                matchedFilterMappings.add(filterMapping);
-            }
+    private int responseBufferSize(ServletRegistrationImpl servletRegistration) {
+        long learned = servletRegistration.responseSizes.bufferSizeEstimate();
+        long size = learned < 0 ? DEFAULT_RESPONSE_BUFFER_SIZE : learned;
+        return (int) Math.max(responseBufferMinSize, Math.min(responseBufferMaxSize, size));
+    }
+
+    /**
+     * Sets the bounds of the response buffer size, which otherwise follows the
+     * 90th percentile of the recent response sizes of each servlet.
+     */
+    public void setResponseBufferSizeBounds(int minSize, int maxSize) {
+        if (minSize <= 0) {
+            throw new IllegalArgumentException("minSize must be > 0");
+        }
+        if (maxSize < minSize) {
+            throw new IllegalArgumentException("maxSize must be >= minSize");
+        }
+        this.responseBufferMinSize = minSize;
+        this.responseBufferMaxSize = maxSize;
+    }
+
+    /**
+     * @return the response sizes learned for each servlet
+     */
+    public List<ResponseSizeStats> getResponseSizeStats() {
+        List<ResponseSizeStats> stats = new ArrayList<>();
+        nameToServletRegistrationMap.forEach((name, servletRegistration) -> stats.add(new ResponseSizeStats(name,
+                servletRegistration.responseSizes.getSamples(),
+                servletRegistration.responseSizes.bufferSizeEstimate(),
+                responseBufferSize(servletRegistration))));
+        return stats;
+    }
+
+    /**
+     * @param requestURI the request path as received, not decoded
+     */
+    private RequestMapping requestMapping(String requestURI) {
+        RequestMapping mapping = mappingCache.get(requestURI);
+        if (mapping == null) {
+            mapping = resolveMapping(requestURI);
+            mappingCache.put(requestURI, mapping);
         }
-        Collections.sort(matchedFilterMappings);
+        return mapping;
+    }
+
+    /**
+     * Normalizes and decodes the path, strips the context path and maps the
+     * rest, all in one go. Dot-segments are removed before decoding, so an
+     * escaped '/' or '.' never becomes path structure; one that would is
+     * rejected instead.
+     */
+    private RequestMapping resolveMapping(String requestURI) {
+        String path = UriUtil.normalizePath(requestURI);
+        if (path == null) {
+            return RequestMapping.BAD_REQUEST;
+        }
+        try {
+            path = UriUtil.decodePath(path);
+        } catch (IllegalArgumentException e) {
+            return RequestMapping.BAD_REQUEST;
+        }
+        if (UriUtil.hasDotSegment(path)) {
+            // e.g. /app/%2e%2e/other
+            return RequestMapping.BAD_REQUEST;
+        }
+        int contextPathLength = contextPath.equals("/") ? 0 : contextPath.length();
+        if (!path.startsWith(contextPath) ||
+                (path.length() > contextPathLength && path.charAt(contextPathLength) != '/')) {
+            // e.g. /app/../other
+            return RequestMapping.NOT_FOUND;
+        }
+        path = path.length() == contextPathLength ? "/" : path.substring(contextPathLength);
+        ServletMapping servletMapping = servletMappingIndex.match(path);
+        if (servletMapping == null) {
+            return RequestMapping.NOT_FOUND;
+        }
+        return RequestMapping.of(servletMapping, path, filters(servletMapping.servletRegistration, path));
+    }
+
+    /**
+     * The filters only depend on the servlet and on which filter mappings the
+     * path matches, so the array is built once per servlet and set of matched
+     * mappings; a request only gets its own cursor over it.
+     */
+    private Filter[] filters(ServletRegistrationImpl servletRegistration, String path) {
+        MappingIndex.Matches<FilterMapping> matches = filterMappingIndex.matchAll(path);
+        Filter[] filters = servletRegistration.filterChains.get(matches);
+        if (filters == null) {
+            filters = servletRegistration.filterChains.computeIfAbsent(matches,
+                    m -> filters(servletRegistration.getName(), m.getMappings()));
+        }
+        return filters;
+    }
+
+    /**
+     * Sets how many request paths the context remembers the mapping of, 0 to
+     * map every request.
+     */
+    public void setMappingCacheSize(int mappingCacheSize) {
+        if (mappingCacheSize < 0) {
+            throw new IllegalArgumentException("mappingCacheSize must be >= 0");
+        }
+        this.mappingCacheSize = mappingCacheSize;
+        if (initialized) {
+            this.mappingCache = new LruCache<>(mappingCacheSize);
+        }
+    }
+
+    private Filter[] filters(String servletName, List<FilterMapping> matchedFilterMappings) {
         Set<Filter> filters = servletNameToFilterMap.get(servletName);
         if (filters == null) {
             filters = Set.of();
         }
         ArrayList<Filter> objects = new ArrayList<>(filters);
+        // Already in the order of the sorted filterMappings
         objects.addAll(matchedFilterMappings.stream().map(FilterMapping::getFilter).collect(Collectors.toList()));
-        return new FilterChainImpl(objects.toArray(new Filter[0]), nameToServletMap.get(servletName));
+        return objects.toArray(new Filter[0]);
     }
 
     @Override
@@ -702,6 +834,20 @@ public class ServletContextImpl implements ServletContext {
         responseCharacterEncoding = encoding;
     }
 
+    /**
+     * Resolves a character encoding name, caching the result.
+     *
+     * @throws java.nio.charset.UnsupportedCharsetException if the encoding is not supported
+     */
+    Charset getCharset(String encoding) {
+        Charset charset = charsets.get(encoding);
+        if (charset == null) {
+            charset = Charset.forName(encoding);
+            charsets.putIfAbsent(encoding, charset);
+        }
+        return charset;
+    }
+
     public void addFilterMappingForServletName(String[] servletNames, Filter filter) {
         for (String servletName : servletNames) {
             Set<Filter> set = servletNameToFilterMap.putIfAbsent(servletName, new HashSet<>(Set.of(filter)));
@@ -751,6 +897,7 @@ public class ServletContextImpl implements ServletContext {
         nameToServletRegistrationMap.clear();
         servletNameToFilterMap.clear();
         servletMappings.clear();
+        mappedUrlPatterns.clear();
         filterMappings.clear();
         servletContextAttributeListeners.clear();
         servletRequestListeners.clear();
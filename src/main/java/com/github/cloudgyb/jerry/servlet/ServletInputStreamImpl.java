@@ -5,18 +5,53 @@ import jakarta.servlet.ServletInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
 
 /**
+ * The request body as seen by a servlet.
+ * <p>
+ * Bulk reads go straight to the transport's stream; when that stream is also a
+ * {@link ReadableByteChannel}, {@link #read(ByteBuffer)} fills the buffer from
+ * it without an intermediate array. The stream counts down the body length, if
+ * known, so {@link #isFinished()} turns true as soon as the last byte is read,
+ * otherwise when the transport reports the end of the body.
+ * </p>
+ *
  * @author geng
  * @since 2025/02/12 15:41:36
  */
 public class ServletInputStreamImpl extends ServletInputStream {
-    private final InputStream in;
+    private static final int COPY_CHUNK_SIZE = 8192;
+    private InputStream in;
+    // bytes left to read, or -1 if the length is unknown
+    private long remaining;
     private boolean isFinished;
     private ReadListener readListener;
 
     public ServletInputStreamImpl(InputStream in) {
+        this(in, -1);
+    }
+
+    /**
+     * @param contentLength the length of the body, or -1 if unknown
+     */
+    public ServletInputStreamImpl(InputStream in, long contentLength) {
         this.in = in;
+        this.remaining = contentLength;
+        this.isFinished = contentLength == 0;
+    }
+
+    /**
+     * Makes this stream read the body of the next request.
+     */
+    void recycle(InputStream in, long contentLength) {
+        this.in = in;
+        this.remaining = contentLength;
+        this.isFinished = contentLength == 0;
+        this.readListener = null;
     }
 
     @Override
@@ -36,6 +71,115 @@ public class ServletInputStreamImpl extends ServletInputStream {
 
     @Override
     public int read() throws IOException {
-        return in.read();
+        if (isFinished) {
+            return -1;
+        }
+        int b = in.read();
+        consumed(b < 0 ? -1 : 1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (isFinished) {
+            return -1;
+        }
+        int n = in.read(b, off, limit(len));
+        consumed(n);
+        return n;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("buffer is read-only");
+        }
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        if (isFinished) {
+            return -1;
+        }
+        int len = limit(buffer.remaining());
+        int n;
+        if (in instanceof ReadableByteChannel) {
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + len);
+            try {
+                n = ((ReadableByteChannel) in).read(buffer);
+            } finally {
+                buffer.limit(limit);
+            }
+        } else if (buffer.hasArray()) {
+            n = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), len);
+            if (n > 0) {
+                buffer.position(buffer.position() + n);
+            }
+        } else {
+            byte[] chunk = new byte[Math.min(len, COPY_CHUNK_SIZE)];
+            n = in.read(chunk, 0, chunk.length);
+            if (n > 0) {
+                buffer.put(chunk, 0, n);
+            }
+        }
+        consumed(n);
+        return n;
+    }
+
+    @Override
+    public byte[] readAllBytes() throws IOException {
+        if (isFinished) {
+            return new byte[0];
+        }
+        byte[] bytes = in.readAllBytes();
+        consumed(-1);
+        return bytes;
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "out");
+        if (isFinished) {
+            return 0;
+        }
+        long n = in.transferTo(out);
+        consumed(-1);
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return isFinished ? 0 : in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * @return <code>len</code> capped to the bytes left in the body
+     */
+    private int limit(int len) {
+        return remaining < 0 ? len : (int) Math.min(len, remaining);
+    }
+
+    /**
+     * @param n the bytes just read, or -1 at the end of the body
+     */
+    private void consumed(int n) {
+        if (n < 0) {
+            isFinished = true;
+            remaining = 0;
+        } else if (remaining > 0) {
+            remaining -= n;
+            if (remaining == 0) {
+                isFinished = true;
+            }
+        }
     }
 }
@@ -1,12 +1,12 @@
 package com.github.cloudgyb.jerry.servlet;
 
 import com.github.cloudgyb.jerry.servlet.buffer.OutputBuffer;
-import com.sun.net.httpserver.HttpExchange;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.WriteListener;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
 
 /**
  * A standard ServletOutputStream implementation.
@@ -23,6 +23,14 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
         this.outputBuffer = outputBuffer;
     }
 
+    /**
+     * Makes this stream ready for the next response over the same {@link OutputBuffer}.
+     */
+    void recycle() {
+        writeListener = null;
+        isClosed = false;
+    }
+
     @Override
     public boolean isReady() {
         return true;
@@ -53,6 +61,40 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
         }
     }
 
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (isClosed) {
+            throw new IOException("ServletOutputStream is closed");
+        }
+        try {
+            outputBuffer.write(b, off, len);
+        } catch (IOException e) {
+            if (writeListener != null) {
+                writeListener.onError(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Unlike the default implementation, does not copy <code>buffer</code> into a new array.
+     */
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+        Objects.requireNonNull(buffer);
+        if (isClosed) {
+            throw new IOException("ServletOutputStream is closed");
+        }
+        try {
+            outputBuffer.write(buffer);
+        } catch (IOException e) {
+            if (writeListener != null) {
+                writeListener.onError(e);
+            }
+            throw e;
+        }
+    }
+
     @Override
     public void flush() throws IOException {
         if (isClosed) {
@@ -1,15 +1,17 @@
 package com.github.cloudgyb.jerry.servlet;
 
+import com.github.cloudgyb.jerry.servlet.filter.FilterMapping;
+import com.github.cloudgyb.jerry.servlet.mapping.MappingIndex;
 import jakarta.servlet.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author cloudgyb
  * @since 2025/2/16 10:57
  */
 public class ServletRegistrationImpl implements ServletRegistration.Dynamic, Comparable<ServletRegistrationImpl> {
-    private static final Set<String> mappedUrlPatterns = new HashSet<>();
     private final Set<String> mappings = new HashSet<>();
     private final String servletName;
     final Servlet servlet;
@@ -19,6 +21,9 @@ public class ServletRegistrationImpl implements ServletRegistration.Dynamic, Com
     MultipartConfigElement multipartConfigElement;
     boolean asyncSupported = false;
     boolean initialized = false;
+    final ResponseSizeTracker responseSizes = new ResponseSizeTracker();
+    // The filters in front of this servlet, by the filter mappings the request path matches
+    final Map<MappingIndex.Matches<FilterMapping>, Filter[]> filterChains = new ConcurrentHashMap<>();
 
     public ServletRegistrationImpl(String servletName, Servlet servlet, ServletContextImpl servletContext) {
         this.servletName = servletName;
@@ -38,7 +43,7 @@ public class ServletRegistrationImpl implements ServletRegistration.Dynamic, Com
         }
         HashSet<String> mappedUrlPatternSet = new HashSet<>();
         for (String urlPattern : urlPatterns) {
-            boolean added = mappedUrlPatterns.add(urlPattern);
+            boolean added = servletContext.mappedUrlPatterns.add(urlPattern);
             if (added) {
                 mappings.add(urlPattern);
             } else {
@@ -1,21 +1,44 @@
 package com.github.cloudgyb.jerry.servlet.buffer;
 
+import com.github.cloudgyb.jerry.http.BufferPool;
+
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
 
 /**
  * @author cloudgyb
  * @since 2025/3/24 20:35
  */
 public class OutputBuffer extends OutputStream {
-    private volatile byte[] buffer;
+    // The longest encoding of one character (a UTF-8 surrogate pair)
+    static final int MAX_RESERVE = 4;
+    // Only touched by the thread running the request, no locking needed (and a monitor would
+    // pin a virtual thread to its carrier).
+    private byte[] buffer;
+    // The pooled buffer backing <code>buffer</code>, handed back on close
+    private ByteBuffer pooled;
     private int count;
+    // Bytes handed to the underlying stream
+    private long written;
     private int size;
-    private final OutputStream outputStream;
+    private OutputStream outputStream;
     private boolean isCosed;
+    // A HEAD response: writes are only counted
+    private boolean counting;
     private BufferFlushLister bufferFlushLister;
+    private final BufferPool bufferPool;
 
     public OutputBuffer(int size, OutputStream outputStream) {
+        this(size, outputStream, null);
+    }
+
+    /**
+     * @param bufferPool where the storage is taken from on the first write, null to allocate it
+     */
+    public OutputBuffer(int size, OutputStream outputStream, BufferPool bufferPool) {
         if (size <= 0) {
             throw new IllegalArgumentException("size < 0");
         }
@@ -24,6 +47,31 @@ public class OutputBuffer extends OutputStream {
         }
         this.outputStream = outputStream;
         this.size = size;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Makes this buffer, normally closed by then, an empty one over the body
+     * of the next response. Whatever is still buffered is dropped.
+     */
+    public void recycle(OutputStream outputStream, int size) {
+        if (outputStream == null) {
+            throw new IllegalArgumentException("outputStream cannot be null!");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("size < 0");
+        }
+        if (pooled != null) {
+            bufferPool.release(pooled);
+            pooled = null;
+        }
+        buffer = null;
+        this.outputStream = outputStream;
+        this.size = size;
+        count = 0;
+        written = 0;
+        counting = false;
+        isCosed = false;
     }
 
     public void setSize(int size) {
@@ -37,6 +85,34 @@ public class OutputBuffer extends OutputStream {
         this.size = size;
     }
 
+    /**
+     * Turns this buffer into a counting sink, for a response that has no body
+     * on the wire (HEAD): writes only add to {@link #getBytesWritten()},
+     * nothing is buffered or handed to the underlying stream. A flush still
+     * reaches the underlying stream, which commits the response.
+     */
+    public void setCounting() {
+        if (buffer != null || written > 0) {
+            throw new IllegalStateException("This OutputBuffer has been written," +
+                    "it cannot become a counting sink!");
+        }
+        counting = true;
+    }
+
+    public boolean isCounting() {
+        return counting;
+    }
+
+    /**
+     * Counts <code>n</code> bytes a writer would have encoded into a counting buffer.
+     */
+    void count(long n) throws IOException {
+        if (isCosed) {
+            throw new IOException("OutputBuffer has been closed!");
+        }
+        written += n;
+    }
+
     /**
      * Writes the specified <code>byte</code> to this buffer.
      *
@@ -46,15 +122,155 @@ public class OutputBuffer extends OutputStream {
     @Override
     public void write(int b) throws IOException {
         if (buffer == null) {
-            synchronized (this) {
-                if (buffer == null) {
-                    buffer = new byte[size];
-                }
+            if (isCosed) {
+                throw new IOException("OutputBuffer has been closed!");
             }
+            if (counting) {
+                written++;
+                return;
+            }
+            allocate();
         }
         buffer[count++] = (byte) b;
         if (count == size) {
-            flush();
+            drain();
+        }
+    }
+
+    /**
+     * Copies <code>b</code> into this buffer if it fits. Otherwise the
+     * buffered bytes are flushed and an array at least as large as the buffer
+     * is handed to the underlying stream as is, without being copied.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (isCosed) {
+            throw new IOException("OutputBuffer has been closed!");
+        }
+        if (len == 0) {
+            return;
+        }
+        if (counting) {
+            written += len;
+            return;
+        }
+        if (len > size - count) {
+            drain();
+            if (len >= size) {
+                outputStream.write(b, off, len);
+                written += len;
+                return;
+            }
+        }
+        if (buffer == null) {
+            allocate();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+        if (count == size) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of <code>src</code> like {@link #write(byte[], int, int)}.
+     * A large buffer goes straight to the underlying stream when it is also a
+     * {@link WritableByteChannel}, so a direct buffer reaches the socket without
+     * a copy into the heap.
+     */
+    public void write(ByteBuffer src) throws IOException {
+        if (isCosed) {
+            throw new IOException("OutputBuffer has been closed!");
+        }
+        int len = src.remaining();
+        if (len == 0) {
+            return;
+        }
+        if (counting) {
+            src.position(src.limit());
+            written += len;
+            return;
+        }
+        if (len > size - count) {
+            drain();
+            if (len >= size) {
+                if (outputStream instanceof WritableByteChannel) {
+                    WritableByteChannel channel = (WritableByteChannel) outputStream;
+                    while (src.hasRemaining()) {
+                        channel.write(src);
+                    }
+                    written += len;
+                    return;
+                }
+                if (src.hasArray()) {
+                    outputStream.write(src.array(), src.arrayOffset() + src.position(), len);
+                    src.position(src.limit());
+                    written += len;
+                    return;
+                }
+            }
+        }
+        if (buffer == null) {
+            allocate();
+        }
+        // Only a direct buffer without a channel to write it to gets here with more than fits
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), size - count);
+            src.get(buffer, count, n);
+            count += n;
+            if (count == size) {
+                drain();
+            }
+        }
+    }
+
+    private void allocate() {
+        if (bufferPool == null) {
+            buffer = new byte[limit()];
+            return;
+        }
+        pooled = bufferPool.acquire(limit(), false);
+        buffer = pooled.array();
+    }
+
+    /**
+     * @return the count at which the buffer is flushed; never below
+     * {@link #MAX_RESERVE} so that an encoded character always fits
+     */
+    int limit() {
+        return Math.max(size, MAX_RESERVE);
+    }
+
+    /**
+     * Makes room for at least <code>n</code> bytes, flushing if needed, for a
+     * writer that encodes straight into the buffer. The caller stores bytes
+     * from {@link #getCount()} up to {@link #limit()} into the returned array
+     * and then calls {@link #advance(int)}.
+     *
+     * @param n at most {@link #MAX_RESERVE}
+     */
+    byte[] reserve(int n) throws IOException {
+        if (isCosed) {
+            throw new IOException("OutputBuffer has been closed!");
+        }
+        if (buffer == null) {
+            allocate();
+        }
+        if (limit() - count < n) {
+            drain();
+        }
+        return buffer;
+    }
+
+    /**
+     * Sets the count after bytes were stored into the array returned by
+     * {@link #reserve(int)}, flushing once the buffer is full.
+     */
+    void advance(int newCount) throws IOException {
+        count = newCount;
+        if (count >= size) {
+            drain();
         }
     }
 
@@ -62,12 +278,35 @@ public class OutputBuffer extends OutputStream {
         return count;
     }
 
+    /**
+     * @return the bytes written to this buffer so far, buffered or not
+     */
+    public long getBytesWritten() {
+        return written + count;
+    }
+
     public void clear() {
         count = 0;
+        if (counting) {
+            written = 0;
+        }
     }
 
+    /**
+     * Writes the buffered bytes and flushes the underlying stream, which
+     * sends the response headers even if nothing has been written.
+     */
     @Override
     public void flush() throws IOException {
+        drain();
+        outputStream.flush();
+    }
+
+    /**
+     * Hands the buffered bytes to the underlying stream, without flushing it,
+     * when the buffer is full or a large write bypasses it.
+     */
+    private void drain() throws IOException {
         if (isCosed) {
             throw new IOException("OutputBuffer has been closed!");
         }
@@ -76,7 +315,7 @@ public class OutputBuffer extends OutputStream {
         }
         if (count > 0) {
             outputStream.write(buffer, 0, count);
-            outputStream.flush();
+            written += count;
         }
         count = 0;
     }
@@ -86,9 +325,16 @@ public class OutputBuffer extends OutputStream {
         if (isCosed) {
             return;
         }
-        flush();
-        isCosed = true;
-        buffer = null;
+        try {
+            flush();
+        } finally {
+            isCosed = true;
+            buffer = null;
+            if (pooled != null) {
+                bufferPool.release(pooled);
+                pooled = null;
+            }
+        }
         outputStream.close();
     }
 
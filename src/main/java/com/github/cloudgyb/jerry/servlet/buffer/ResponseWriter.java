@@ -0,0 +1,482 @@
+package com.github.cloudgyb.jerry.servlet.buffer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * The writer returned by <code>getWriter()</code>.
+ * <p>
+ * Instead of a <code>PrintWriter</code> over an <code>OutputStreamWriter</code>
+ * over the response buffer, characters are encoded straight into the
+ * {@link OutputBuffer}: US-ASCII, ISO-8859-1 and UTF-8 by hand, with a tight
+ * loop for runs of ASCII, any other charset through a {@link CharsetEncoder}.
+ * Unmappable characters and lone surrogates become the charset's replacement,
+ * like the JDK's writers. The writer belongs to one request thread, so it does
+ * not lock.
+ * </p>
+ * <p>
+ * Over a counting {@link OutputBuffer} (a HEAD response) US-ASCII,
+ * ISO-8859-1 and UTF-8 text is only measured, not encoded.
+ * </p>
+ * <p>
+ * Like any <code>PrintWriter</code> it never throws <code>IOException</code>,
+ * see {@link #checkError()}.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/20 17:40
+ */
+public class ResponseWriter extends PrintWriter {
+    private static final Writer NULL_WRITER = Writer.nullWriter();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int UTF_8 = 0;
+    private static final int ISO_8859_1 = 1;
+    private static final int US_ASCII = 2;
+    private static final int OTHER = 3;
+    private final OutputBuffer outputBuffer;
+    private final Charset charset;
+    private final int encoding;
+    private boolean counting;
+    // A high surrogate that ended the previous write, waiting for its low half
+    private char pendingHigh;
+    private CharsetEncoder encoder;
+    private ByteBuffer encoded;
+    private boolean closed;
+
+    public ResponseWriter(OutputBuffer outputBuffer, Charset charset) {
+        super(NULL_WRITER, false);
+        this.lock = this;
+        this.outputBuffer = Objects.requireNonNull(outputBuffer, "outputBuffer");
+        this.charset = Objects.requireNonNull(charset, "charset");
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            encoding = UTF_8;
+        } else if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            encoding = ISO_8859_1;
+        } else if (charset.equals(StandardCharsets.US_ASCII)) {
+            encoding = US_ASCII;
+        } else {
+            encoding = OTHER;
+        }
+        this.counting = outputBuffer.isCounting();
+    }
+
+    /**
+     * Makes this writer, closed or not, ready for the next response over the
+     * same {@link OutputBuffer}, once that buffer has been recycled.
+     */
+    public void recycle() {
+        pendingHigh = 0;
+        if (encoder != null) {
+            encoder.reset();
+            encoded.clear();
+        }
+        closed = false;
+        counting = outputBuffer.isCounting();
+        clearError();
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    // ------------------------------------------------------------ Writer
+
+    @Override
+    public void write(int c) {
+        char ch = (char) c;
+        if (pendingHigh == 0 && ch < 0x80 && !closed) {
+            try {
+                if (counting) {
+                    outputBuffer.count(1);
+                    return;
+                }
+                byte[] buffer = outputBuffer.reserve(1);
+                int pos = outputBuffer.getCount();
+                buffer[pos] = (byte) ch;
+                outputBuffer.advance(pos + 1);
+            } catch (IOException e) {
+                failed(e);
+            }
+            return;
+        }
+        write(String.valueOf(ch), 0, 1);
+    }
+
+    @Override
+    public void write(char[] buf, int off, int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        write(CharBuffer.wrap(buf), off, len);
+    }
+
+    @Override
+    public void write(char[] buf) {
+        write(buf, 0, buf.length);
+    }
+
+    @Override
+    public void write(String s, int off, int len) {
+        Objects.checkFromIndexSize(off, len, s.length());
+        write((CharSequence) s, off, len);
+    }
+
+    @Override
+    public void write(String s) {
+        write((CharSequence) s, 0, s.length());
+    }
+
+    // ------------------------------------------------------------ PrintWriter
+
+    @Override
+    public void print(String s) {
+        write(String.valueOf(s));
+    }
+
+    @Override
+    public void print(Object obj) {
+        write(String.valueOf(obj));
+    }
+
+    @Override
+    public void println() {
+        write(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(String x) {
+        print(x);
+        println();
+    }
+
+    @Override
+    public void println(Object x) {
+        print(x);
+        println();
+    }
+
+    @Override
+    public PrintWriter append(CharSequence csq) {
+        if (csq == null) {
+            csq = "null";
+        }
+        write(csq, 0, csq.length());
+        return this;
+    }
+
+    @Override
+    public PrintWriter append(CharSequence csq, int start, int end) {
+        if (csq == null) {
+            csq = "null";
+        }
+        Objects.checkFromToIndex(start, end, csq.length());
+        write(csq, start, end - start);
+        return this;
+    }
+
+    /**
+     * Flushes the response buffer, which commits the response.
+     */
+    @Override
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        try {
+            outputBuffer.flush();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            finish();
+            outputBuffer.close();
+        } catch (IOException e) {
+            failed(e);
+        }
+        closed = true;
+    }
+
+    @Override
+    public boolean checkError() {
+        flush();
+        return super.checkError();
+    }
+
+    /**
+     * Encodes a dangling high surrogate and ends a stateful encoding into the
+     * response buffer without flushing it, so that the response length is
+     * still known afterwards.
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (pendingHigh != 0) {
+            pendingHigh = 0;
+            writeReplacement();
+        }
+        if (encoder != null) {
+            endEncoding();
+        }
+    }
+
+    // ------------------------------------------------------------ encoding
+
+    private void write(CharSequence s, int off, int len) {
+        if (closed) {
+            setError();
+            return;
+        }
+        int end = off + len;
+        try {
+            if (pendingHigh != 0 && off < end) {
+                char high = pendingHigh;
+                pendingHigh = 0;
+                if (Character.isLowSurrogate(s.charAt(off))) {
+                    writePair(high, s.charAt(off++));
+                } else {
+                    writeReplacement();
+                }
+            }
+            switch (encoding) {
+                case UTF_8:
+                    if (counting) {
+                        countUtf8(s, off, end);
+                    } else {
+                        writeUtf8(s, off, end);
+                    }
+                    break;
+                case ISO_8859_1:
+                case US_ASCII:
+                    if (counting) {
+                        countSingleByte(s, off, end);
+                    } else {
+                        writeSingleByte(s, off, end, encoding == ISO_8859_1 ? 0x100 : 0x80);
+                    }
+                    break;
+                default:
+                    writeEncoded(s, off, end);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void writeUtf8(CharSequence s, int off, int end) throws IOException {
+        while (off < end) {
+            byte[] buffer = outputBuffer.reserve(OutputBuffer.MAX_RESERVE);
+            int pos = outputBuffer.getCount();
+            int limit = outputBuffer.limit();
+            int asciiEnd = Math.min(end, off + limit - pos);
+            while (off < asciiEnd) {
+                char c = s.charAt(off);
+                if (c >= 0x80) {
+                    break;
+                }
+                buffer[pos++] = (byte) c;
+                off++;
+            }
+            while (off < end && pos <= limit - OutputBuffer.MAX_RESERVE) {
+                char c = s.charAt(off++);
+                if (c < 0x80) {
+                    buffer[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[pos++] = (byte) (0xc0 | c >> 6);
+                    buffer[pos++] = (byte) (0x80 | c & 0x3f);
+                } else if (!Character.isSurrogate(c)) {
+                    buffer[pos++] = (byte) (0xe0 | c >> 12);
+                    buffer[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    buffer[pos++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && off < end && Character.isLowSurrogate(s.charAt(off))) {
+                    int cp = Character.toCodePoint(c, s.charAt(off++));
+                    buffer[pos++] = (byte) (0xf0 | cp >> 18);
+                    buffer[pos++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                    buffer[pos++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                    buffer[pos++] = (byte) (0x80 | cp & 0x3f);
+                } else if (Character.isHighSurrogate(c) && off == end) {
+                    pendingHigh = c;
+                } else {
+                    buffer[pos++] = '?';
+                }
+            }
+            outputBuffer.advance(pos);
+        }
+    }
+
+    /**
+     * Counts the bytes {@link #writeUtf8(CharSequence, int, int)} would write.
+     */
+    private void countUtf8(CharSequence s, int off, int end) throws IOException {
+        long n = 0;
+        while (off < end) {
+            char c = s.charAt(off++);
+            if (c < 0x80) {
+                n++;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (!Character.isSurrogate(c)) {
+                n += 3;
+            } else if (Character.isHighSurrogate(c) && off < end && Character.isLowSurrogate(s.charAt(off))) {
+                off++;
+                n += 4;
+            } else if (Character.isHighSurrogate(c) && off == end) {
+                pendingHigh = c;
+            } else {
+                n++;
+            }
+        }
+        outputBuffer.count(n);
+    }
+
+    /**
+     * Counts the bytes {@link #writeSingleByte(CharSequence, int, int, int)}
+     * would write: one per character, a surrogate pair being one character.
+     */
+    private void countSingleByte(CharSequence s, int off, int end) throws IOException {
+        long n = 0;
+        while (off < end) {
+            char c = s.charAt(off++);
+            if (Character.isHighSurrogate(c)) {
+                if (off == end) {
+                    pendingHigh = c;
+                    break;
+                }
+                if (Character.isLowSurrogate(s.charAt(off))) {
+                    off++;
+                }
+            }
+            n++;
+        }
+        outputBuffer.count(n);
+    }
+
+    /**
+     * @param max the first character that cannot be mapped
+     */
+    private void writeSingleByte(CharSequence s, int off, int end, int max) throws IOException {
+        while (off < end) {
+            byte[] buffer = outputBuffer.reserve(1);
+            int pos = outputBuffer.getCount();
+            int n = Math.min(end - off, outputBuffer.limit() - pos);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(off++);
+                if (c < max) {
+                    buffer[pos++] = (byte) c;
+                } else if (Character.isHighSurrogate(c) && off == end) {
+                    pendingHigh = c;
+                } else {
+                    // a surrogate pair is one unmappable character
+                    if (Character.isHighSurrogate(c) && off < end && Character.isLowSurrogate(s.charAt(off))) {
+                        off++;
+                        i++;
+                    }
+                    buffer[pos++] = '?';
+                }
+            }
+            outputBuffer.advance(pos);
+        }
+    }
+
+    private void writeEncoded(CharSequence s, int off, int end) throws IOException {
+        if (off == end) {
+            return;
+        }
+        if (Character.isHighSurrogate(s.charAt(end - 1))) {
+            pendingHigh = s.charAt(--end);
+        }
+        encode(CharBuffer.wrap(s, off, end));
+    }
+
+    private void writePair(char high, char low) throws IOException {
+        switch (encoding) {
+            case UTF_8:
+                if (counting) {
+                    outputBuffer.count(4);
+                    break;
+                }
+                byte[] buffer = outputBuffer.reserve(OutputBuffer.MAX_RESERVE);
+                int pos = outputBuffer.getCount();
+                int cp = Character.toCodePoint(high, low);
+                buffer[pos++] = (byte) (0xf0 | cp >> 18);
+                buffer[pos++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                buffer[pos++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                buffer[pos++] = (byte) (0x80 | cp & 0x3f);
+                outputBuffer.advance(pos);
+                break;
+            case OTHER:
+                encode(CharBuffer.wrap(new char[]{high, low}));
+                break;
+            default:
+                writeReplacement();
+        }
+    }
+
+    private void writeReplacement() throws IOException {
+        if (encoding == OTHER) {
+            outputBuffer.write(encoder().replacement());
+        } else {
+            outputBuffer.write('?');
+        }
+    }
+
+    private void encode(CharBuffer in) throws IOException {
+        // Not the end of input: a stateful encoder (a BOM, shift sequences) carries on with the next write
+        CharsetEncoder encoder = encoder();
+        CoderResult result;
+        do {
+            result = encoder.encode(in, encoded, false);
+            drainEncoded();
+        } while (result.isOverflow());
+    }
+
+    private void endEncoding() throws IOException {
+        CoderResult result;
+        do {
+            result = encoder.encode(CharBuffer.allocate(0), encoded, true);
+            drainEncoded();
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(encoded);
+            drainEncoded();
+        } while (result.isOverflow());
+        encoder.reset();
+    }
+
+    private void drainEncoded() throws IOException {
+        encoded.flip();
+        outputBuffer.write(encoded);
+        encoded.clear();
+    }
+
+    private CharsetEncoder encoder() {
+        if (encoder == null) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoded = ByteBuffer.allocate(1024);
+        }
+        return encoder;
+    }
+
+    private void failed(IOException e) {
+        if (e instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt();
+        }
+        setError();
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.cloudgyb.jerry.servlet.mapping;
 
+import jakarta.servlet.http.MappingMatch;
+
 import java.util.regex.Pattern;
 
 /**
@@ -9,18 +11,61 @@ import java.util.regex.Pattern;
 public abstract class AbstractMapping implements Comparable<AbstractMapping> {
     protected int priority = 0;
     protected final String urlPattern;
-    protected final Pattern pattern;
+    protected final MappingMatch mappingMatch;
+    // Compiled on demand, requests are matched by a MappingIndex
+    private volatile Pattern pattern;
 
     public AbstractMapping(String urlPattern) {
         this.urlPattern = urlPattern;
-        pattern = urlPatternToRegex(urlPattern);
+        this.mappingMatch = mappingMatch(urlPattern);
+        switch (mappingMatch) {
+            case PATH:
+                priority = 0;
+                break;
+            case EXTENSION:
+                priority = 1;
+                break;
+            case DEFAULT:
+                priority = Integer.MAX_VALUE;
+                break;
+            default:
+                priority = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Classifies a url pattern as the Servlet specification (12.2) defines them.
+     */
+    public static MappingMatch mappingMatch(String urlPattern) {
+        if (urlPattern.isEmpty()) {
+            return MappingMatch.CONTEXT_ROOT;
+        }
+        if (urlPattern.equals("/")) {
+            return MappingMatch.DEFAULT;
+        }
+        if (urlPattern.startsWith("/") && urlPattern.endsWith("/*")) {
+            return MappingMatch.PATH;
+        }
+        if (urlPattern.startsWith("*.")) {
+            return MappingMatch.EXTENSION;
+        }
+        return MappingMatch.EXACT;
     }
 
     public String getUrlPattern() {
         return urlPattern;
     }
 
+    public MappingMatch getMappingMatch() {
+        return mappingMatch;
+    }
+
     public Pattern getPattern() {
+        Pattern pattern = this.pattern;
+        if (pattern == null) {
+            pattern = urlPatternToRegex(urlPattern);
+            this.pattern = pattern;
+        }
         return pattern;
     }
 
@@ -47,8 +92,29 @@ public abstract class AbstractMapping implements Comparable<AbstractMapping> {
         }
     }
 
+    /**
+     * Matches one path literally, without a regex.
+     *
+     * @param path the path within the context, starting with <code>/</code>
+     */
     public boolean match(String path) {
-        return pattern.matcher(path).matches();
+        switch (mappingMatch) {
+            case CONTEXT_ROOT:
+                return path.equals("/");
+            case DEFAULT:
+                return true;
+            case PATH:
+                // "/a/*" matches "/a" and everything below it
+                int prefixLength = urlPattern.length() - 2;
+                return path.startsWith(urlPattern.substring(0, prefixLength))
+                        && (path.length() == prefixLength || path.charAt(prefixLength) == '/');
+            case EXTENSION:
+                int lastSegment = path.lastIndexOf('/') + 1;
+                String extension = urlPattern.substring(1);
+                return path.endsWith(extension) && path.length() - extension.length() >= lastSegment;
+            default:
+                return path.equals(urlPattern);
+        }
     }
 
 
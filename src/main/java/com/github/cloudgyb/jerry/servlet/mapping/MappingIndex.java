@@ -0,0 +1,262 @@
+package com.github.cloudgyb.jerry.servlet.mapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The url mappings of a context, compiled for lookups by path.
+ * <p>
+ * Instead of trying each mapping in turn, a path is looked up the way the
+ * Servlet specification (12.1) orders the rules: a hash map of the exact
+ * patterns, a trie of the <code>/path/*</code> patterns walked one segment
+ * at a time, a hash map of the <code>*.ext</code> patterns keyed by what
+ * follows a dot of the last segment, then the default <code>/</code>. The
+ * cost of a lookup depends on the depth of the path, not on the number of
+ * mappings.
+ * </p>
+ * <p>
+ * The mappings are fixed once built, and the index is safe to share between threads.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/22 09:40
+ */
+public final class MappingIndex<T extends AbstractMapping> {
+    private final Map<String, List<T>> exact = new HashMap<>();
+    // The matches of each exact path, which only depend on the path
+    private final Map<String, Matches<T>> exactMatches = new HashMap<>();
+    private final Node<T> prefixes = new Node<>(null);
+    private final Map<String, List<T>> extensions = new HashMap<>();
+    private final List<T> defaults = new ArrayList<>();
+
+    /**
+     * @param mappings in the order mappings of one pattern are to be returned
+     */
+    public MappingIndex(List<T> mappings) {
+        for (T mapping : mappings) {
+            String urlPattern = mapping.getUrlPattern();
+            switch (mapping.getMappingMatch()) {
+                case CONTEXT_ROOT:
+                    exact.computeIfAbsent("/", k -> new ArrayList<>(1)).add(mapping);
+                    break;
+                case DEFAULT:
+                    defaults.add(mapping);
+                    break;
+                case PATH:
+                    Node<T> node = prefixes;
+                    // "/a/b/*" -> segments "a", "b"; "/*" is the root
+                    String prefix = urlPattern.substring(0, urlPattern.length() - 2);
+                    int start = 1;
+                    while (start <= prefix.length()) {
+                        int end = prefix.indexOf('/', start);
+                        if (end < 0) {
+                            end = prefix.length();
+                        }
+                        node = node.child(prefix.substring(start, end));
+                        start = end + 1;
+                    }
+                    node.mappings.add(mapping);
+                    break;
+                case EXTENSION:
+                    extensions.computeIfAbsent(urlPattern.substring(2), k -> new ArrayList<>(1)).add(mapping);
+                    break;
+                default:
+                    exact.computeIfAbsent(urlPattern, k -> new ArrayList<>(1)).add(mapping);
+            }
+        }
+        for (String path : exact.keySet()) {
+            exactMatches.put(path, new Matches<>(collect(path)));
+        }
+        prepare(prefixes);
+    }
+
+    private void prepare(Node<T> node) {
+        node.matches = new Matches<>(collect(node, null));
+        if (!extensions.isEmpty()) {
+            node.matchesByExtension = new ConcurrentHashMap<>();
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children.values()) {
+                prepare(child);
+            }
+        }
+    }
+
+    /**
+     * @param path the path within the context, starting with <code>/</code>
+     * @return the mapping the path is mapped to, or null if none matches
+     */
+    public T match(String path) {
+        List<T> matched = exact.get(path);
+        if (matched != null) {
+            return matched.get(0);
+        }
+        // The longest path prefix
+        Node<T> node = prefixes;
+        List<T> longest = node.mappings;
+        for (int start = 1; start <= path.length() && node.children != null; ) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            if (!node.mappings.isEmpty()) {
+                longest = node.mappings;
+            }
+            start = end + 1;
+        }
+        if (!longest.isEmpty()) {
+            return longest.get(0);
+        }
+        String extension = longestExtension(path);
+        if (extension != null) {
+            return extensions.get(extension).get(0);
+        }
+        return defaults.isEmpty() ? null : defaults.get(0);
+    }
+
+    /**
+     * Finds every mapping that matches the path: the exact ones, the path
+     * prefixes from the longest, the extensions from the longest, then the
+     * default ones.
+     * <p>
+     * Paths matched by the same mappings get the same {@link Matches}
+     * instance, so whatever is derived from the matches can be cached
+     * against it. There are at most as many instances as exact patterns plus
+     * prefix trie nodes times matching extensions.
+     * </p>
+     *
+     * @param path the path within the context, starting with <code>/</code>
+     */
+    public Matches<T> matchAll(String path) {
+        Matches<T> matches = exactMatches.get(path);
+        if (matches != null) {
+            return matches;
+        }
+        // The deepest node of the walk decides the prefixes, the longest extension the rest
+        Node<T> node = deepestNode(path);
+        String extension = longestExtension(path);
+        if (extension == null) {
+            return node.matches;
+        }
+        Node<T> walked = node;
+        return node.matchesByExtension.computeIfAbsent(extension, e -> new Matches<>(collect(walked, e)));
+    }
+
+    /**
+     * @return the last node of the prefix trie the segments of the path lead to
+     */
+    private Node<T> deepestNode(String path) {
+        Node<T> node = prefixes;
+        for (int start = 1; start <= path.length() && node.children != null; ) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            Node<T> child = node.children.get(path.substring(start, end));
+            if (child == null) {
+                break;
+            }
+            node = child;
+            start = end + 1;
+        }
+        return node;
+    }
+
+    /**
+     * @return the longest mapped extension of the last segment, or null
+     */
+    private String longestExtension(String path) {
+        if (extensions.isEmpty()) {
+            return null;
+        }
+        for (int dot = path.indexOf('.', path.lastIndexOf('/') + 1); dot >= 0; dot = path.indexOf('.', dot + 1)) {
+            String extension = path.substring(dot + 1);
+            if (extensions.containsKey(extension)) {
+                return extension;
+            }
+        }
+        return null;
+    }
+
+    private List<T> collect(String path) {
+        List<T> all = new ArrayList<>(exact.get(path));
+        all.addAll(collect(deepestNode(path), longestExtension(path)));
+        return all;
+    }
+
+    /**
+     * @param node      the deepest node walked
+     * @param extension the longest extension matched, or null
+     */
+    private List<T> collect(Node<T> node, String extension) {
+        List<T> all = new ArrayList<>();
+        for (Node<T> n = node; n != null; n = n.parent) {
+            all.addAll(n.mappings);
+        }
+        if (extension != null) {
+            // The shorter extensions that match are the ones after the later dots
+            int from = 0;
+            while (true) {
+                List<T> matched = extensions.get(extension.substring(from));
+                if (matched != null) {
+                    all.addAll(matched);
+                }
+                int dot = extension.indexOf('.', from);
+                if (dot < 0) {
+                    break;
+                }
+                from = dot + 1;
+            }
+        }
+        all.addAll(defaults);
+        return all;
+    }
+
+    /**
+     * The mappings a path matches, in order. Compared by identity: see
+     * {@link #matchAll(String)}.
+     */
+    public static final class Matches<T> {
+        private final List<T> mappings;
+
+        Matches(List<T> mappings) {
+            this.mappings = Collections.unmodifiableList(mappings);
+        }
+
+        public List<T> getMappings() {
+            return mappings;
+        }
+
+        public boolean isEmpty() {
+            return mappings.isEmpty();
+        }
+    }
+
+    private static final class Node<T> {
+        final Node<T> parent;
+        final List<T> mappings = new ArrayList<>(1);
+        Map<String, Node<T>> children;
+        // The matches of a walk ending here, without and with an extension
+        Matches<T> matches;
+        Map<String, Matches<T>> matchesByExtension;
+
+        Node(Node<T> parent) {
+            this.parent = parent;
+        }
+
+        Node<T> child(String segment) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(segment, k -> new Node<>(this));
+        }
+    }
+}
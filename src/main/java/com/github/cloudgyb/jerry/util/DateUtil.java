@@ -1,23 +1,28 @@
 package com.github.cloudgyb.jerry.util;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
 
 /**
  * @author geng
  * @since 2025/02/14 13:53:49
  */
 public class DateUtil {
-    private static final String DATE_RFC5322 = "EEE, dd MMM yyyy HH:mm:ss z";
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+            .withZone(ZoneOffset.UTC);
 
-    public static String getDateRFC5322(long timeMillis) {
-        Date date = new Date(timeMillis);
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(DATE_RFC5322);
-        return simpleDateFormat.format(date);
+    /**
+     * Formats the time as an IMF-fixdate, the preferred format of the HTTP Date header.
+     */
+    public static String getHttpDate(long timeMillis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(timeMillis));
     }
 
     public static void main(String[] args) {
-        String dateRFC5322 = getDateRFC5322(System.currentTimeMillis());
-        System.out.println(dateRFC5322);
+        String httpDate = getHttpDate(System.currentTimeMillis());
+        System.out.println(httpDate);
     }
 }
@@ -0,0 +1,102 @@
+package com.github.cloudgyb.jerry.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache that drops the least recently used entries.
+ * <p>
+ * Entries are spread over a few access-ordered <code>LinkedHashMap</code>s by
+ * hash, each behind its own lock, so threads looking up different keys rarely
+ * wait for each other. Each stripe evicts on its own, which makes the order
+ * approximate across the whole cache. The locks are <code>ReentrantLock</code>s
+ * rather than monitors, so a virtual thread waiting for one does not pin its
+ * carrier.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/22 16:20
+ */
+public final class LruCache<K, V> {
+    private static final int STRIPES = 16;
+    private final Stripe<K, V>[] stripes;
+
+    /**
+     * @param maxSize the entries to keep at most, 0 to cache nothing
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be >= 0");
+        }
+        int stripeCount = maxSize == 0 ? 0 : Math.min(STRIPES, maxSize);
+        stripes = (Stripe<K, V>[]) new Stripe<?, ?>[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            // Spread the remainder so the stripes add up to maxSize
+            stripes[i] = new Stripe<>(maxSize / stripeCount + (i < maxSize % stripeCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * @return the value cached for the key, or null
+     */
+    public V get(K key) {
+        if (stripes.length == 0) {
+            return null;
+        }
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            return stripe.get(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        if (stripes.length == 0) {
+            return;
+        }
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            stripe.put(key, value);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int h = key.hashCode();
+        return stripes[((h ^ (h >>> 16)) & 0x7fffffff) % stripes.length];
+    }
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
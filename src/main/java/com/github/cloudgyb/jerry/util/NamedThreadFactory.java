@@ -0,0 +1,34 @@
+package com.github.cloudgyb.jerry.util;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A ThreadFactory that names threads as <code>prefix-N</code>.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 10:12
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final boolean daemon;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public NamedThreadFactory(String prefix) {
+        this(prefix, false);
+    }
+
+    public NamedThreadFactory(String prefix, boolean daemon) {
+        this.prefix = prefix;
+        this.daemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(@Nonnull Runnable r) {
+        Thread thread = new Thread(r, prefix + "-" + count.getAndIncrement());
+        thread.setDaemon(daemon);
+        return thread;
+    }
+}
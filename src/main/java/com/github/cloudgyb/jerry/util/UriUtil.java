@@ -0,0 +1,136 @@
+package com.github.cloudgyb.jerry.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for request-targets (RFC 9112 3.2).
+ *
+ * @author cloudgyb
+ * @since 2025/4/8 21:05
+ */
+public class UriUtil {
+
+    /**
+     * @return the path of an origin-form or absolute-form request-target, not decoded
+     */
+    public static String pathOf(String target) {
+        int start = 0;
+        if (!target.startsWith("/") && !target.equals("*")) {
+            // absolute-form: scheme://authority/path?query
+            int schemeEnd = target.indexOf("://");
+            if (schemeEnd > 0) {
+                int slash = target.indexOf('/', schemeEnd + 3);
+                int question = target.indexOf('?', schemeEnd + 3);
+                if (slash < 0 || (question >= 0 && question < slash)) {
+                    return "/";
+                }
+                start = slash;
+            }
+        }
+        int question = target.indexOf('?', start);
+        return question < 0 ? target.substring(start) : target.substring(start, question);
+    }
+
+    /**
+     * @return the query of a request-target, not decoded, or null if absent
+     */
+    public static String queryOf(String target) {
+        int question = target.indexOf('?');
+        return question < 0 ? null : target.substring(question + 1);
+    }
+
+    /**
+     * Percent-decodes a path as UTF-8. Unlike <code>URLDecoder</code>, '+' is
+     * kept as is. An encoded '/', '\\' or NUL would change the structure of
+     * the path once decoded and is rejected (Servlet 6 3.5.2).
+     *
+     * @throws IllegalArgumentException if an escape sequence is malformed or forbidden
+     */
+    public static String decodePath(String path) {
+        int percent = path.indexOf('%');
+        if (percent < 0) {
+            return path;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length());
+        byte[] raw = path.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < raw.length; i++) {
+            byte b = raw[i];
+            if (b == '%') {
+                if (i + 2 >= raw.length) {
+                    throw new IllegalArgumentException("Malformed escape sequence in path: " + path);
+                }
+                int hi = Character.digit(raw[i + 1], 16);
+                int lo = Character.digit(raw[i + 2], 16);
+                if (hi < 0 || lo < 0) {
+                    throw new IllegalArgumentException("Malformed escape sequence in path: " + path);
+                }
+                int c = (hi << 4) + lo;
+                if (c == '/' || c == '\\' || c == 0) {
+                    throw new IllegalArgumentException("Forbidden escape sequence in path: " + path);
+                }
+                bytes.write(c);
+                i += 2;
+            } else {
+                bytes.write(b);
+            }
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if a segment of the path is <code>.</code> or <code>..</code>
+     */
+    public static boolean hasDotSegment(String path) {
+        for (int i = path.indexOf("/."); i >= 0; i = path.indexOf("/.", i + 1)) {
+            int end = i + 2;
+            if (end < path.length() && path.charAt(end) == '.') {
+                end++;
+            }
+            if (end == path.length() || path.charAt(end) == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the dot-segments of a path (RFC 3986 5.2.4) and merges
+     * repeated slashes, e.g. <code>/a//b/./c/../d</code> becomes <code>/a/b/d</code>.
+     *
+     * @return the normalized path, or null if it climbs above the root
+     */
+    public static String normalizePath(String path) {
+        if (!path.startsWith("/") || (path.indexOf("/.") < 0 && path.indexOf("//") < 0)) {
+            return path;
+        }
+        String[] segments = path.split("/", -1);
+        List<String> normalized = new ArrayList<>(segments.length);
+        boolean trailingSlash = false;
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+            if (segment.equals(".") || segment.equals("..")) {
+                if (segment.equals("..")) {
+                    if (normalized.isEmpty()) {
+                        return null;
+                    }
+                    normalized.remove(normalized.size() - 1);
+                }
+                trailingSlash = last;
+            } else if (!segment.isEmpty() || last) {
+                normalized.add(segment);
+            }
+        }
+        StringBuilder sb = new StringBuilder(path.length());
+        for (String segment : normalized) {
+            sb.append('/').append(segment);
+        }
+        if (trailingSlash || sb.length() == 0) {
+            sb.append('/');
+        }
+        return sb.toString();
+    }
+}
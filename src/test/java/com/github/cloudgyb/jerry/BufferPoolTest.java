@@ -0,0 +1,143 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.BufferPool;
+import com.github.cloudgyb.jerry.http.BufferPoolStats;
+import com.github.cloudgyb.jerry.servlet.buffer.OutputBuffer;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @author cloudgyb
+ * @since 2025/4/19 11:40
+ */
+public class BufferPoolTest extends TestCase {
+
+    public void testSizeClasses() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        assertEquals(1024, pool.acquire(1, false).capacity());
+        assertEquals(4096, pool.acquire(4096, false).capacity());
+        assertEquals(8192, pool.acquire(4097, false).capacity());
+        // Too large to be pooled, allocated as requested
+        assertEquals(100_000, pool.acquire(100_000, false).capacity());
+        assertTrue(pool.acquire(4096, true).isDirect());
+        assertEquals(5, pool.getStats().getOutstandingBuffers());
+    }
+
+    public void testReuse() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        ByteBuffer heap = pool.acquire(4096, false);
+        ByteBuffer direct = pool.acquire(4096, true);
+        heap.put((byte) 1);
+        pool.release(heap);
+        pool.release(direct);
+        ByteBuffer again = pool.acquire(3000, false);
+        assertSame(heap, again);
+        assertEquals(0, again.position());
+        assertSame(direct, pool.acquire(4096, true));
+        BufferPoolStats stats = pool.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(2, stats.getOutstandingBuffers());
+    }
+
+    public void testSharedFreeList() throws InterruptedException {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        ByteBuffer[] buffers = new ByteBuffer[20];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(1024, false);
+        }
+        // More than a thread caches, the rest goes to the shared list
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        ByteBuffer[] taken = new ByteBuffer[1];
+        Thread thread = new Thread(() -> taken[0] = pool.acquire(1024, false));
+        thread.start();
+        thread.join();
+        assertNotNull(taken[0]);
+        assertEquals(1, pool.getStats().getHits());
+        assertTrue(pool.getStats().getPooledBytes() > 0);
+    }
+
+    public void testThreadCacheCountsAgainstBudget() {
+        // 4 buffers of 1 KiB per size class
+        BufferPool pool = new BufferPool(7 * 4096);
+        ByteBuffer[] buffers = new ByteBuffer[6];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(1024, false);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        // All kept in the thread cache, and no more than the budget
+        assertEquals(4 * 1024, pool.getStats().getPooledBytes());
+        for (int i = 0; i < 4; i++) {
+            pool.acquire(1024, false);
+        }
+        assertEquals(4, pool.getStats().getHits());
+        assertEquals(0, pool.getStats().getPooledBytes());
+    }
+
+    public void testThreadCacheFlushedWhenThreadDies() throws InterruptedException {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        ByteBuffer[] released = new ByteBuffer[1];
+        Thread thread = new Thread(() -> {
+            released[0] = pool.acquire(1024, false);
+            pool.release(released[0]);
+        });
+        thread.start();
+        thread.join();
+        thread = null;
+        ByteBuffer taken = null;
+        for (int i = 0; i < 100 && taken != released[0]; i++) {
+            System.gc();
+            Thread.sleep(10);
+            // Not released, a miss must not land in this thread's cache
+            taken = pool.acquire(1024, false);
+        }
+        assertSame(released[0], taken);
+        assertEquals(0, pool.getStats().getPooledBytes());
+    }
+
+    public void testClose() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        pool.release(pool.acquire(1024, false));
+        pool.release(pool.acquire(1024, true));
+        assertEquals(2 * 1024, pool.getStats().getPooledBytes());
+        pool.close();
+        assertEquals(0, pool.getStats().getPooledBytes());
+        ByteBuffer buffer = pool.acquire(1024, false);
+        pool.release(buffer);
+        assertNotSame(buffer, pool.acquire(1024, false));
+        assertEquals(0, pool.getStats().getHits());
+        assertEquals(0, pool.getStats().getPooledBytes());
+    }
+
+    public void testPoolingDisabled() {
+        BufferPool pool = new BufferPool(0);
+        ByteBuffer buffer = pool.acquire(1024, false);
+        pool.release(buffer);
+        assertNotSame(buffer, pool.acquire(1024, false));
+        assertEquals(0, pool.getStats().getHits());
+    }
+
+    public void testOutputBufferReleasesOnClose() throws IOException {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputBuffer outputBuffer = new OutputBuffer(4096, out, pool);
+        outputBuffer.write('a');
+        assertEquals(1, pool.getStats().getOutstandingBuffers());
+        outputBuffer.close();
+        assertEquals("a", out.toString());
+        assertEquals(0, pool.getStats().getOutstandingBuffers());
+        try {
+            outputBuffer.write('b');
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(0, pool.getStats().getOutstandingBuffers());
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.ConnectorType;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.util.UriUtil;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * The servlet layer must behave the same on top of every connector.
+ *
+ * @author cloudgyb
+ * @since 2025/4/12 10:20
+ */
+public class ExchangeTest extends TestCase {
+
+    public static class RequestInfoServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.getWriter().print(req.getRequestURI() + "|" + req.getQueryString() + "|" +
+                    req.getParameter("q") + "|" + req.getRequestURL() + "|" + req.getHeader("x-custom"));
+        }
+    }
+
+    public static class SendErrorServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN, "denied");
+        }
+    }
+
+    public void testHttpHeaders() {
+        HttpHeaders headers = new HttpHeaders(1);
+        headers.add("Accept", "text/html");
+        headers.add("accept", "text/plain");
+        headers.add("Host", "localhost");
+        assertEquals("text/html", headers.getFirst("ACCEPT"));
+        assertEquals(2, headers.get("Accept").size());
+        assertEquals(2, headers.names().size());
+        headers.set("Accept", "*/*");
+        assertEquals(1, headers.get("accept").size());
+        headers.remove("host");
+        assertFalse(headers.contains("Host"));
+        assertNull(headers.get("Host"));
+    }
+
+    public void testUriUtil() {
+        assertEquals("/a/b", UriUtil.pathOf("/a/b?x=1"));
+        assertEquals("x=1", UriUtil.queryOf("/a/b?x=1"));
+        assertNull(UriUtil.queryOf("/a/b"));
+        assertEquals("/a/b", UriUtil.pathOf("http://localhost:8080/a/b?x=1"));
+        assertEquals("/a b/+", UriUtil.decodePath("/a%20b/+"));
+    }
+
+    public void testRequestInfo() throws Exception {
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer server = NioHttpConnectorTest.startServer(type, new RequestInfoServlet(), "/info/*");
+            try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+                client.send("GET /app/info/x?q=a%20b+c HTTP/1.1\r\nHost: example.com:8080\r\nX-Custom: v\r\n\r\n");
+                RawHttpClient.Response response = client.read();
+                assertEquals(type.name(), 200, response.statusCode);
+                assertEquals(type.name(), "/app/info/x|q=a%20b+c|a b c|http://example.com:8080/app/info/x|v",
+                        response.bodyAsString());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    public void testSendError() throws Exception {
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer server = NioHttpConnectorTest.startServer(type, new SendErrorServlet(), "/error");
+            try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+                client.send("GET /app/error HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                RawHttpClient.Response response = client.read();
+                assertEquals(type.name(), 403, response.statusCode);
+                assertEquals(type.name(), "denied", response.bodyAsString());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
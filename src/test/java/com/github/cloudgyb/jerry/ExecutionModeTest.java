@@ -0,0 +1,136 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.ConnectorType;
+import com.github.cloudgyb.jerry.http.ExecutionMode;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.github.cloudgyb.jerry.http.WorkerPoolStats;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author cloudgyb
+ * @since 2025/4/13 10:30
+ */
+public class ExecutionModeTest extends TestCase {
+    private static final int SLEEP_MILLIS = 500;
+    private static final int CONCURRENCY = 4;
+
+    public static class SlowServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            try {
+                Thread.sleep(SLEEP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.getWriter().print("ok");
+        }
+    }
+
+    private static JerryHttpServer startServer(ConnectorType connectorType, ExecutionMode executionMode)
+            throws Exception {
+        return startServer(connectorType, executionMode, CONCURRENCY, 16);
+    }
+
+    private static JerryHttpServer startServer(ConnectorType connectorType, ExecutionMode executionMode,
+                                               int workerThreads, int workerQueueSize) throws Exception {
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setConnectorType(connectorType);
+        config.setExecutionMode(executionMode);
+        config.setWorkerThreads(workerThreads);
+        config.setWorkerQueueSize(workerQueueSize);
+        config.setRetryAfterSeconds(3);
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("slow", new SlowServlet()).addMapping("/slow");
+        servletContext.init();
+        JerryHttpServer server = new JerryHttpServer(config);
+        server.addServletContext(servletContext);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Slow requests must run in parallel instead of being serialized onto one thread.
+     */
+    private static void assertConcurrent(JerryHttpServer server) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            long start = System.nanoTime();
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < CONCURRENCY; i++) {
+                futures.add(clients.submit(() -> {
+                    try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+                        client.send("GET /app/slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                        return client.read().statusCode;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(200, (int) future.get());
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue("requests were serialized: " + elapsedMillis + "ms",
+                    elapsedMillis < (long) SLEEP_MILLIS * CONCURRENCY - SLEEP_MILLIS);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    public void testJdkConnectorIsNotSerialized() throws Exception {
+        JerryHttpServer server = startServer(ConnectorType.JDK, ExecutionMode.PLATFORM);
+        try {
+            assertConcurrent(server);
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void testVirtualMode() throws Exception {
+        // Falls back to the platform pool when virtual threads are not available.
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer server = startServer(type, ExecutionMode.VIRTUAL);
+            try {
+                assertConcurrent(server);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    public void testLoadShedding() throws Exception {
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer server = startServer(type, ExecutionMode.PLATFORM, 1, 0);
+            try (RawHttpClient busy = new RawHttpClient(server.getAddress());
+                 RawHttpClient shed = new RawHttpClient(server.getAddress())) {
+                busy.send("GET /app/slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                Thread.sleep(SLEEP_MILLIS / 5);
+                shed.send("GET /app/slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                RawHttpClient.Response response = shed.read();
+                assertEquals(type.name(), 503, response.statusCode);
+                assertEquals(type.name(), "3", response.header("Retry-After"));
+                assertEquals(type.name(), 200, busy.read().statusCode);
+
+                WorkerPoolStats stats = server.getWorkerPoolStats();
+                assertEquals(type.name(), 1, stats.getPoolSize());
+                assertEquals(type.name(), 0, stats.getQueueCapacity());
+                assertEquals(type.name(), 1, stats.getRejectedCount());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
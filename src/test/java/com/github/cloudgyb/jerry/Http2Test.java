@@ -0,0 +1,281 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.ConnectorType;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * h2c on the NIO connector, through <code>Upgrade: h2c</code> and with prior knowledge.
+ *
+ * @author cloudgyb
+ * @since 2025/4/17 15:20
+ */
+public class Http2Test extends TestCase {
+    private JerryHttpServer server;
+
+    public static class ProtocolServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            String name = req.getParameter("name");
+            resp.setContentType("text/plain");
+            resp.getWriter().print("hello " + (name == null ? "world" : name) + "|" +
+                    req.getProtocol() + "|" + req.getProtocolRequestId());
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            byte[] body = req.getInputStream().readAllBytes();
+            resp.setContentType("application/octet-stream");
+            resp.getOutputStream().write(body);
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        server = NioHttpConnectorTest.startServer(ConnectorType.NIO, new ProtocolServlet(), "/echo");
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop();
+    }
+
+    private URI uri(String pathAndQuery) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + pathAndQuery);
+    }
+
+    public void testUpgrade() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+        HttpResponse<String> first = client.send(HttpRequest.newBuilder(uri("/app/echo?name=h2")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, first.statusCode());
+        assertEquals(HttpClient.Version.HTTP_2, first.version());
+        // The upgraded request is stream 1
+        assertEquals("hello h2|HTTP/2.0|1", first.body());
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri("/app/echo?name=" + i)).build(),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<String> response = responses.get(i).get();
+            assertEquals(200, response.statusCode());
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertTrue(response.body(), response.body().startsWith("hello " + i + "|HTTP/2.0|"));
+        }
+        byte[] payload = new byte[100_000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        HttpResponse<byte[]> post = client.send(HttpRequest.newBuilder(uri("/app/echo"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(payload)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, post.statusCode());
+        assertTrue(java.util.Arrays.equals(payload, post.body()));
+        // Every stream shared the upgraded connection
+        assertEquals(1, server.getConnectionStats().getAcceptedConnections());
+    }
+
+    public void testPriorKnowledge() throws Exception {
+        InetSocketAddress address = server.getAddress();
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            block.write(0x82); // :method GET
+            block.write(0x86); // :scheme http
+            literal(block, 0x04, "/app/echo?name=pk");
+            literal(block, 0x01, "localhost");
+            writeFrame(out, 0x1, 0x1 | 0x4, 1, block.toByteArray());
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] headers = null;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                int streamId = in.readInt() & 0x7fffffff;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (streamId != 1) {
+                    continue;
+                }
+                if (type == 0x1) {
+                    headers = payload;
+                } else if (type == 0x0) {
+                    body.write(payload);
+                }
+                if ((flags & 0x1) != 0) {
+                    break;
+                }
+            }
+            assertNotNull(headers);
+            // Indexed :status 200
+            assertEquals((byte) 0x88, headers[0]);
+            assertEquals("hello pk|HTTP/2.0|1", body.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void testRepeatedIndexBlockIsReset() throws Exception {
+        InetSocketAddress address = server.getAddress();
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+            requestHeaders(bomb, "/app/echo?name=bomb");
+            // Literal with incremental indexing of a 4000 byte value, then thousands of
+            // one byte references to it: about 12 MB once decoded
+            bomb.write(0x40);
+            bomb.write(5);
+            bomb.writeBytes("x-big".getBytes(StandardCharsets.ISO_8859_1));
+            String big = "a".repeat(4000);
+            writeInt(bomb, 0x00, 7, big.length());
+            bomb.writeBytes(big.getBytes(StandardCharsets.ISO_8859_1));
+            for (int i = 0; i < 3000; i++) {
+                bomb.write(0x80 | 62);
+            }
+            assertTrue(bomb.size() <= 8192);
+            writeFrame(out, 0x1, 0x1 | 0x4, 1, bomb.toByteArray());
+            // The table entry is still there: the HPACK state survived the reset
+            ByteArrayOutputStream next = new ByteArrayOutputStream();
+            requestHeaders(next, "/app/echo?name=next");
+            next.write(0x80 | 62);
+            writeFrame(out, 0x1, 0x1 | 0x4, 3, next.toByteArray());
+            out.flush();
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int resetCode = readResetAndBody(socket, body);
+            // ENHANCE_YOUR_CALM
+            assertEquals(0xb, resetCode);
+            assertEquals("hello next|HTTP/2.0|3", body.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void testLargeBodyIsReset() throws Exception {
+        ServerConfig config = NioHttpConnectorTest.newConfig(ConnectorType.NIO);
+        config.setMaxRequestBodySize(1000);
+        JerryHttpServer limitedServer = NioHttpConnectorTest.startServer(config, new ProtocolServlet(), "/echo");
+        InetSocketAddress address = limitedServer.getAddress();
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            ByteArrayOutputStream post = new ByteArrayOutputStream();
+            post.write(0x83); // :method POST
+            post.write(0x86); // :scheme http
+            literal(post, 0x04, "/app/echo");
+            literal(post, 0x01, "localhost");
+            writeFrame(out, 0x1, 0x4, 1, post.toByteArray());
+            writeFrame(out, 0x0, 0, 1, new byte[800]);
+            writeFrame(out, 0x0, 0x1, 1, new byte[800]);
+            ByteArrayOutputStream get = new ByteArrayOutputStream();
+            requestHeaders(get, "/app/echo?name=next");
+            writeFrame(out, 0x1, 0x1 | 0x4, 3, get.toByteArray());
+            out.flush();
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int resetCode = readResetAndBody(socket, body);
+            assertEquals(0xb, resetCode);
+            assertEquals("hello next|HTTP/2.0|3", body.toString(StandardCharsets.UTF_8));
+        } finally {
+            limitedServer.stop();
+        }
+    }
+
+    /**
+     * Reads frames until stream 3 ends, collecting its body.
+     *
+     * @return the error code stream 1 was reset with, or -1
+     */
+    private static int readResetAndBody(Socket socket, ByteArrayOutputStream body) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        int resetCode = -1;
+        while (true) {
+            int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int streamId = in.readInt() & 0x7fffffff;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (streamId == 1 && type == 0x3) {
+                resetCode = ((payload[0] & 0xff) << 24) | ((payload[1] & 0xff) << 16)
+                        | ((payload[2] & 0xff) << 8) | (payload[3] & 0xff);
+            } else if (streamId == 3 && type == 0x0) {
+                body.write(payload);
+            }
+            if (streamId == 3 && (flags & 0x1) != 0) {
+                return resetCode;
+            }
+        }
+    }
+
+    private static void requestHeaders(ByteArrayOutputStream block, String path) {
+        block.write(0x82); // :method GET
+        block.write(0x86); // :scheme http
+        literal(block, 0x04, path);
+        literal(block, 0x01, "localhost");
+    }
+
+    private static void writeInt(ByteArrayOutputStream block, int flags, int prefixBits, int value) {
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            block.write(flags | value);
+            return;
+        }
+        block.write(flags | max);
+        value -= max;
+        while (value >= 0x80) {
+            block.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        block.write(value);
+    }
+
+    private static void literal(ByteArrayOutputStream block, int nameIndex, String value) {
+        // Literal header field without indexing, indexed name
+        block.write(nameIndex);
+        block.write(value.length());
+        block.writeBytes(value.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+        out.write(payload.length >>> 16);
+        out.write(payload.length >>> 8);
+        out.write(payload.length);
+        out.write(type);
+        out.write(flags);
+        out.write(streamId >>> 24);
+        out.write(streamId >>> 16);
+        out.write(streamId >>> 8);
+        out.write(streamId);
+        out.write(payload);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.ConnectionStats;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+/**
+ * @author cloudgyb
+ * @since 2025/4/14 21:10
+ */
+public class KeepAliveTest extends TestCase {
+    private static final String REQUEST = "GET /app/echo HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    private JerryHttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setIoThreads(1);
+        config.setWorkerThreads(2);
+        config.setKeepAliveTimeoutMillis(300);
+        config.setMaxKeepAliveRequests(3);
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("echo", new NioHttpConnectorTest.EchoServlet()).addMapping("/echo");
+        servletContext.init();
+        server = new JerryHttpServer(config);
+        server.addServletContext(servletContext);
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop();
+    }
+
+    public void testIdleTimeout() throws Exception {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send(REQUEST);
+            assertEquals(200, client.read().statusCode);
+            Thread.sleep(800);
+            assertTrue(client.isClosedByPeer());
+        }
+        ConnectionStats stats = server.getConnectionStats();
+        assertEquals(1, stats.getIdleTimeouts());
+        assertEquals(0, stats.getOpenConnections());
+    }
+
+    public void testStalledRequestTimesOut() throws Exception {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /app/echo HTTP/1.1\r\nHost: loc");
+            Thread.sleep(800);
+            RawHttpClient.Response response = client.read();
+            assertEquals(408, response.statusCode);
+            assertTrue(client.isClosedByPeer());
+        }
+    }
+
+    public void testMaxKeepAliveRequests() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            for (int i = 0; i < 2; i++) {
+                client.send(REQUEST);
+                RawHttpClient.Response response = client.read();
+                assertEquals(200, response.statusCode);
+                assertNull(response.header("Connection"));
+            }
+            client.send(REQUEST);
+            RawHttpClient.Response last = client.read();
+            assertEquals(200, last.statusCode);
+            assertEquals("close", last.header("Connection"));
+            assertTrue(client.isClosedByPeer());
+        }
+    }
+
+    public void testReuseRatio() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            // Pipelined: the leftover of the first read must survive without a per-connection buffer
+            client.send(REQUEST + REQUEST);
+            assertEquals("hello world", client.read().bodyAsString());
+            assertEquals("hello world", client.read().bodyAsString());
+        }
+        ConnectionStats stats = server.getConnectionStats();
+        assertEquals(1, stats.getAcceptedConnections());
+        assertEquals(2, stats.getRequests());
+        assertEquals(0.5, stats.getReuseRatio(), 0.0001);
+    }
+}
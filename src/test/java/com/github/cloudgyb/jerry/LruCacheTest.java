@@ -0,0 +1,59 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.util.LruCache;
+import com.github.cloudgyb.jerry.util.UriUtil;
+import junit.framework.TestCase;
+
+/**
+ * @author cloudgyb
+ * @since 2025/4/22 17:30
+ */
+public class LruCacheTest extends TestCase {
+
+    public void testEvictsLeastRecentlyUsed() {
+        // A single stripe, so the order is exact
+        LruCache<String, Integer> cache = new LruCache<>(1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertNull(cache.get("a"));
+        assertEquals(Integer.valueOf(2), cache.get("b"));
+
+        LruCache<Integer, Integer> large = new LruCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            large.put(i, i);
+        }
+        assertEquals(100, large.size());
+        assertEquals(Integer.valueOf(999), large.get(999));
+    }
+
+    public void testDisabled() {
+        LruCache<String, Integer> cache = new LruCache<>(0);
+        cache.put("a", 1);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    public void testNormalizePath() {
+        assertEquals("/a/b/d", UriUtil.normalizePath("/a//b/./c/../d"));
+        assertEquals("/a/", UriUtil.normalizePath("/a/b/.."));
+        assertEquals("/a/", UriUtil.normalizePath("/a/."));
+        assertEquals("/", UriUtil.normalizePath("/a/.."));
+        assertEquals("/a/.b", UriUtil.normalizePath("/a/.b"));
+        assertEquals("/a/b", UriUtil.normalizePath("/a/b"));
+        assertNull(UriUtil.normalizePath("/a/../.."));
+    }
+
+    public void testEncodedPathStructure() {
+        assertTrue(UriUtil.hasDotSegment("/a/../b"));
+        assertTrue(UriUtil.hasDotSegment("/a/."));
+        assertFalse(UriUtil.hasDotSegment("/a/.b/..c"));
+        assertEquals("/a/./b", UriUtil.decodePath("/a/%2E/b"));
+        for (String path : new String[]{"/a%2Fb", "/a%2fb", "/a%5Cb", "/a%00b"}) {
+            try {
+                UriUtil.decodePath(path);
+                fail(path);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
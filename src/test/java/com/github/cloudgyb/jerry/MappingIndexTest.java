@@ -0,0 +1,70 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.servlet.filter.FilterMapping;
+import com.github.cloudgyb.jerry.servlet.mapping.MappingIndex;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author cloudgyb
+ * @since 2025/4/22 10:30
+ */
+public class MappingIndexTest extends TestCase {
+    private static final String[] PATTERNS = {
+            "/", "/*", "/catalog", "/catalog/*", "/catalog/index.html", "/catalog/racecar/*",
+            "*.bop", "*.tar.gz", "/a+b", "/x.y/*", "",
+    };
+    private static final String[] PATHS = {
+            "/", "/catalog", "/catalog/", "/catalog/index.html", "/catalog/racecar.bop", "/catalog/racecar/x.bop",
+            "/index.bop", "/a/b.tar.gz", "/b.gz", "/a+b", "/aab", "/x.y", "/x.y/z", "/catalogue", "/a.bop/c",
+    };
+
+    private static List<FilterMapping> sortedMappings(String... patterns) {
+        List<FilterMapping> mappings = new ArrayList<>();
+        for (String pattern : patterns) {
+            mappings.add(new FilterMapping(null, pattern));
+        }
+        Collections.sort(mappings);
+        return mappings;
+    }
+
+    public void testSpecPrecedence() {
+        MappingIndex<FilterMapping> index = new MappingIndex<>(sortedMappings(
+                "/catalog", "/catalog/*", "/catalog/racecar/*", "*.bop", "/"));
+        assertEquals("/catalog", index.match("/catalog").getUrlPattern());
+        assertEquals("/catalog/*", index.match("/catalog/index.html").getUrlPattern());
+        assertEquals("/catalog/racecar/*", index.match("/catalog/racecar/x.bop").getUrlPattern());
+        assertEquals("*.bop", index.match("/index.bop").getUrlPattern());
+        assertEquals("/", index.match("/catalogue").getUrlPattern());
+        assertNull(new MappingIndex<>(sortedMappings("/catalog")).match("/other"));
+    }
+
+    /**
+     * Matches like trying the sorted mappings one by one.
+     */
+    public void testMatchesLinearScan() {
+        List<FilterMapping> mappings = sortedMappings(PATTERNS);
+        MappingIndex<FilterMapping> index = new MappingIndex<>(mappings);
+        for (String path : PATHS) {
+            List<String> expected = mappings.stream().filter(m -> m.match(path))
+                    .map(FilterMapping::getUrlPattern).collect(Collectors.toList());
+            List<String> actual = index.matchAll(path).getMappings().stream()
+                    .map(FilterMapping::getUrlPattern).collect(Collectors.toList());
+            assertEquals(path, expected, actual);
+            assertEquals(path, expected.get(0), index.match(path).getUrlPattern());
+        }
+    }
+
+    public void testSameMatchesForSameMappings() {
+        MappingIndex<FilterMapping> index = new MappingIndex<>(sortedMappings(PATTERNS));
+        assertSame(index.matchAll("/catalog/a"), index.matchAll("/catalog/b/c"));
+        assertSame(index.matchAll("/catalog/a.bop"), index.matchAll("/catalog/b/c.bop"));
+        assertSame(index.matchAll("/catalog"), index.matchAll("/catalog"));
+        assertNotSame(index.matchAll("/catalog/a"), index.matchAll("/catalog/a.bop"));
+        assertNotSame(index.matchAll("/catalog/a"), index.matchAll("/catalog"));
+    }
+}
@@ -0,0 +1,827 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.BufferPoolStats;
+import com.github.cloudgyb.jerry.http.ConnectorType;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.ResponseSizeStats;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * @author cloudgyb
+ * @since 2025/4/6 17:30
+ */
+public class NioHttpConnectorTest extends TestCase {
+    private JerryHttpServer server;
+
+    public static class EchoServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            String name = req.getParameter("name");
+            resp.setContentType("text/plain");
+            resp.getWriter().print("hello " + (name == null ? "world" : name));
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            byte[] body = req.getInputStream().readAllBytes();
+            resp.setContentType("application/octet-stream");
+            resp.getOutputStream().write(body);
+        }
+    }
+
+    static JerryHttpServer startServer(ConnectorType connectorType, HttpServlet servlet, String... urlPatterns)
+            throws ServletException {
+        return startServer(newConfig(connectorType), servlet, urlPatterns);
+    }
+
+    static ServerConfig newConfig(ConnectorType connectorType) {
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setConnectorType(connectorType);
+        config.setIoThreads(2);
+        config.setWorkerThreads(4);
+        return config;
+    }
+
+    static JerryHttpServer startServer(ServerConfig config, HttpServlet servlet, String... urlPatterns)
+            throws ServletException {
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("test", servlet).addMapping(urlPatterns);
+        servletContext.init();
+        JerryHttpServer server = new JerryHttpServer(config);
+        server.addServletContext(servletContext);
+        server.start();
+        return server;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        server = startServer(ConnectorType.NIO, new EchoServlet(), "/echo");
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop();
+    }
+
+    public void testKeepAlive() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /app/echo?name=jerry HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response first = client.read();
+            assertEquals(200, first.statusCode);
+            assertEquals("hello jerry", first.bodyAsString());
+            assertNotNull(first.header("Date"));
+
+            client.send("GET /app/echo HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response second = client.read();
+            assertEquals(200, second.statusCode);
+            assertEquals("hello world", second.bodyAsString());
+        }
+    }
+
+    public void testResponseHead() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /app/echo HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            assertEquals(ServerInfo.serverNameAndVersion, response.header("Server"));
+            assertEquals("text/plain", response.header("Content-Type"));
+            assertEquals("11", response.header("Content-Length"));
+            long date = java.time.ZonedDateTime.parse(response.header("Date"),
+                    java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            assertTrue(response.header("Date"), Math.abs(System.currentTimeMillis() - date) < 3000);
+        }
+    }
+
+    public void testHead() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("HEAD /app/echo?name=jerry HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response head = client.read(true);
+            assertEquals(200, head.statusCode);
+            // Counted, not written
+            assertEquals("11", head.header("Content-Length"));
+            assertNull(head.header("Transfer-Encoding"));
+
+            client.send("GET /app/echo?name=jerry HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response get = client.read();
+            assertEquals("hello jerry", get.bodyAsString());
+        }
+    }
+
+    public void testHeadOnJdkConnector() throws Exception {
+        JerryHttpServer jdkServer = startServer(ConnectorType.JDK, new EchoServlet(), "/echo");
+        try (RawHttpClient client = new RawHttpClient(jdkServer.getAddress())) {
+            client.send("HEAD /app/echo?name=jerry HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response head = client.read(true);
+            assertEquals(200, head.statusCode);
+            assertEquals("11", head.header("Content-Length"));
+            assertNull(head.header("Transfer-Encoding"));
+
+            client.send("GET /app/echo?name=jerry HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("hello jerry", client.read().bodyAsString());
+        } finally {
+            jdkServer.stop();
+        }
+    }
+
+    public void testServletPathDecomposition() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                jakarta.servlet.http.HttpServletMapping mapping = req.getHttpServletMapping();
+                resp.getWriter().print(req.getContextPath() + "|" + req.getServletPath() + "|" + req.getPathInfo()
+                        + "|" + mapping.getMappingMatch() + "|" + mapping.getMatchValue() + "|" + mapping.getPattern());
+            }
+        };
+        JerryHttpServer pathServer = startServer(ConnectorType.NIO, servlet, "/api/*", "*.do", "/exact");
+        try (RawHttpClient client = new RawHttpClient(pathServer.getAddress())) {
+            String[][] cases = {
+                    {"/app/api/a%20b/../c", "/app|/api|/c|PATH|c|/api/*"},
+                    {"/app/api", "/app|/api|null|PATH|null|/api/*"},
+                    {"/app//x/./y.do", "/app|/x/y.do|null|EXTENSION|x/y|*.do"},
+                    {"/app/exact", "/app|/exact|null|EXACT|exact|/exact"},
+            };
+            for (int i = 0; i < 2; i++) {
+                // The second round is served from the mapping cache
+                for (String[] c : cases) {
+                    client.send("GET " + c[0] + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                    assertEquals(c[0], c[1], client.read().bodyAsString());
+                }
+            }
+            client.send("GET /app/missing HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals(404, client.read().statusCode);
+            client.send("GET /app/%zz HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals(400, client.read().statusCode);
+            client.send("GET /app/../../etc HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals(400, client.read().statusCode);
+        } finally {
+            pathServer.stop();
+        }
+    }
+
+    public void testEncodedPathTraversal() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getWriter().print(req.getServletPath());
+            }
+        };
+        for (ConnectorType type : ConnectorType.values()) {
+            ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+            servletContext.addServlet("echo", new EchoServlet()).addMapping("/echo");
+            servletContext.addServlet("pub", servlet).addMapping("/pub/*");
+            servletContext.init();
+            JerryHttpServer pathServer = new JerryHttpServer(newConfig(type));
+            pathServer.addServletContext(servletContext);
+            pathServer.start();
+            try (RawHttpClient client = new RawHttpClient(pathServer.getAddress())) {
+                for (String path : new String[]{"/app/pub/x%2F..%2F..%2Fecho", "/app/pub/%2e%2e/%2E%2E/echo",
+                        "/app/pub/x%5C..%5Cecho", "/app/pub/%2e%2e"}) {
+                    client.send("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                    RawHttpClient.Response response = client.read();
+                    assertEquals(type.name() + " " + path, 400, response.statusCode);
+                }
+                client.send("GET /app/pub/a%2Eb HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                assertEquals(type.name(), "/pub", client.read().bodyAsString());
+            } finally {
+                pathServer.stop();
+            }
+        }
+    }
+
+    public void testRequestParsedOnFirstUse() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                if (req.getParameter("session") != null) {
+                    resp.getWriter().print(req.getSession().getId());
+                    return;
+                }
+                StringBuilder cookies = new StringBuilder();
+                for (jakarta.servlet.http.Cookie cookie : req.getCookies()) {
+                    cookies.append(cookie.getName()).append('=').append(cookie.getValue()).append(',');
+                }
+                req.setAttribute("k", "v");
+                resp.getWriter().print(req.getParameter("a") + "|" + cookies + "|" + req.getAttribute("k")
+                        + "|" + (req.getSession(false) != null) + "|" + req.getRequestId());
+            }
+        };
+        JerryHttpServer lazyServer = startServer(ConnectorType.NIO, servlet, "/lazy");
+        try (RawHttpClient client = new RawHttpClient(lazyServer.getAddress())) {
+            client.send("GET /app/lazy?session=1 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            String sessionId = client.read().bodyAsString();
+
+            client.send("GET /app/lazy?a=1%202 HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Cookie: x=1; jsessionid=" + sessionId + "\r\n\r\n");
+            String[] first = client.read().bodyAsString().split("\\|");
+            assertEquals("1 2", first[0]);
+            assertEquals("x=1,jsessionid=" + sessionId + ",", first[1]);
+            assertEquals("v", first[2]);
+            assertEquals("true", first[3]);
+
+            client.send("GET /app/lazy HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            String[] second = client.read().bodyAsString().split("\\|");
+            assertEquals("null", second[0]);
+            assertEquals("", second[1]);
+            assertEquals("false", second[3]);
+            assertFalse(first[4].equals(second[4]));
+        } finally {
+            lazyServer.stop();
+        }
+    }
+
+    public void testNoContentLengthOn204() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setStatus(204);
+                resp.setContentLength(5);
+                resp.flushBuffer();
+            }
+        };
+        JerryHttpServer noContentServer = startServer(ConnectorType.NIO, servlet, "/none");
+        try (RawHttpClient client = new RawHttpClient(noContentServer.getAddress())) {
+            client.send("GET /app/none HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            assertEquals(204, response.statusCode);
+            assertNull(response.header("Content-Length"));
+            // The connection is still in sync
+            client.send("GET /app/none HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals(204, client.read().statusCode);
+        } finally {
+            noContentServer.stop();
+        }
+    }
+
+    public void testHeaderInjectionRejected() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                StringBuilder rejected = new StringBuilder();
+                try {
+                    resp.setHeader("X-A", "v\r\nSet-Cookie: evil=1");
+                } catch (IllegalArgumentException e) {
+                    rejected.append("value ");
+                }
+                try {
+                    resp.addHeader("X-B\r\nSet-Cookie: evil", "1");
+                } catch (IllegalArgumentException e) {
+                    rejected.append("name");
+                }
+                resp.getWriter().print(rejected);
+            }
+        };
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer injectionServer = startServer(type, servlet, "/inject");
+            try (RawHttpClient client = new RawHttpClient(injectionServer.getAddress())) {
+                client.send("GET /app/inject HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                RawHttpClient.Response response = client.read();
+                assertEquals(type.name(), 200, response.statusCode);
+                assertEquals(type.name(), "value name", response.bodyAsString());
+                assertNull(type.name(), response.header("Set-Cookie"));
+                assertNull(type.name(), response.header("X-A"));
+            } finally {
+                injectionServer.stop();
+            }
+        }
+    }
+
+    public void testFlushBufferSendsHead() throws Exception {
+        java.util.concurrent.CountDownLatch headRead = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch done = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicBoolean headFirst = new java.util.concurrent.atomic.AtomicBoolean();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                jakarta.servlet.ServletOutputStream out = resp.getOutputStream();
+                out.flush();
+                try {
+                    headFirst.set(headRead.await(5, java.util.concurrent.TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                out.print("done");
+                done.countDown();
+            }
+        };
+        JerryHttpServer flushServer = startServer(ConnectorType.NIO, servlet, "/flush");
+        try (RawHttpClient client = new RawHttpClient(flushServer.getAddress())) {
+            client.send("GET /app/flush HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            // The head is held back for the body, but an explicit flush sends it on its own
+            RawHttpClient.Response head = client.read(true);
+            assertEquals(200, head.statusCode);
+            assertEquals("chunked", head.header("Transfer-Encoding"));
+            headRead.countDown();
+            assertTrue(done.await(5, java.util.concurrent.TimeUnit.SECONDS));
+            assertTrue(headFirst.get());
+        } finally {
+            flushServer.stop();
+        }
+    }
+
+    public void testFlushCoalescing() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                jakarta.servlet.ServletOutputStream out = resp.getOutputStream();
+                for (int i = 0; i < 20; i++) {
+                    out.print("line " + i + "\n");
+                    out.flush();
+                }
+            }
+        };
+        ServerConfig config = newConfig(ConnectorType.NIO);
+        config.setFlushCoalesceMillis(60_000);
+        JerryHttpServer coalescingServer = startServer(config, servlet, "/lines");
+        try (RawHttpClient client = new RawHttpClient(coalescingServer.getAddress())) {
+            client.send("GET /app/lines HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 20; i++) {
+                expected.append("line ").append(i).append("\n");
+            }
+            assertEquals(expected.toString(), response.bodyAsString());
+            // The first flush, then the rest together with the last chunk
+            assertEquals(2, response.chunks);
+        } finally {
+            coalescingServer.stop();
+        }
+    }
+
+    public void testCoalescedFlushSentAfterWindow() throws Exception {
+        java.util.concurrent.CountDownLatch secondRead = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicBoolean inTime = new java.util.concurrent.atomic.AtomicBoolean();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                jakarta.servlet.ServletOutputStream out = resp.getOutputStream();
+                try {
+                    out.print("first\n");
+                    out.flush();
+                    out.print("second\n");
+                    // Within the window of the first chunk: held back, then sent by the event loop
+                    out.flush();
+                    // Blocks past the window, as if waiting on a slow producer
+                    inTime.set(secondRead.await(5, java.util.concurrent.TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                out.print("third\n");
+            }
+        };
+        ServerConfig config = newConfig(ConnectorType.NIO);
+        config.setFlushCoalesceMillis(200);
+        JerryHttpServer coalescingServer = startServer(config, servlet, "/lines");
+        try (RawHttpClient client = new RawHttpClient(coalescingServer.getAddress())) {
+            client.send("GET /app/lines HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            client.read(true);
+            assertEquals("first\n", new String(client.readChunk(), StandardCharsets.UTF_8));
+            assertEquals("second\n", new String(client.readChunk(), StandardCharsets.UTF_8));
+            secondRead.countDown();
+            assertEquals("third\n", new String(client.readChunk(), StandardCharsets.UTF_8));
+            assertEquals(0, client.readChunk().length);
+            assertTrue(inTime.get());
+        } finally {
+            coalescingServer.stop();
+        }
+    }
+
+    public void testEventStreamFlushesAtOnce() throws Exception {
+        java.util.concurrent.CountDownLatch firstRead = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch secondRead = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicBoolean inTime = new java.util.concurrent.atomic.AtomicBoolean();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType("text/event-stream");
+                jakarta.servlet.ServletOutputStream out = resp.getOutputStream();
+                try {
+                    out.print("data: 1\n\n");
+                    out.flush();
+                    boolean first = firstRead.await(5, java.util.concurrent.TimeUnit.SECONDS);
+                    out.print("data: 2\n\n");
+                    out.flush();
+                    inTime.set(first && secondRead.await(5, java.util.concurrent.TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        ServerConfig config = newConfig(ConnectorType.NIO);
+        config.setFlushCoalesceMillis(60_000);
+        JerryHttpServer streamServer = startServer(config, servlet, "/events");
+        try (RawHttpClient client = new RawHttpClient(streamServer.getAddress())) {
+            client.send("GET /app/events HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("chunked", client.read(true).header("Transfer-Encoding"));
+            assertEquals("data: 1\n\n", new String(client.readChunk(), StandardCharsets.UTF_8));
+            firstRead.countDown();
+            assertEquals("data: 2\n\n", new String(client.readChunk(), StandardCharsets.UTF_8));
+            secondRead.countDown();
+            assertEquals(0, client.readChunk().length);
+            assertTrue(inTime.get());
+        } finally {
+            streamServer.stop();
+        }
+    }
+
+    public void testRequestSplitAcrossReads() throws Exception {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /app/ec");
+            Thread.sleep(50);
+            client.send("ho?name=split HTTP/1.1\r\nHo");
+            Thread.sleep(50);
+            client.send("st: localhost\r\n\r\n");
+            assertEquals("hello split", client.read().bodyAsString());
+        }
+    }
+
+    public void testPostContentLength() throws IOException {
+        byte[] body = new byte[100_000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length + "\r\n\r\n");
+            client.send(body);
+            RawHttpClient.Response response = client.read();
+            assertEquals(200, response.statusCode);
+            assertTrue(java.util.Arrays.equals(body, response.body));
+        }
+    }
+
+    public void testPostChunked() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                    "5\r\nhello\r\n7;ext=1\r\n, jerry\r\n0\r\nX-Trailer: 1\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            assertEquals(200, response.statusCode);
+            assertEquals("hello, jerry", response.bodyAsString());
+        }
+    }
+
+    public void testTransferEncodingMustEndWithChunked() throws IOException {
+        String[][] cases = {
+                {"xchunked", "501"},
+                {"gzip, chunked", "501"},
+                {"chunked, gzip", "501"},
+                {"chunked, chunked", "400"},
+                {" Chunked ", "200"},
+        };
+        for (String[] c : cases) {
+            try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+                client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: " + c[0] + "\r\n\r\n"
+                        + "5\r\nhello\r\n0\r\n\r\n");
+                assertEquals(c[0], Integer.parseInt(c[1]), client.read().statusCode);
+            }
+        }
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            // Two fields make one list
+            client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: gzip\r\n"
+                    + "Transfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n0\r\n\r\n");
+            assertEquals(501, client.read().statusCode);
+        }
+    }
+
+    public void testRequestBodyTooLarge() throws Exception {
+        ServerConfig config = newConfig(ConnectorType.NIO);
+        config.setMaxRequestBodySize(1000);
+        JerryHttpServer limitedServer = startServer(config, new EchoServlet(), "/echo");
+        try {
+            try (RawHttpClient client = new RawHttpClient(limitedServer.getAddress())) {
+                client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1000\r\n\r\n"
+                        + "a".repeat(1000));
+                RawHttpClient.Response response = client.read();
+                assertEquals(200, response.statusCode);
+                assertEquals(1000, response.body.length);
+            }
+            try (RawHttpClient client = new RawHttpClient(limitedServer.getAddress())) {
+                // Refused from the head, before any of the body is read
+                client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1001\r\n\r\n");
+                assertEquals(413, client.read().statusCode);
+            }
+            try (RawHttpClient client = new RawHttpClient(limitedServer.getAddress())) {
+                client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "320\r\n" + "a".repeat(800) + "\r\n320\r\n");
+                assertEquals(413, client.read().statusCode);
+            }
+        } finally {
+            limitedServer.stop();
+        }
+    }
+
+    public void testExpectContinue() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 3\r\nExpect: 100-continue\r\n\r\n");
+            assertEquals(100, client.read().statusCode);
+            client.send("abc");
+            assertEquals("abc", client.read().bodyAsString());
+        }
+    }
+
+    public void testHeaderFieldCase() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("POST /app/echo HTTP/1.1\r\nhost: localhost\r\ncontent-length:  3 \r\n" +
+                    "X-Custom:\tvalue\r\n\r\nabc");
+            assertEquals("abc", client.read().bodyAsString());
+            client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 3\r\n" +
+                    "CONTENT-LENGTH: 4\r\n\r\nabcd");
+            assertEquals(400, client.read().statusCode);
+            assertTrue(client.isClosedByPeer());
+        }
+    }
+
+    public void testBufferPool() throws Exception {
+        byte[] body = new byte[20_000];
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            for (int i = 0; i < 10; i++) {
+                client.send("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length +
+                        "\r\n\r\n");
+                client.send(body);
+                assertEquals(body.length, client.read().body.length);
+            }
+        }
+        BufferPoolStats stats = server.getBufferPoolStats();
+        assertTrue(stats.toString(), stats.getHits() > 0);
+        // Only the shared read buffers of the two event loops stay out once the responses are done
+        long deadline = System.currentTimeMillis() + 2000;
+        while (stats.getOutstandingBuffers() > 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            stats = server.getBufferPoolStats();
+        }
+        assertEquals(stats.toString(), 2, stats.getOutstandingBuffers());
+    }
+
+    public void testNotFound() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /other HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals(404, client.read().statusCode);
+            client.send("GET /app/missing HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals(404, client.read().statusCode);
+        }
+    }
+
+    public void testBadRequest() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GARBAGE\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            assertEquals(400, response.statusCode);
+            assertEquals("close", response.header("Connection"));
+            assertTrue(client.isClosedByPeer());
+        }
+    }
+
+    public void testConnectionClose() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /app/echo HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            assertEquals("hello world", response.bodyAsString());
+            assertEquals("close", response.header("Connection"));
+            assertTrue(client.isClosedByPeer());
+        }
+    }
+
+    public void testHttp10() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /app/echo HTTP/1.0\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            assertEquals("hello world", response.bodyAsString());
+            assertTrue(client.isClosedByPeer());
+        }
+    }
+
+    public void testPipelining() throws IOException {
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            requests.append("GET /app/echo?name=").append(i).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        }
+        requests.append("POST /app/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nlast");
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send(requests.toString());
+            for (int i = 0; i < 20; i++) {
+                assertEquals("hello " + i, client.read().bodyAsString());
+            }
+            assertEquals("last", client.read().bodyAsString());
+        }
+    }
+
+    public void testPipelinedBadRequest() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            client.send("GET /app/echo?name=a HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /app/echo?name=b HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GARBAGE\r\n\r\n");
+            assertEquals("hello a", client.read().bodyAsString());
+            assertEquals("hello b", client.read().bodyAsString());
+            assertEquals(400, client.read().statusCode);
+            assertTrue(client.isClosedByPeer());
+        }
+    }
+
+    public void testAcceptorShards() throws Exception {
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setIoThreads(2);
+        config.setAcceptorShards(4);
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("echo", new EchoServlet()).addMapping("/echo");
+        servletContext.init();
+        JerryHttpServer shardedServer = new JerryHttpServer(config);
+        shardedServer.addServletContext(servletContext);
+        shardedServer.start();
+        try {
+            for (int i = 0; i < 32; i++) {
+                try (RawHttpClient client = new RawHttpClient(shardedServer.getAddress())) {
+                    client.send("GET /app/echo?name=" + i + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+                    assertEquals("hello " + i, client.read().bodyAsString());
+                }
+            }
+            assertEquals(32, shardedServer.getConnectionStats().getAcceptedConnections());
+        } finally {
+            shardedServer.stop();
+        }
+    }
+
+    public void testUnixDomainSocket() throws Exception {
+        Method addressOf;
+        Method open;
+        try {
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+            open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+        } catch (ReflectiveOperationException e) {
+            return; // Java 16+ only
+        }
+        Path socketPath = Files.createTempDirectory("jerry").resolve("jerry.sock");
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setIoThreads(1);
+        config.setUnixDomainSocketPath(socketPath);
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("address", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getWriter().print(req.getRemoteAddr() + "|" + req.getRemotePort() + "|" +
+                        req.getLocalAddr() + "|" + req.getServerName());
+            }
+        }).addMapping("/address");
+        servletContext.init();
+        JerryHttpServer udsServer = new JerryHttpServer(config);
+        udsServer.addServletContext(servletContext);
+        udsServer.start();
+        try (SocketChannel channel = (SocketChannel) open.invoke(null, StandardProtocolFamily.valueOf("UNIX"))) {
+            channel.connect((SocketAddress) addressOf.invoke(null, socketPath));
+            channel.write(ByteBuffer.wrap(("GET /app/address HTTP/1.1\r\nHost: sidecar\r\n" +
+                    "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+            String response = new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.endsWith("\r\n\r\n127.0.0.1|0|127.0.0.1|sidecar"));
+        } finally {
+            udsServer.stop();
+        }
+        assertFalse(Files.exists(socketPath));
+    }
+
+    public void testByteBufferResponse() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                ByteBuffer body = ByteBuffer.allocateDirect(300_000);
+                for (int i = 0; body.hasRemaining(); i++) {
+                    body.put((byte) i);
+                }
+                body.flip();
+                resp.getOutputStream().write(ByteBuffer.wrap("head".getBytes(StandardCharsets.ISO_8859_1)));
+                resp.getOutputStream().write(body);
+            }
+        };
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer bufferServer = startServer(type, servlet, "/buffer");
+            try (RawHttpClient client = new RawHttpClient(bufferServer.getAddress())) {
+                client.send("GET /app/buffer HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                RawHttpClient.Response response = client.read();
+                assertEquals(type.name(), 200, response.statusCode);
+                assertEquals(type.name(), 300_004, response.body.length);
+                assertEquals("head", new String(response.body, 0, 4, StandardCharsets.ISO_8859_1));
+                for (int i = 0; i < 300_000; i++) {
+                    assertEquals((byte) i, response.body[4 + i]);
+                }
+            } finally {
+                bufferServer.stop();
+            }
+        }
+    }
+
+    public void testBulkRequestBody() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                jakarta.servlet.ServletInputStream in = req.getInputStream();
+                boolean finishedBefore = in.isFinished();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+                long read = 0;
+                long sum = 0;
+                while (!in.isFinished()) {
+                    buffer.clear();
+                    int n = in.read(buffer);
+                    if (n < 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        sum += buffer.get() & 0xff;
+                    }
+                    read += n;
+                }
+                resp.getWriter().print(req.getContentLengthLong() + " " + finishedBefore + " "
+                        + in.isFinished() + " " + read + " " + sum + " " + in.read());
+            }
+        };
+        byte[] body = new byte[200_000];
+        long sum = 0;
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+            sum += body[i] & 0xff;
+        }
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer bodyServer = startServer(type, servlet, "/body");
+            try (RawHttpClient client = new RawHttpClient(bodyServer.getAddress())) {
+                client.send("POST /app/body HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length + "\r\n\r\n");
+                client.send(body);
+                assertEquals(type.name(), "200000 false true 200000 " + sum + " -1",
+                        client.read().bodyAsString());
+
+                client.send("POST /app/body HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                        "3\r\nabc\r\n0\r\n\r\n");
+                // only a connector that buffers the body knows its length up front
+                String expectedLength = type == ConnectorType.NIO ? "3" : "-1";
+                assertEquals(type.name(), expectedLength + " false true 3 294 -1", client.read().bodyAsString());
+            } finally {
+                bodyServer.stop();
+            }
+        }
+    }
+
+    public void testAdaptiveResponseBuffer() throws Exception {
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getOutputStream().write(new byte[20_000]);
+            }
+        };
+        JerryHttpServer sizeServer = startServer(ConnectorType.NIO, servlet, "/size");
+        try (RawHttpClient client = new RawHttpClient(sizeServer.getAddress())) {
+            client.send("GET /app/size HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response first = client.read();
+            // Larger than the default buffer
+            assertEquals("chunked", first.header("Transfer-Encoding"));
+            for (int i = 0; i < 16; i++) {
+                client.send("GET /app/size HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                assertEquals(20_000, client.read().body.length);
+            }
+            // Recorded after the response is sent
+            List<ResponseSizeStats> stats = sizeServer.getResponseSizeStats("/app");
+            long deadline = System.currentTimeMillis() + 2000;
+            while (stats.get(0).getResponses() < 17 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                stats = sizeServer.getResponseSizeStats("/app");
+            }
+            assertEquals(1, stats.size());
+            assertEquals(stats.toString(), 32768, stats.get(0).getLearnedSize());
+            assertEquals(32768, stats.get(0).getBufferSize());
+            client.send("GET /app/size HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response learned = client.read();
+            assertEquals("20000", learned.header("Content-Length"));
+            assertNull(learned.header("Transfer-Encoding"));
+        } finally {
+            sizeServer.stop();
+        }
+    }
+
+    public void testJdkConnectorParity() throws Exception {
+        JerryHttpServer jdkServer = startServer(ConnectorType.JDK, new EchoServlet(), "/echo");
+        try (RawHttpClient client = new RawHttpClient(jdkServer.getAddress())) {
+            client.send("GET /app/echo?name=jdk HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response response = client.read();
+            assertEquals(200, response.statusCode);
+            assertEquals("hello jdk", new String(response.body, StandardCharsets.UTF_8));
+        } finally {
+            jdkServer.stop();
+        }
+    }
+}
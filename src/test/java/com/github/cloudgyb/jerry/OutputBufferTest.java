@@ -5,6 +5,12 @@ import junit.framework.TestCase;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author cloudgyb
@@ -26,4 +32,60 @@ public class OutputBufferTest extends TestCase {
         System.out.println(byteArrayOutputStream.toString());
         outputBuffer.close();
     }
+
+    public void testBulkWrite() throws IOException {
+        List<Integer> writes = new ArrayList<>();
+        ByteArrayOutputStream sink = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes.add(len);
+                super.write(b, off, len);
+            }
+        };
+        OutputBuffer outputBuffer = new OutputBuffer(16, sink);
+        outputBuffer.write("0123456789".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(10, outputBuffer.getCount());
+        // Does not fit: the buffered bytes are flushed, then it is buffered
+        outputBuffer.write("abcdefghij".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(Arrays.asList(10), writes);
+        // At least as large as the buffer: written through
+        outputBuffer.write("ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(Arrays.asList(10, 10, 26), writes);
+        outputBuffer.write(ByteBuffer.wrap("xyz".getBytes(StandardCharsets.ISO_8859_1)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(40);
+        while (direct.hasRemaining()) {
+            direct.put((byte) '-');
+        }
+        direct.flip();
+        outputBuffer.write(direct);
+        assertFalse(direct.hasRemaining());
+        outputBuffer.close();
+        assertEquals("0123456789abcdefghijABCDEFGHIJKLMNOPQRSTUVWXYZxyz" + "-".repeat(40),
+                sink.toString(StandardCharsets.ISO_8859_1));
+    }
+
+    public void testByteBufferToChannel() throws IOException {
+        List<ByteBuffer> written = new ArrayList<>();
+        class ChannelSink extends ByteArrayOutputStream implements WritableByteChannel {
+            @Override
+            public int write(ByteBuffer src) {
+                written.add(src);
+                int n = src.remaining();
+                src.position(src.limit());
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+        }
+        OutputBuffer outputBuffer = new OutputBuffer(16, new ChannelSink());
+        ByteBuffer direct = ByteBuffer.allocateDirect(64);
+        outputBuffer.write(direct);
+        // Handed over as is, not copied
+        assertEquals(1, written.size());
+        assertSame(direct, written.get(0));
+        outputBuffer.close();
+    }
 }
@@ -0,0 +1,152 @@
+package com.github.cloudgyb.jerry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A minimal HTTP/1.1 client over a plain socket, so tests control exactly
+ * what goes on the wire and can reuse one connection.
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 17:02
+ */
+public class RawHttpClient implements Closeable {
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    public RawHttpClient(InetSocketAddress address) throws IOException {
+        this.socket = new Socket(address.getAddress(), address.getPort());
+        this.socket.setSoTimeout(10000);
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = socket.getOutputStream();
+    }
+
+    public void send(String raw) throws IOException {
+        send(raw.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    public void send(byte[] raw) throws IOException {
+        out.write(raw);
+        out.flush();
+    }
+
+    public Response read() throws IOException {
+        return read(false);
+    }
+
+    public Response read(boolean head) throws IOException {
+        Response response = new Response();
+        String statusLine = readLine();
+        if (statusLine == null) {
+            return null;
+        }
+        response.statusCode = Integer.parseInt(statusLine.split(" ")[1]);
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            response.headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                    line.substring(colon + 1).trim());
+        }
+        if (head || response.statusCode == 204 || response.statusCode == 304 || response.statusCode < 200) {
+            return response;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String contentLength = response.headers.get("content-length");
+        if ("chunked".equalsIgnoreCase(response.headers.get("transfer-encoding"))) {
+            while (true) {
+                int size = Integer.parseInt(readLine().split(";")[0].trim(), 16);
+                if (size == 0) {
+                    while (!readLine().isEmpty()) {
+                        // skip trailers
+                    }
+                    break;
+                }
+                body.write(in.readNBytes(size));
+                readLine();
+                response.chunks++;
+            }
+        } else if (contentLength != null) {
+            body.write(in.readNBytes(Integer.parseInt(contentLength)));
+        } else {
+            body.write(in.readAllBytes());
+        }
+        response.body = body.toByteArray();
+        return response;
+    }
+
+    /**
+     * Reads one chunk of a chunked body whose head has been read with {@link #read(boolean)}.
+     *
+     * @return the chunk data, empty for the last chunk
+     */
+    public byte[] readChunk() throws IOException {
+        int size = Integer.parseInt(readLine().split(";")[0].trim(), 16);
+        if (size == 0) {
+            while (!readLine().isEmpty()) {
+                // skip trailers
+            }
+            return new byte[0];
+        }
+        byte[] chunk = in.readNBytes(size);
+        readLine();
+        return chunk;
+    }
+
+    /**
+     * @return true if the server closed the connection
+     */
+    public boolean isClosedByPeer() throws IOException {
+        try {
+            return in.read() == -1;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == '\r') {
+                    sb.setLength(len - 1);
+                }
+                return sb.toString();
+            }
+            sb.append((char) b);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static class Response {
+        public int statusCode;
+        public final Map<String, String> headers = new LinkedHashMap<>();
+        public byte[] body = new byte[0];
+        public int chunks;
+
+        public String bodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        public String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+}
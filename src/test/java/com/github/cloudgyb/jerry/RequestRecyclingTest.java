@@ -0,0 +1,132 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.ConnectorType;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.RequestRecycler;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author cloudgyb
+ * @since 2025/4/23 15:50
+ */
+public class RequestRecyclingTest extends TestCase {
+
+    /**
+     * Answers with what is left over from the previous request, if anything.
+     */
+    static class LeftoverServlet extends HttpServlet {
+        HttpServletRequest keptRequest;
+        HttpServletResponse keptResponse;
+        PrintWriter keptWriter;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            String mode = req.getParameter("mode");
+            if ("stale".equals(mode)) {
+                String request;
+                try {
+                    request = keptRequest.getParameter("mode");
+                } catch (IllegalStateException e) {
+                    request = "ended";
+                }
+                String response;
+                try {
+                    keptResponse.setStatus(500);
+                    response = "used";
+                } catch (IllegalStateException e) {
+                    response = "ended";
+                }
+                keptWriter.print("leaked");
+                resp.getWriter().print(request + "|" + response + "|" + keptWriter.checkError());
+                return;
+            }
+            String seen = req.getAttribute("seen") + "|" + resp.getStatus() + "|" + resp.getHeader("X-Mode")
+                    + "|" + resp.getContentType();
+            req.setAttribute("seen", mode);
+            resp.setHeader("X-Mode", mode);
+            resp.setContentType("text/plain");
+            if ("created".equals(mode)) {
+                resp.setStatus(201);
+            }
+            if ("stream".equals(mode)) {
+                resp.getOutputStream().write(seen.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            keptRequest = req;
+            keptResponse = resp;
+            keptWriter = resp.getWriter();
+            keptWriter.print(seen);
+        }
+    }
+
+    private static ServletContextImpl newContext(HttpServlet servlet) throws ServletException {
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("leftover", servlet).addMapping("/leftover");
+        servletContext.init();
+        return servletContext;
+    }
+
+    public void testNothingLeftOver() throws Exception {
+        ServerConfig config = NioHttpConnectorTest.newConfig(ConnectorType.NIO);
+        config.setWorkerThreads(1);
+        config.setRecycleRequests(true);
+        JerryHttpServer server = new JerryHttpServer(config);
+        server.addServletContext(newContext(new LeftoverServlet()));
+        server.start();
+        try (RawHttpClient client = new RawHttpClient(server.getAddress())) {
+            for (String mode : new String[]{"created", "stream", "writer", "created"}) {
+                client.send("GET /app/leftover?mode=" + mode + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                RawHttpClient.Response response = client.read();
+                assertEquals("created".equals(mode) ? 201 : 200, response.statusCode);
+                assertEquals("null|200|null|null", response.bodyAsString());
+            }
+            client.send("HEAD /app/leftover?mode=head HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            RawHttpClient.Response head = client.read(true);
+            assertEquals("18", head.header("Content-Length"));
+            // Tests run with assertions enabled, which turns the checks on
+            client.send("GET /app/leftover?mode=stale HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("ended|ended|true", client.read().bodyAsString());
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void testRecyclerWithoutChecks() throws Exception {
+        LeftoverServlet servlet = new LeftoverServlet();
+        RequestRecycler recycler = new RequestRecycler(newContext(servlet), null, false);
+        StubExchange exchange = new StubExchange("GET", "/app/leftover?mode=created");
+        recycler.handle(exchange);
+        assertEquals(201, exchange.getStatusCode());
+        assertEquals("null|200|null|null", exchange.getResponseBodyAsString());
+        HttpServletRequest firstRequest = servlet.keptRequest;
+        PrintWriter firstWriter = servlet.keptWriter;
+
+        for (String mode : new String[]{"stream", "writer"}) {
+            exchange.reset("GET", "/app/leftover?mode=" + mode);
+            recycler.handle(exchange);
+            assertEquals(200, exchange.getStatusCode());
+            assertTrue(exchange.isClosed());
+            assertEquals("null|200|null|null", exchange.getResponseBodyAsString());
+        }
+        // The same objects served every request
+        assertSame(firstRequest, servlet.keptRequest);
+        assertSame(firstWriter, servlet.keptWriter);
+
+        exchange.reset("HEAD", "/app/leftover?mode=head");
+        recycler.handle(exchange);
+        assertEquals(18, exchange.getContentLength());
+        assertEquals("", exchange.getResponseBodyAsString());
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.servlet.buffer.OutputBuffer;
+import com.github.cloudgyb.jerry.servlet.buffer.ResponseWriter;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Checks that {@link ResponseWriter} encodes exactly like a PrintWriter over
+ * an OutputStreamWriter.
+ *
+ * @author cloudgyb
+ * @since 2025/4/20 18:30
+ */
+public class ResponseWriterTest extends TestCase {
+    private static final String[] TEXTS = {
+            "hello world",
+            "café über  ",
+            "你好，世界",
+            "emoji 😀 pair",
+            "lone high \ud83d x, lone low \ude00 y, high at end \ud83d",
+    };
+
+    public void testMatchesJdkWriter() throws IOException {
+        Charset[] charsets = {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII,
+                StandardCharsets.UTF_16, Charset.forName("Shift_JIS")};
+        for (Charset charset : charsets) {
+            for (int bufferSize : new int[]{1, 5, 4096}) {
+                for (String text : TEXTS) {
+                    assertEncoding(charset, bufferSize, text);
+                }
+                assertEncoding(charset, bufferSize, String.join("", TEXTS).repeat(200));
+            }
+        }
+    }
+
+    private static void assertEncoding(Charset charset, int bufferSize, String text) throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PrintWriter jdk = new PrintWriter(new OutputStreamWriter(expected, charset));
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        OutputBuffer outputBuffer = new OutputBuffer(bufferSize, actual);
+        ResponseWriter writer = new ResponseWriter(outputBuffer, charset);
+        writeAll(jdk, text);
+        writeAll(writer, text);
+        jdk.close();
+        writer.close();
+        assertFalse(writer.checkError());
+        assertTrue(charset + " " + bufferSize + " " + text,
+                Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+
+        // A HEAD response counts the same bytes without writing them
+        ByteArrayOutputStream nothing = new ByteArrayOutputStream();
+        OutputBuffer countingBuffer = new OutputBuffer(bufferSize, nothing);
+        countingBuffer.setCounting();
+        ResponseWriter countingWriter = new ResponseWriter(countingBuffer, charset);
+        writeAll(countingWriter, text);
+        countingWriter.finish();
+        assertEquals(charset + " " + bufferSize + " " + text,
+                expected.size(), countingBuffer.getBytesWritten());
+        countingWriter.close();
+        assertEquals(0, nothing.size());
+    }
+
+    private static void writeAll(PrintWriter writer, String text) {
+        // one piece at a time, so that surrogate pairs are split between writes
+        for (int i = 0; i < text.length(); i += 3) {
+            writer.print(text.substring(i, Math.min(text.length(), i + 3)));
+        }
+        writer.println(42);
+        writer.write(text.toCharArray(), 1, text.length() - 1);
+        writer.write('é');
+    }
+
+    public void testFinishKeepsBodyBuffered() throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputBuffer outputBuffer = new OutputBuffer(64, sink);
+        ResponseWriter writer = new ResponseWriter(outputBuffer, StandardCharsets.UTF_8);
+        writer.print("été \ud83d");
+        writer.finish();
+        assertEquals(0, sink.size());
+        assertEquals(7, outputBuffer.getCount());
+        writer.flush();
+        assertEquals("été ?", sink.toString(StandardCharsets.UTF_8));
+    }
+
+    public void testWriteAfterClose() {
+        ResponseWriter writer = new ResponseWriter(new OutputBuffer(64, new ByteArrayOutputStream()),
+                StandardCharsets.UTF_8);
+        writer.close();
+        writer.print("late");
+        assertTrue(writer.checkError());
+    }
+}
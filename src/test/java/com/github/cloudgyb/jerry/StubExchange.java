@@ -0,0 +1,149 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.Exchange;
+import com.github.cloudgyb.jerry.http.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An in-memory exchange, for driving the servlet layer without a connector.
+ * {@link #reset(String, String)} makes it the next request, so that a loop
+ * of requests allocates nothing for the exchange itself.
+ *
+ * @author cloudgyb
+ * @since 2025/4/23 15:30
+ */
+public class StubExchange implements Exchange {
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 8080);
+    private final HttpHeaders requestHeaders = new HttpHeaders();
+    private final HttpHeaders responseHeaders = new HttpHeaders();
+    private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+    // Closing it does nothing, so it can be handed out to every request
+    private final InputStream requestBody = new ByteArrayInputStream(new byte[0]);
+    private String method;
+    private String path;
+    private String query;
+    private int statusCode;
+    private long contentLength;
+    private boolean committed;
+    private boolean closed;
+
+    public StubExchange(String method, String target) {
+        reset(method, target);
+    }
+
+    public void reset(String method, String target) {
+        this.method = method;
+        int q = target.indexOf('?');
+        path = q < 0 ? target : target.substring(0, q);
+        query = q < 0 ? null : target.substring(q + 1);
+        requestHeaders.clear();
+        responseHeaders.clear();
+        responseBody.reset();
+        statusCode = 0;
+        contentLength = 0;
+        committed = false;
+        closed = false;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the length passed to {@link #commit(int, long)}
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public String getResponseBodyAsString() {
+        return responseBody.toString(StandardCharsets.UTF_8);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestTarget() {
+        return query == null ? path : path + "?" + query;
+    }
+
+    @Override
+    public String getRequestPath() {
+        return path;
+    }
+
+    @Override
+    public String getQueryString() {
+        return query;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public HttpHeaders getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public long getRequestContentLength() {
+        return 0;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public void commit(int statusCode, long contentLength) {
+        this.statusCode = statusCode;
+        this.contentLength = contentLength;
+        committed = true;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return ADDRESS;
+    }
+}
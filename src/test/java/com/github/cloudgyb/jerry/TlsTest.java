@@ -0,0 +1,217 @@
+package com.github.cloudgyb.jerry;
+
+import com.github.cloudgyb.jerry.http.ConnectorType;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.github.cloudgyb.jerry.http.nio.NioHttpConnector;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import junit.framework.TestCase;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTPS with a self-signed certificate generated by keytool.
+ *
+ * @author cloudgyb
+ * @since 2025/4/18 14:30
+ */
+public class TlsTest extends TestCase {
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    private static SSLContext serverContext;
+    private static SSLContext clientContext;
+    private JerryHttpServer server;
+
+    public static class SecureServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.getWriter().print(req.isSecure() + "|" + req.getScheme() + "|" + req.getProtocol() + "|" +
+                    req.getRequestURL());
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            byte[] body = req.getInputStream().readAllBytes();
+            resp.setContentType("application/octet-stream");
+            resp.getOutputStream().write(body);
+        }
+    }
+
+    private static synchronized void createContexts() throws Exception {
+        if (serverContext != null) {
+            return;
+        }
+        File keyStoreFile = File.createTempFile("jerry", ".p12");
+        assertTrue(keyStoreFile.delete());
+        keyStoreFile.deleteOnExit();
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "jerry",
+                "-keyalg", "EC", "-groupname", "secp256r1", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "san=ip:127.0.0.1,dns:localhost",
+                "-storetype", "PKCS12", "-keystore", keyStoreFile.getAbsolutePath(),
+                "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                .redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(output, 0, process.waitFor());
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(keyStoreFile)) {
+            keyStore.load(in, PASSWORD);
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, PASSWORD);
+        serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(kmf.getKeyManagers(), null, null);
+
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(keyStore);
+        clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, tmf.getTrustManagers(), null);
+    }
+
+    private JerryHttpServer startServer(ConnectorType connectorType) throws Exception {
+        createContexts();
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setConnectorType(connectorType);
+        config.setIoThreads(2);
+        config.setWorkerThreads(4);
+        config.setSslContext(serverContext);
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("secure", new SecureServlet()).addMapping("/secure");
+        servletContext.init();
+        JerryHttpServer server = new JerryHttpServer(config);
+        server.addServletContext(servletContext);
+        server.start();
+        return server;
+    }
+
+    @Override
+    protected void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private URI uri() {
+        return URI.create("https://127.0.0.1:" + server.getAddress().getPort() + "/app/secure");
+    }
+
+    public void testHttp11() throws Exception {
+        for (ConnectorType type : ConnectorType.values()) {
+            server = startServer(type);
+            try {
+                HttpClient client = HttpClient.newBuilder().sslContext(clientContext)
+                        .version(HttpClient.Version.HTTP_1_1).build();
+                for (int i = 0; i < 2; i++) {
+                    HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri()).build(),
+                            HttpResponse.BodyHandlers.ofString());
+                    assertEquals(type.name(), 200, response.statusCode());
+                    assertEquals(type.name(), "true|https|HTTP/1.1|" + uri(), response.body());
+                }
+            } finally {
+                server.stop();
+                server = null;
+            }
+        }
+    }
+
+    public void testLargeBody() throws Exception {
+        server = startServer(ConnectorType.NIO);
+        HttpClient client = HttpClient.newBuilder().sslContext(clientContext)
+                .version(HttpClient.Version.HTTP_1_1).build();
+        byte[] payload = new byte[300_000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 31);
+        }
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri())
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(payload)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        assertTrue(Arrays.equals(payload, response.body()));
+    }
+
+    public void testAlpnHttp2() throws Exception {
+        server = startServer(ConnectorType.NIO);
+        HttpClient client = HttpClient.newBuilder().sslContext(clientContext)
+                .version(HttpClient.Version.HTTP_2).build();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+        assertEquals("true|https|HTTP/2.0|" + uri(), response.body());
+    }
+
+    public void testSessionResumption() throws Exception {
+        server = startServer(ConnectorType.NIO);
+        InetSocketAddress address = server.getAddress();
+        byte[] firstId = null;
+        for (int i = 0; i < 2; i++) {
+            try (SSLSocket socket = (SSLSocket) clientContext.getSocketFactory()
+                    .createSocket(address.getAddress(), address.getPort())) {
+                socket.setEnabledProtocols(new String[]{"TLSv1.2"});
+                socket.startHandshake();
+                byte[] id = socket.getSession().getId();
+                if (firstId == null) {
+                    firstId = id;
+                } else {
+                    assertTrue(Arrays.equals(firstId, id));
+                }
+                socket.getOutputStream().write(("GET /app/secure HTTP/1.1\r\nHost: localhost\r\n" +
+                        "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+                assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            }
+        }
+    }
+
+    public void testHandshakeTasksRunOnWorkers() throws Exception {
+        createContexts();
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setIoThreads(1);
+        config.setSslContext(serverContext);
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        AtomicInteger dispatched = new AtomicInteger();
+        NioHttpConnector connector = new NioHttpConnector(config, task -> {
+            dispatched.incrementAndGet();
+            workers.execute(task);
+        });
+        connector.start();
+        try {
+            // No context and no request, the handshake is all the workers get
+            for (int i = 0; i < 2; i++) {
+                try (SSLSocket socket = (SSLSocket) clientContext.getSocketFactory()
+                        .createSocket("127.0.0.1", connector.getAddress().getPort())) {
+                    socket.startHandshake();
+                    assertTrue(socket.getSession().isValid());
+                }
+            }
+            assertTrue(dispatched.get() >= 2);
+        } finally {
+            connector.stop(0);
+            workers.shutdownNow();
+        }
+    }
+}
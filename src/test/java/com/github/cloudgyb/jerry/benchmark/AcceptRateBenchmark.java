@@ -0,0 +1,90 @@
+package com.github.cloudgyb.jerry.benchmark;
+
+import com.github.cloudgyb.jerry.RawHttpClient;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.github.cloudgyb.jerry.http.nio.NioHttpConnector;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection-rate load test: every request opens a new connection and is
+ * answered with <code>Connection: close</code>. Compares a single acceptor
+ * with SO_REUSEPORT acceptor shards on the NIO connector.
+ * <p>
+ * Usage: <code>AcceptRateBenchmark [clients] [seconds] [shards]</code>
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/18 17:20
+ */
+public class AcceptRateBenchmark {
+    private static final String REQUEST = "GET /bench/hello HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int shards = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        if (!NioHttpConnector.isReusePortSupported()) {
+            System.out.println("SO_REUSEPORT is not supported, sharded acceptors fall back to one");
+        }
+        for (int acceptorShards : new int[]{1, shards}) {
+            JerryHttpServer server = start(acceptorShards);
+            try {
+                run(server.getAddress(), clients, 2); // warm up
+                double rate = run(server.getAddress(), clients, seconds);
+                System.out.printf("acceptorShards=%-3d clients=%d rate=%.0f conn/s%n", acceptorShards, clients, rate);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static JerryHttpServer start(int acceptorShards) throws Exception {
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setAcceptorShards(acceptorShards);
+        ServletContextImpl servletContext = new ServletContextImpl("/bench", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("hello", new ConnectorBenchmark.HelloServlet()).addMapping("/hello");
+        servletContext.init();
+        JerryHttpServer server = new JerryHttpServer(config);
+        server.addServletContext(servletContext);
+        server.start();
+        return server;
+    }
+
+    /**
+     * @return the number of connections served per second
+     */
+    static double run(InetSocketAddress address, int clients, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder connections = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        try (RawHttpClient client = new RawHttpClient(address)) {
+                            client.send(REQUEST);
+                            client.read();
+                        }
+                        connections.increment();
+                    }
+                } catch (IOException e) {
+                    System.err.println("client error: " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        done.await();
+        return connections.sum() / (double) seconds;
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.cloudgyb.jerry.benchmark;
+
+import com.github.cloudgyb.jerry.RawHttpClient;
+import com.github.cloudgyb.jerry.http.ConnectorType;
+import com.github.cloudgyb.jerry.http.JerryHttpServer;
+import com.github.cloudgyb.jerry.http.ServerConfig;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load test over keep-alive connections, reporting throughput
+ * and latency percentiles of each connector type.
+ * <p>
+ * Usage: <code>ConnectorBenchmark [connections] [seconds]</code>
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/6 18:10
+ */
+public class ConnectorBenchmark {
+    private static final String REQUEST = "GET /bench/hello HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+    public static class HelloServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.getWriter().print("Hello, JerryServer!");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        for (ConnectorType type : ConnectorType.values()) {
+            JerryHttpServer server = start(type);
+            try {
+                run(server.getAddress(), connections, 2); // warm up
+                Result result = run(server.getAddress(), connections, seconds);
+                System.out.printf("%-4s connections=%d throughput=%.0f req/s p50=%.3f ms p99=%.3f ms%n",
+                        type, connections, result.throughput, result.p50Millis, result.p99Millis);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static JerryHttpServer start(ConnectorType type) throws Exception {
+        ServerConfig config = new ServerConfig(new InetSocketAddress("127.0.0.1", 0));
+        config.setConnectorType(type);
+        ServletContextImpl servletContext = new ServletContextImpl("/bench", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("hello", new HelloServlet()).addMapping("/hello");
+        servletContext.init();
+        JerryHttpServer server = new JerryHttpServer(config);
+        server.addServletContext(servletContext);
+        server.start();
+        return server;
+    }
+
+    static Result run(InetSocketAddress address, int connections, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+        CountDownLatch done = new CountDownLatch(connections);
+        for (int c = 0; c < connections; c++) {
+            int index = c;
+            Thread thread = new Thread(() -> {
+                long[] samples = new long[1 << 16];
+                int n = 0;
+                try (RawHttpClient client = new RawHttpClient(address)) {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        client.send(REQUEST);
+                        client.read();
+                        if (n == samples.length) {
+                            samples = Arrays.copyOf(samples, n * 2);
+                        }
+                        samples[n++] = System.nanoTime() - start;
+                    }
+                } catch (IOException e) {
+                    System.err.println("client error: " + e);
+                } finally {
+                    latencies[index] = samples;
+                    counts[index] = n;
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        done.await();
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        Result result = new Result();
+        result.throughput = total / (double) seconds;
+        result.p50Millis = total == 0 ? 0 : all[(int) (total * 0.50)] / 1e6;
+        result.p99Millis = total == 0 ? 0 : all[(int) (total * 0.99)] / 1e6;
+        return result;
+    }
+
+    static class Result {
+        double throughput;
+        double p50Millis;
+        double p99Millis;
+    }
+}
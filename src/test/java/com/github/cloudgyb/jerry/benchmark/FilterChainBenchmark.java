@@ -0,0 +1,111 @@
+package com.github.cloudgyb.jerry.benchmark;
+
+import com.github.cloudgyb.jerry.servlet.filter.FilterChainImpl;
+import com.github.cloudgyb.jerry.servlet.filter.FilterMapping;
+import com.github.cloudgyb.jerry.servlet.mapping.AbstractMapping;
+import com.github.cloudgyb.jerry.servlet.mapping.MappingIndex;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServlet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of building the filter chain of a request, as
+ * <code>ServletContextImpl</code> did it (match every filter mapping, sort,
+ * copy, stream into a new array) against the chains cached per set of
+ * matched mappings. Run with the gc profiler for the bytes allocated per
+ * request.
+ *
+ * @author cloudgyb
+ * @since 2025/4/22 14:10
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterChainBenchmark {
+    private static final String[] PATTERNS = {
+            "/*", "/api/*", "/api/v1/*", "/api/v2/*", "/admin/*", "/static/*", "*.json", "*.html",
+            "/login", "/logout", "/health", "/api/v1/users", "/metrics/*", "*.css", "*.js", "/",
+    };
+    private final HttpServlet servlet = new HttpServlet() {
+    };
+    private final Set<Filter> servletNameFilters = new HashSet<>();
+    private List<FilterMapping> sorted;
+    private MappingIndex<FilterMapping> index;
+    private final Map<MappingIndex.Matches<FilterMapping>, Filter[]> chains = new ConcurrentHashMap<>();
+    private final String[] paths = {"/api/v1/users/42", "/static/app.js", "/login", "/index.html"};
+    private int next;
+
+    @Setup
+    public void setup() {
+        sorted = new ArrayList<>();
+        for (String pattern : PATTERNS) {
+            sorted.add(new FilterMapping((request, response, chain) -> chain.doFilter(request, response), pattern));
+        }
+        servletNameFilters.add((request, response, chain) -> chain.doFilter(request, response));
+        Collections.sort(sorted);
+        for (AbstractMapping mapping : sorted) {
+            mapping.getPattern();
+        }
+        index = new MappingIndex<>(sorted);
+    }
+
+    @Benchmark
+    public FilterChainImpl perRequest() {
+        String path = paths[next++ & 3];
+        ArrayList<FilterMapping> matchedFilterMappings = new ArrayList<>();
+        for (FilterMapping filterMapping : sorted) {
+            if (filterMapping.getPattern().matcher(path).matches()) {
+                matchedFilterMappings.add(filterMapping);
+            }
+        }
+        Collections.sort(matchedFilterMappings);
+        ArrayList<Filter> objects = new ArrayList<>(servletNameFilters);
+        objects.addAll(matchedFilterMappings.stream().map(FilterMapping::getFilter).collect(Collectors.toList()));
+        return new FilterChainImpl(objects.toArray(new Filter[0]), servlet);
+    }
+
+    @Benchmark
+    public FilterChainImpl cached() {
+        MappingIndex.Matches<FilterMapping> matches = index.matchAll(paths[next++ & 3]);
+        Filter[] filters = chains.get(matches);
+        if (filters == null) {
+            filters = chains.computeIfAbsent(matches, m -> {
+                ArrayList<Filter> objects = new ArrayList<>(servletNameFilters);
+                m.getMappings().forEach(mapping -> objects.add(mapping.getFilter()));
+                return objects.toArray(new Filter[0]);
+            });
+        }
+        return new FilterChainImpl(filters, servlet);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(FilterChainBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
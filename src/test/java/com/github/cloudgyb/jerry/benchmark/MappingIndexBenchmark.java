@@ -0,0 +1,100 @@
+package com.github.cloudgyb.jerry.benchmark;
+
+import com.github.cloudgyb.jerry.servlet.filter.FilterMapping;
+import com.github.cloudgyb.jerry.servlet.mapping.AbstractMapping;
+import com.github.cloudgyb.jerry.servlet.mapping.MappingIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the mapping of a request path: the old scan running the
+ * regex of each mapping in turn, against {@link MappingIndex}, for contexts
+ * of 10 to 10,000 mappings. A third of the mappings are exact, a third path
+ * prefixes and a third extensions; the paths hit each kind and the default.
+ *
+ * @author cloudgyb
+ * @since 2025/4/22 10:50
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingIndexBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int mappings;
+    private List<FilterMapping> sorted;
+    private MappingIndex<FilterMapping> index;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup() {
+        sorted = new ArrayList<>();
+        for (int i = 0; i < mappings; i++) {
+            switch (i % 3) {
+                case 0:
+                    sorted.add(new FilterMapping(null, "/exact/page" + i));
+                    break;
+                case 1:
+                    sorted.add(new FilterMapping(null, "/api/v" + i + "/*"));
+                    break;
+                default:
+                    sorted.add(new FilterMapping(null, "*.ext" + i));
+            }
+        }
+        sorted.add(new FilterMapping(null, "/"));
+        Collections.sort(sorted);
+        for (AbstractMapping mapping : sorted) {
+            mapping.getPattern();
+        }
+        index = new MappingIndex<>(sorted);
+        int last = mappings - 1;
+        paths = new String[]{
+                "/exact/page" + (last - last % 3),
+                "/api/v" + (mappings > 1 ? 1 : 0) + "/users/42/orders",
+                "/static/img/logo.ext" + (mappings > 2 ? 2 : 0),
+                "/not/mapped/anywhere",
+        };
+    }
+
+    @Benchmark
+    public AbstractMapping regexScan() {
+        String path = paths[next++ & 3];
+        for (FilterMapping mapping : sorted) {
+            if (mapping.getPattern().matcher(path).matches()) {
+                return mapping;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public AbstractMapping index() {
+        return index.match(paths[next++ & 3]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MappingIndexBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.cloudgyb.jerry.benchmark;
+
+import com.github.cloudgyb.jerry.StubExchange;
+import com.github.cloudgyb.jerry.http.BufferPool;
+import com.github.cloudgyb.jerry.http.JerryHttpHandler;
+import com.github.cloudgyb.jerry.loader.WebAppClassLoader;
+import com.github.cloudgyb.jerry.servlet.RequestRecycler;
+import com.github.cloudgyb.jerry.servlet.ServletContextImpl;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the servlet layer of one request, from the exchange to the end of
+ * the response, with request and response objects built per request against
+ * recycled ones, with and without the use-after-end checks. The exchange is
+ * an in-memory one reused across requests, so only the servlet layer
+ * allocates. Run with the gc profiler for the bytes allocated per request
+ * and the GC rate.
+ *
+ * @author cloudgyb
+ * @since 2025/4/23 16:10
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestRecyclingBenchmark {
+    private final StubExchange exchange = new StubExchange("GET", "/app/hello");
+    private JerryHttpHandler perRequest;
+    private JerryHttpHandler recycled;
+    private JerryHttpHandler recycledWithChecks;
+
+    static class HelloServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            req.setAttribute("user", req.getParameter("user"));
+            resp.setContentType("text/plain");
+            resp.setHeader("Cache-Control", "no-cache");
+            resp.getWriter().print("hello ");
+            resp.getWriter().print(req.getAttribute("user"));
+        }
+    }
+
+    @Setup
+    public void setup() throws ServletException {
+        ServletContextImpl servletContext = new ServletContextImpl("/app", new WebAppClassLoader(new URL[0]));
+        servletContext.addServlet("hello", new HelloServlet()).addMapping("/hello");
+        servletContext.init();
+        BufferPool bufferPool = new BufferPool(64L * 1024 * 1024);
+        perRequest = new JerryHttpHandler(servletContext, bufferPool);
+        recycled = new JerryHttpHandler(servletContext, bufferPool,
+                new RequestRecycler(servletContext, bufferPool, false));
+        recycledWithChecks = new JerryHttpHandler(servletContext, bufferPool,
+                new RequestRecycler(servletContext, bufferPool, true));
+    }
+
+    private StubExchange nextExchange() {
+        exchange.reset("GET", "/app/hello?user=jerry");
+        return exchange;
+    }
+
+    @Benchmark
+    public StubExchange perRequest() {
+        StubExchange e = nextExchange();
+        perRequest.handle(e);
+        return e;
+    }
+
+    @Benchmark
+    public StubExchange recycled() {
+        StubExchange e = nextExchange();
+        recycled.handle(e);
+        return e;
+    }
+
+    @Benchmark
+    public StubExchange recycledWithChecks() {
+        StubExchange e = nextExchange();
+        recycledWithChecks.handle(e);
+        return e;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RequestRecyclingBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
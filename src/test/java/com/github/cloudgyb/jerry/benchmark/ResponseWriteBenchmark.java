@@ -0,0 +1,106 @@
+package com.github.cloudgyb.jerry.benchmark;
+
+import com.github.cloudgyb.jerry.servlet.ServletOutputStreamImpl;
+import com.github.cloudgyb.jerry.servlet.buffer.OutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing a response body through the servlet output stream and the
+ * response buffer into a sink that, like the NIO connector's body stream,
+ * accepts both arrays and ByteBuffers and discards them.
+ *
+ * @author cloudgyb
+ * @since 2025/4/20 10:10
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWriteBenchmark {
+    @Param({"1024", "65536", "8388608"})
+    public int size;
+    private byte[] body;
+    private ByteBuffer directBody;
+    private final DiscardingSink sink = new DiscardingSink();
+
+    @Setup
+    public void setup() {
+        body = new byte[size];
+        directBody = ByteBuffer.allocateDirect(size);
+    }
+
+    @Benchmark
+    public long writeArray() throws IOException {
+        ServletOutputStreamImpl out = newOutputStream();
+        out.write(body);
+        out.flush();
+        return sink.count;
+    }
+
+    @Benchmark
+    public long writeDirectBuffer() throws IOException {
+        ServletOutputStreamImpl out = newOutputStream();
+        directBody.clear();
+        out.write(directBody);
+        out.flush();
+        return sink.count;
+    }
+
+    private ServletOutputStreamImpl newOutputStream() {
+        return new ServletOutputStreamImpl(new OutputBuffer(8192, sink));
+    }
+
+    static final class DiscardingSink extends OutputStream implements WritableByteChannel {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            count += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ResponseWriteBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
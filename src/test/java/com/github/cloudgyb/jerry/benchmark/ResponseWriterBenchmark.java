@@ -0,0 +1,90 @@
+package com.github.cloudgyb.jerry.benchmark;
+
+import com.github.cloudgyb.jerry.servlet.buffer.OutputBuffer;
+import com.github.cloudgyb.jerry.servlet.buffer.ResponseWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing a small HTML page through <code>getWriter()</code>: the old
+ * PrintWriter over OutputStreamWriter over the response buffer, against
+ * {@link ResponseWriter} encoding straight into the buffer.
+ *
+ * @author cloudgyb
+ * @since 2025/4/20 18:50
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWriterBenchmark {
+    @Param({"UTF-8", "ISO-8859-1"})
+    public String charsetName;
+    @Param({"ascii", "mixed"})
+    public String text;
+    private Charset charset;
+    private String[] lines;
+    private final ResponseWriteBenchmark.DiscardingSink sink = new ResponseWriteBenchmark.DiscardingSink();
+
+    @Setup
+    public void setup() {
+        charset = Charset.forName(charsetName);
+        String word = "ascii".equals(text) ? "hello world" : "héllo wörld";
+        lines = new String[100];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "<li class=\"item\">" + word + " #" + i + "</li>";
+        }
+    }
+
+    @Benchmark
+    public long printWriterStack() throws IOException {
+        OutputBuffer outputBuffer = new OutputBuffer(8192, sink);
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputBuffer, charset), false);
+        write(writer);
+        writer.flush();
+        return sink.count;
+    }
+
+    @Benchmark
+    public long responseWriter() throws IOException {
+        OutputBuffer outputBuffer = new OutputBuffer(8192, sink);
+        ResponseWriter writer = new ResponseWriter(outputBuffer, charset);
+        write(writer);
+        writer.flush();
+        return sink.count;
+    }
+
+    private void write(PrintWriter writer) {
+        writer.print("<html><body><ul>");
+        for (String line : lines) {
+            writer.println(line);
+        }
+        writer.print("</ul></body></html>");
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ResponseWriterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
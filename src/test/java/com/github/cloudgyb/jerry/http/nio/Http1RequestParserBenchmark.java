@@ -0,0 +1,84 @@
+package com.github.cloudgyb.jerry.http.nio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing a typical browser request, run with the GC profiler so
+ * that <code>gc.alloc.rate.norm</code> reports the bytes allocated per request.
+ * <p>
+ * <code>parse</code> only parses, as the event loop does for every request;
+ * <code>parseAndRead</code> also reads what a typical servlet reads.
+ * </p>
+ *
+ * @author cloudgyb
+ * @since 2025/4/19 15:30
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Http1RequestParserBenchmark {
+    private static final byte[] REQUEST = ("GET /app/products/42?color=red&size=m HTTP/1.1\r\n" +
+            "Host: shop.example.com\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:125.0) Gecko/20100101 Firefox/125.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Referer: https://shop.example.com/app/products\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Cookie: JSESSIONID=4F2A9C0E7B1D3A5F; theme=dark\r\n" +
+            "Upgrade-Insecure-Requests: 1\r\n" +
+            "Sec-Fetch-Dest: document\r\n" +
+            "Sec-Fetch-Mode: navigate\r\n" +
+            "Cache-Control: max-age=0\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    private final ByteBuffer buffer = ByteBuffer.allocate(REQUEST.length);
+    private Http1RequestParser parser;
+
+    @Setup
+    public void setup() {
+        parser = new Http1RequestParser(8192, Http1RequestParser.MAX_BODY_SIZE, null);
+    }
+
+    @Benchmark
+    public NioRequest parse() throws HttpParseException {
+        buffer.clear();
+        buffer.put(REQUEST).flip();
+        return parser.parse(buffer);
+    }
+
+    @Benchmark
+    public void parseAndRead(Blackhole blackhole) throws HttpParseException {
+        NioRequest request = parse();
+        blackhole.consume(request.method);
+        blackhole.consume(request.getPath());
+        blackhole.consume(request.getQuery());
+        blackhole.consume(request.headers.getFirst("Host"));
+        blackhole.consume(request.headers.getFirst("Cookie"));
+        blackhole.consume(request.headers.getFirst("Accept-Language"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(Http1RequestParserBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}